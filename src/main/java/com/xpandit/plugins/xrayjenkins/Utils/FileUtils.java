@@ -2,18 +2,18 @@ package com.xpandit.plugins.xrayjenkins.Utils;
 
 import com.google.common.collect.Sets;
 import com.xpandit.plugins.xrayjenkins.exceptions.XrayJenkinsGenericException;
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureFile;
+import com.xpandit.plugins.xrayjenkins.task.remote.FeatureFilesCallable;
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import java.util.Date;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -57,33 +57,40 @@ public class FileUtils {
             FilePath workspace,
             String path,
             TaskListener listener
+    ) throws IOException, InterruptedException {
+        final List<FeatureFile> featureFiles = findFeatureFiles(workspace, path, listener);
+        final List<FilePath> paths = new ArrayList<>(featureFiles.size());
+        for (FeatureFile featureFile : featureFiles) {
+            paths.add(new FilePath(workspace.getChannel(), featureFile.getPath()));
+        }
+
+        return paths;
+    }
+
+    /**
+     * Returns all .features files from a folder, including those contained in sub folders, with their size and
+     * modification time. The folders are walked in the node where they are stored, with a single remote call.
+     *
+     * @param workspace the Jenkins project workspace
+     * @param path      the folder (or feature file) path
+     * @param listener  the TaskListener
+     * @return the feature files
+     */
+    public static List<FeatureFile> findFeatureFiles(
+            FilePath workspace,
+            String path,
+            TaskListener listener
     ) throws IOException, InterruptedException {
         String errors = getErrors(workspace, path, listener);
         if (errors != null) {
             throw new XrayJenkinsGenericException(errors);
         }
-        List<FilePath> paths = new ArrayList<>();
-        FilePath filePath = readFile(workspace, path, listener);
-
-        if (filePath.isDirectory()) {
-            paths.addAll(Arrays.asList(filePath.list("*" + FEATURE_FILE_EXTENSION, "", false)));
-            List<FilePath> children = filePath.list();
-            for (FilePath child : children) {
-                if (child.isDirectory()) {
-                    paths.addAll(getFeatureFilesFromWorkspace(workspace, child.toString(), listener));
-                }
-            }
-        } else if (isFeatureFile(filePath)) {
-            paths.add(filePath);
-        } else {
+
+        final List<FeatureFile> featureFiles = readFile(workspace, path, listener).act(new FeatureFilesCallable(FEATURE_FILE_EXTENSION));
+        if (featureFiles == null) {
             throw new XrayJenkinsGenericException("The path is not a folder or a single feature file");
         }
-
-        return paths;
-    }
-
-    private static boolean isFeatureFile(FilePath filePath) throws IOException, InterruptedException {
-        return filePath.exists() && StringUtils.endsWith(filePath.getName(), FEATURE_FILE_EXTENSION);
+        return featureFiles;
     }
 
     /**
@@ -101,15 +108,18 @@ public class FileUtils {
             String path,
             TaskListener listener
     ) throws IOException, InterruptedException {
-        final List<FilePath> filePaths = getFeatureFilesFromWorkspace(workspace, path, listener);
-        final Set<String> fileNames = Sets.newHashSet();
+        return getFeatureFileNames(findFeatureFiles(workspace, path, listener));
+    }
 
-        if (CollectionUtils.isNotEmpty(filePaths)) {
-            for (FilePath fp : filePaths) {
-                String remoteFileName = fp.getRemote();
-                if (StringUtils.isNotBlank(remoteFileName)) {
-                    fileNames.add(remoteFileName);
-                }
+    /**
+     * @param featureFiles the feature files
+     * @return Unmodifiable set with the full absolute path of the feature files
+     */
+    public static Set<String> getFeatureFileNames(List<FeatureFile> featureFiles) {
+        final Set<String> fileNames = Sets.newHashSet();
+        for (FeatureFile featureFile : featureFiles) {
+            if (StringUtils.isNotBlank(featureFile.getPath())) {
+                fileNames.add(featureFile.getPath());
             }
         }
 
@@ -217,16 +227,30 @@ public class FileUtils {
                 //the modified field is not used so we return true
                 return true;
             }
-            int lastModifiedIntValue = getLastModifiedIntValue(lastModified);
-            long diffInMillis = new Date().getTime() - filePath.lastModified();
-            long diffInHour = diffInMillis / DateUtils.MILLIS_PER_HOUR;
-
-            return diffInHour <= lastModifiedIntValue;
+            return isApplicableAsModifiedFile(filePath.lastModified(), lastModified);
         } catch (IOException | InterruptedException e) {
             return false;
         }
     }
 
+    /**
+     * Same as {@link #isApplicableAsModifiedFile(FilePath, String)}, with the modification time already known.
+     *
+     * @param fileLastModified the modification time of the file, in milliseconds since the epoch.
+     * @param lastModified the time threshold.
+     * @return true, if 'lastModified' is blank or if the file was modified LESS than this value. False otherwise.
+     */
+    public static boolean isApplicableAsModifiedFile(long fileLastModified, String lastModified) {
+        if(StringUtils.isBlank(lastModified)){
+            return true;
+        }
+        int lastModifiedIntValue = getLastModifiedIntValue(lastModified);
+        long diffInMillis = new Date().getTime() - fileLastModified;
+        long diffInHour = diffInMillis / DateUtils.MILLIS_PER_HOUR;
+
+        return diffInHour <= lastModifiedIntValue;
+    }
+
     private static int getLastModifiedIntValue(String lastModified){
         try{
             int m = Integer.parseInt(lastModified);
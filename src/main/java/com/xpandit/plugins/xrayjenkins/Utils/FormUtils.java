@@ -4,6 +4,7 @@ import com.xpandit.plugins.xrayjenkins.exceptions.XrayJenkinsGenericException;
 import com.xpandit.plugins.xrayjenkins.model.HostingType;
 import com.xpandit.plugins.xrayjenkins.model.ServerConfiguration;
 import com.xpandit.plugins.xrayjenkins.model.XrayInstance;
+import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
@@ -43,4 +44,42 @@ public class FormUtils {
         return items;
     }
 
+    /**
+     * Utility method to validate optional numeric fields (e.g.: concurrency limits) of the configuration forms.
+     *
+     * @param value the value of the field
+     * @return ok if the value is blank or a positive integer, error otherwise
+     */
+    public static FormValidation checkOptionalPositiveInteger(String value) {
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        try {
+            return Integer.parseInt(value.trim()) > 0
+                    ? FormValidation.ok()
+                    : FormValidation.error("The value cannot be negative nor 0");
+        } catch (NumberFormatException e) {
+            return FormValidation.error("The value must be a positive integer");
+        }
+    }
+
+    /**
+     * Validates an optional configuration value that, when present, must be a positive number (e.g.: 0.5).
+     *
+     * @param value the value to validate
+     * @return ok if the value is blank or a positive number, error otherwise
+     */
+    public static FormValidation checkOptionalPositiveNumber(String value) {
+        if (StringUtils.isBlank(value)) {
+            return FormValidation.ok();
+        }
+        try {
+            return Double.parseDouble(value.trim()) > 0
+                    ? FormValidation.ok()
+                    : FormValidation.error("The value cannot be negative nor 0");
+        } catch (NumberFormatException e) {
+            return FormValidation.error("The value must be a positive number");
+        }
+    }
+
 }
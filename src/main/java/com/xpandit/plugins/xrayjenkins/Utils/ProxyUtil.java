@@ -35,16 +35,39 @@ public class ProxyUtil {
                 .orElse(null);
 
         if (proxyConfiguration != null) {
-            final HttpHost proxy = getProxy(proxyConfiguration);
-            final CredentialsProvider credentialsProvider = getCredentialsProvider(proxyConfiguration);
-            final List<Pattern> noProxyUrlPatterns = getNoProxyUrlPatterns(proxyConfiguration.noProxyHost);
-
-            return new HttpRequestProvider.ProxyBean(proxy, credentialsProvider, noProxyUrlPatterns);
+            return createProxyBean(proxyConfiguration.name,
+                                   proxyConfiguration.port,
+                                   proxyConfiguration.getUserName(),
+                                   proxyConfiguration.getPassword(),
+                                   proxyConfiguration.noProxyHost);
         }
 
         return null;
     }
 
+    /**
+     * Gets the Proxy Bean based on the given proxy settings.
+     * Unlike {@link #createProxyBean()}, this doesn't need the Jenkins instance, so it can also be used in the agents.
+     *
+     * @param name        the proxy host name
+     * @param port        the proxy port
+     * @param userName    the proxy user name (if any)
+     * @param password    the proxy password (if any)
+     * @param noProxyHost the hosts that must not use the proxy
+     * @return the bean with the proxy information.
+     */
+    public static HttpRequestProvider.ProxyBean createProxyBean(String name,
+                                                                int port,
+                                                                @Nullable String userName,
+                                                                @Nullable String password,
+                                                                @Nullable String noProxyHost) {
+        final HttpHost proxy = new HttpHost(name, port);
+        final CredentialsProvider credentialsProvider = getCredentialsProvider(name, port, userName, password);
+        final List<Pattern> noProxyUrlPatterns = getNoProxyUrlPatterns(noProxyHost);
+
+        return new HttpRequestProvider.ProxyBean(proxy, credentialsProvider, noProxyUrlPatterns);
+    }
+
     // Similar to hudson.ProxyConfiguration.getNoProxyHostPatterns(String), but returns URL patterns, instead of domain patterns.
     private static List<Pattern> getNoProxyUrlPatterns(String noProxyHost) {
         if (StringUtils.isBlank(noProxyHost)) {
@@ -69,18 +92,14 @@ public class ProxyUtil {
         return Pattern.compile(regexp);
     }
 
-    private static HttpHost getProxy(ProxyConfiguration proxyConfiguration) {
-        return new HttpHost(proxyConfiguration.name, proxyConfiguration.port);
-    }
-
-    private static CredentialsProvider getCredentialsProvider(ProxyConfiguration proxyConfiguration) {
-        if (StringUtils.isBlank(proxyConfiguration.getUserName())) {
+    private static CredentialsProvider getCredentialsProvider(String name, int port, String userName, String password) {
+        if (StringUtils.isBlank(userName)) {
             return null;
         }
 
         final CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
-        final AuthScope authScope = new AuthScope(proxyConfiguration.name, proxyConfiguration.port);
-        final Credentials credentials = new UsernamePasswordCredentials(proxyConfiguration.getUserName(), proxyConfiguration.getPassword());
+        final AuthScope authScope = new AuthScope(name, port);
+        final Credentials credentials = new UsernamePasswordCredentials(userName, password);
 
         credentialsProvider.setCredentials(authScope, credentials);
         return credentialsProvider;
@@ -0,0 +1,11 @@
+package com.xpandit.plugins.xrayjenkins.exceptions;
+
+/**
+ * Xray refused a request because it is unavailable (e.g.: it kept answering Too Many Requests), the request can be
+ * done again later.
+ */
+public class XrayUnavailableException extends XrayJenkinsGenericException {
+    public XrayUnavailableException(String s) {
+        super(s);
+    }
+}
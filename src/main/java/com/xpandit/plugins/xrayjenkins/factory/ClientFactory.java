@@ -2,6 +2,8 @@ package com.xpandit.plugins.xrayjenkins.factory;
 
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.plugins.xrayjenkins.model.RemoteClientSettings;
 import com.xpandit.xray.service.XrayCloudCredentials;
 import com.xpandit.xray.service.XrayExporter;
 import com.xpandit.xray.service.XrayImporter;
@@ -19,6 +21,7 @@ import com.xpandit.xray.service.impl.delegates.HttpRequestProvider;
 import com.xpandit.xray.service.impl.delegates.authentication.BearerTokenAuthentication;
 import com.xpandit.xray.service.impl.delegates.authentication.UsernamePasswordAuthentication;
 import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
 import org.jenkinsci.plugins.plaincredentials.StringCredentials;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -212,6 +215,25 @@ public class ClientFactory {
         return Optional.empty();
     }
 
+    /**
+     * Creates a Xray client for result file importing, from settings that can be sent to the agents.
+     *
+     * @param settings the client settings (server address, credentials and proxy).
+     * @return Xray client with result files import capabilities.
+     */
+    public static XrayImporter getResultsImportClient(RemoteClientSettings settings) {
+        final HttpRequestProvider.ProxyBean proxyBean = settings.createProxyBean();
+
+        if (settings.getHosting() == HostingType.CLOUD) {
+            return new XrayImporterCloudImpl(settings.getUsername(), settings.getPassword(), proxyBean);
+        } else if (StringUtils.isNotBlank(settings.getBearerToken())) {
+            return new XrayImporterImpl(settings.getServerAddress(), new BearerTokenAuthentication(settings.getBearerToken()), proxyBean);
+        }
+        return new XrayImporterImpl(settings.getServerAddress(),
+                                    new UsernamePasswordAuthentication(settings.getUsername(), settings.getPassword()),
+                                    proxyBean);
+    }
+
     private static BearerTokenAuthentication getBearerTokenAuthentication(StringCredentials credentials) {
         String bearerToken = credentials.getSecret().getPlainText();
 
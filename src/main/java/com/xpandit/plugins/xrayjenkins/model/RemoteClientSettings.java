@@ -0,0 +1,125 @@
+package com.xpandit.plugins.xrayjenkins.model;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.xpandit.plugins.xrayjenkins.Utils.ProxyUtil;
+import com.xpandit.xray.service.impl.delegates.HttpRequestProvider;
+import hudson.ProxyConfiguration;
+import jenkins.model.Jenkins;
+import org.apache.commons.lang3.StringUtils;
+import org.jenkinsci.plugins.plaincredentials.StringCredentials;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Optional;
+
+/**
+ * Everything needed to create a Xray client in another JVM (e.g.: in the agent that holds the results files).
+ * The Jenkins credentials and proxy configuration are not available in the agents, so their values are copied here,
+ * and sent through the (already trusted) remoting channel.
+ */
+public class RemoteClientSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final HostingType hosting;
+    private final String serverAddress;
+    private final String username;
+    private final String password;
+    private final String bearerToken;
+
+    private String proxyName;
+    private int proxyPort;
+    private String proxyUserName;
+    private String proxyPassword;
+    private String noProxyHost;
+
+    private RemoteClientSettings(HostingType hosting,
+                                 String serverAddress,
+                                 String username,
+                                 String password,
+                                 String bearerToken) {
+        this.hosting = hosting;
+        this.serverAddress = serverAddress;
+        this.username = username;
+        this.password = password;
+        this.bearerToken = bearerToken;
+    }
+
+    /**
+     * Creates the settings of a Xray instance, using the given credentials and the Jenkins proxy configuration.
+     * Must be called in the controller.
+     *
+     * @param instance    the Xray instance
+     * @param credentials the resolved credentials of the instance
+     * @return the client settings, or empty if the credentials type is not supported by the hosting type.
+     */
+    public static Optional<RemoteClientSettings> create(@Nonnull XrayInstance instance, @Nonnull StandardCredentials credentials) {
+        final HostingType hosting = instance.getHosting() == null ? HostingType.SERVER : instance.getHosting();
+
+        final RemoteClientSettings settings;
+        if (credentials instanceof UsernamePasswordCredentials) {
+            final UsernamePasswordCredentials usernamePasswordCredentials = (UsernamePasswordCredentials) credentials;
+            settings = new RemoteClientSettings(hosting,
+                                                instance.getServerAddress(),
+                                                usernamePasswordCredentials.getUsername(),
+                                                usernamePasswordCredentials.getPassword().getPlainText(),
+                                                null);
+        } else if (credentials instanceof StringCredentials && hosting == HostingType.SERVER) {
+            settings = new RemoteClientSettings(hosting,
+                                                instance.getServerAddress(),
+                                                null,
+                                                null,
+                                                ((StringCredentials) credentials).getSecret().getPlainText());
+        } else {
+            return Optional.empty();
+        }
+
+        final ProxyConfiguration proxyConfiguration = Optional.ofNullable(Jenkins.getInstanceOrNull())
+                .map(jenkins -> jenkins.proxy)
+                .orElse(null);
+        if (proxyConfiguration != null) {
+            settings.proxyName = proxyConfiguration.name;
+            settings.proxyPort = proxyConfiguration.port;
+            settings.proxyUserName = proxyConfiguration.getUserName();
+            settings.proxyPassword = proxyConfiguration.getPassword();
+            settings.noProxyHost = proxyConfiguration.noProxyHost;
+        }
+        return Optional.of(settings);
+    }
+
+    /**
+     * @return the Proxy Bean, or null if there is no proxy configured.
+     */
+    @Nullable
+    public HttpRequestProvider.ProxyBean createProxyBean() {
+        if (StringUtils.isBlank(proxyName)) {
+            return null;
+        }
+        return ProxyUtil.createProxyBean(proxyName, proxyPort, proxyUserName, proxyPassword, noProxyHost);
+    }
+
+    public HostingType getHosting() {
+        return hosting;
+    }
+
+    public String getServerAddress() {
+        return serverAddress;
+    }
+
+    @Nullable
+    public String getUsername() {
+        return username;
+    }
+
+    @Nullable
+    public String getPassword() {
+        return password;
+    }
+
+    @Nullable
+    public String getBearerToken() {
+        return bearerToken;
+    }
+}
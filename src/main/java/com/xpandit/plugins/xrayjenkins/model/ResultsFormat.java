@@ -0,0 +1,92 @@
+package com.xpandit.plugins.xrayjenkins.model;
+
+import com.xpandit.xray.model.Endpoint;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The XML results formats whose files can be merged together: every file has a root element that groups one or more
+ * "suite" elements, and a file with several suites is imported the same way as several files with one suite each.
+ */
+public enum ResultsFormat {
+
+    JUNIT("testsuite", "testcase", "testsuites", Arrays.asList("testsuites", "testsuite")),
+    TESTNG("suite", "test-method", "testng-results", Collections.singletonList("testng-results")),
+    NUNIT("test-suite", "test-case", "test-run", Arrays.asList("test-run", "test-results")),
+    XUNIT("assembly", "test", "assemblies", Collections.singletonList("assemblies"));
+
+    private final String suiteElement;
+    private final String testElement;
+    private final String defaultRootElement;
+    private final List<String> rootElements;
+
+    ResultsFormat(String suiteElement, String testElement, String defaultRootElement, List<String> rootElements) {
+        this.suiteElement = suiteElement;
+        this.testElement = testElement;
+        this.defaultRootElement = defaultRootElement;
+        this.rootElements = rootElements;
+    }
+
+    /**
+     * @return the element that is repeated for each suite (e.g.: "testsuite" for JUnit)
+     */
+    public String getSuiteElement() {
+        return suiteElement;
+    }
+
+    /**
+     * @return the element that is repeated for each test (e.g.: "testcase" for JUnit)
+     */
+    public String getTestElement() {
+        return testElement;
+    }
+
+    /**
+     * @return the root elements of the files of this format
+     */
+    public List<String> getRootElements() {
+        return rootElements;
+    }
+
+    /**
+     * @return the root element used when the file root is a suite itself (e.g.: "testsuites" for JUnit)
+     */
+    public String getDefaultRootElement() {
+        return defaultRootElement;
+    }
+
+    /**
+     * @return a results file without any suite (e.g.: used to create an empty Test Execution)
+     */
+    public String getEmptyReport() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<" + defaultRootElement + "/>\n";
+    }
+
+    /**
+     * @param elementName the root element name of a results file
+     * @return true if a file with this root element can be merged, false otherwise
+     */
+    public boolean isRootElement(String elementName) {
+        return rootElements.contains(elementName);
+    }
+
+    /**
+     * @param endpoint the import endpoint
+     * @return the results format of the endpoint, or empty if its files cannot be merged
+     */
+    public static Optional<ResultsFormat> fromEndpoint(Endpoint endpoint) {
+        if (Endpoint.JUNIT.equals(endpoint) || Endpoint.JUNIT_MULTIPART.equals(endpoint)) {
+            return Optional.of(JUNIT);
+        } else if (Endpoint.TESTNG.equals(endpoint) || Endpoint.TESTNG_MULTIPART.equals(endpoint)) {
+            return Optional.of(TESTNG);
+        } else if (Endpoint.NUNIT.equals(endpoint) || Endpoint.NUNIT_MULTIPART.equals(endpoint)) {
+            return Optional.of(NUNIT);
+        } else if (Endpoint.XUNIT.equals(endpoint) || Endpoint.XUNIT_MULTIPART.equals(endpoint)) {
+            return Optional.of(XUNIT);
+        }
+        return Optional.empty();
+    }
+}
@@ -7,6 +7,7 @@ import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredenti
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.xpandit.plugins.xrayjenkins.Utils.CredentialUtil;
+import com.xpandit.plugins.xrayjenkins.Utils.FormUtils;
 import com.xpandit.plugins.xrayjenkins.Utils.ProxyUtil;
 import com.xpandit.plugins.xrayjenkins.factory.ClientFactory;
 import com.xpandit.xray.service.XrayClient;
@@ -176,6 +177,18 @@ public class ServerConfiguration extends GlobalConfiguration {
         return FormValidation.ok();
     }
 
+    public FormValidation doCheckMaxUploadConcurrency(@QueryParameter final String value) {
+        return FormUtils.checkOptionalPositiveInteger(value);
+    }
+
+    public FormValidation doCheckRequestsPerSecond(@QueryParameter final String value) {
+        return FormUtils.checkOptionalPositiveNumber(value);
+    }
+
+    public FormValidation doCheckRequestsBurst(@QueryParameter final String value) {
+        return FormUtils.checkOptionalPositiveInteger(value);
+    }
+
     @RequirePOST
 	public FormValidation doTestConnection(@AncestorInPath final Item item,
                                            @QueryParameter("hosting") final String hosting,
@@ -3,6 +3,7 @@ package com.xpandit.plugins.xrayjenkins.model;
 import hudson.model.Run;
 import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nullable;
 import java.util.Optional;
@@ -19,6 +20,10 @@ public class XrayInstance {
 	private HostingType hosting;
     private String credentialId;
     private CredentialResolver credentialResolver;
+	private String maxUploadConcurrency;//this must be a String, so it can be left empty in the configuration page
+	private String requestsPerSecond;
+	private String requestsBurst;
+	private boolean compressTransfers;
 
 	@DataBoundConstructor
  	public XrayInstance(String configID, String alias, HostingType hosting, String serverAddress, String credentialId) {
@@ -73,5 +78,43 @@ public class XrayInstance {
 	public void setCredentialId(@Nullable String credentialId) {
 		this.credentialId = credentialId;
 	}
-}
 
+	@Nullable
+	public String getMaxUploadConcurrency() {
+		return maxUploadConcurrency;
+	}
+
+	@DataBoundSetter
+	public void setMaxUploadConcurrency(@Nullable String maxUploadConcurrency) {
+		this.maxUploadConcurrency = maxUploadConcurrency;
+	}
+
+	@Nullable
+	public String getRequestsPerSecond() {
+		return requestsPerSecond;
+	}
+
+	@DataBoundSetter
+	public void setRequestsPerSecond(@Nullable String requestsPerSecond) {
+		this.requestsPerSecond = requestsPerSecond;
+	}
+
+	@Nullable
+	public String getRequestsBurst() {
+		return requestsBurst;
+	}
+
+	@DataBoundSetter
+	public void setRequestsBurst(@Nullable String requestsBurst) {
+		this.requestsBurst = requestsBurst;
+	}
+
+	public boolean isCompressTransfers() {
+		return compressTransfers;
+	}
+
+	@DataBoundSetter
+	public void setCompressTransfers(boolean compressTransfers) {
+		this.compressTransfers = compressTransfers;
+	}
+}
@@ -0,0 +1,161 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.model.Item;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Shows the state of a results import running in the background, and its results (the XRAY_* values) once it finishes.
+ * The build may be complete by then, so the results are only kept here, and the import logs to its own file.
+ */
+public class BackgroundUploadAction implements RunAction2 {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCESSFUL, FAILED
+    }
+
+    private static final String LOG_FILE_SUFFIX = ".log";
+    private static final String LOST_MESSAGE = "The import was lost when Jenkins restarted";
+
+    private final String id;
+    private final boolean durable;
+    private final long queuedTime;
+    private volatile Status status = Status.QUEUED;
+    private volatile String message;
+    private volatile long finishedTime;
+    private volatile Map<String, String> variables = Collections.emptyMap();
+
+    private transient Run<?, ?> run;
+
+    /**
+     * @param id      identifies the import in the build, several import steps of the same build have different IDs.
+     * @param durable true if the import survives a restart (i.e.: it is in the {@link UploadSpool}), false if it is only
+     *                in the {@link BackgroundUploadQueue}
+     */
+    public BackgroundUploadAction(String id, boolean durable) {
+        this.id = id;
+        this.durable = durable;
+        this.queuedTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks the import as waiting (again) in the queue, after a failed attempt.
+     *
+     * @param message the error of the failed attempt
+     */
+    public void queued(@CheckForNull String message) {
+        this.status = Status.QUEUED;
+        this.message = message;
+    }
+
+    public void running() {
+        this.status = Status.RUNNING;
+    }
+
+    /**
+     * Marks the import as finished.
+     *
+     * @param successful true if all the files were imported successfully
+     * @param message    a message to show
+     * @param variables  the values of the XRAY_* variables
+     */
+    public void finished(boolean successful, @CheckForNull String message, Map<String, String> variables) {
+        this.status = successful ? Status.SUCCESSFUL : Status.FAILED;
+        this.message = message;
+        this.variables = Collections.unmodifiableMap(new TreeMap<>(variables));
+        this.finishedTime = System.currentTimeMillis();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @CheckForNull
+    public String getMessage() {
+        return message;
+    }
+
+    public Date getQueuedTime() {
+        return new Date(queuedTime);
+    }
+
+    @CheckForNull
+    public Date getFinishedTime() {
+        return finishedTime == 0 ? null : new Date(finishedTime);
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param run the build
+     * @return the file where the background import logs its progress
+     */
+    public File getLogFile(Run<?, ?> run) {
+        return new File(run.getRootDir(), id + LOG_FILE_SUFFIX);
+    }
+
+    public void doLog(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        run.getParent().checkPermission(Item.READ);
+
+        final File logFile = getLogFile(run);
+        if (!logFile.exists()) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        try (OutputStream out = rsp.getOutputStream()) {
+            Files.copy(logFile.toPath(), out);
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+        // The background queue is kept in memory, its imports that did not finish will never run
+        if (!durable && (status == Status.QUEUED || status == Status.RUNNING)) {
+            this.status = Status.FAILED;
+            this.message = LOST_MESSAGE;
+        }
+    }
+
+    @CheckForNull
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @CheckForNull
+    @Override
+    public String getDisplayName() {
+        return "Xray background import";
+    }
+
+    @CheckForNull
+    @Override
+    public String getUrlName() {
+        return id;
+    }
+}
@@ -0,0 +1,71 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.FilePath;
+import hudson.slaves.WorkspaceList;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller-wide queue of the results imports running in the background, after the build step already returned.
+ * A small number of threads is used, so background imports don't compete with the imports running inside builds.
+ * <p>
+ * The queue is kept in memory: the imports not finished when Jenkins stops are lost (their {@link BackgroundUploadAction}
+ * is marked as failed when the build is loaded again). The imports that must survive a restart use the {@link UploadSpool}.
+ */
+public class BackgroundUploadQueue {
+
+    private static final int THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private BackgroundUploadQueue() {}
+
+    private static ThreadPoolExecutor createExecutor() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS,
+                                                                   THREADS,
+                                                                   KEEP_ALIVE_SECONDS,
+                                                                   TimeUnit.SECONDS,
+                                                                   new LinkedBlockingQueue<>(),
+                                                                   new NamingThreadFactory(new DaemonThreadFactory(), "Xray background upload"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Adds an import to the queue.
+     *
+     * @param task the import
+     * @return the future of the import
+     */
+    public static Future<?> submit(Runnable task) {
+        return EXECUTOR.submit(task);
+    }
+
+    /**
+     * Deletes the copy of the files of a background import, and the temporary directory used next to it (e.g.: by the
+     * merged and split results files).
+     *
+     * @param snapshotDir the directory with the copy of the files
+     */
+    public static void deleteSnapshot(FilePath snapshotDir) throws IOException, InterruptedException {
+        snapshotDir.deleteRecursive();
+        final FilePath tempDir = WorkspaceList.tempDir(snapshotDir);
+        if (tempDir != null) {
+            tempDir.deleteRecursive();
+        }
+    }
+
+    /**
+     * @return the number of imports waiting for a free thread.
+     */
+    public static int getQueueSize() {
+        return EXECUTOR.getQueue().size();
+    }
+}
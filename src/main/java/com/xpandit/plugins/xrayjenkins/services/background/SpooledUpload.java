@@ -0,0 +1,208 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.FilePath;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A results import waiting in the {@link UploadSpool}: the results files, copied to the spool directory of the import,
+ * and the import settings, with the build variables already expanded. Neither the build environment nor the step
+ * configuration are stored, only the values the import needs.
+ */
+public class SpooledUpload {
+
+    private final String id;
+    private final String jobFullName;
+    private final int buildNumber;
+    private final String instanceId;
+    private final String credentialId;
+    private final String endpointName;
+    private final String importFilePath;
+    private final Map<String, String> queryParams;
+    private final boolean importToSameExecution;
+    private final String info;
+    private final String infoSwitcher;
+    private final String testInfo;
+    private final String testInfoSwitcher;
+    private final List<String> filePaths;
+    private final long createdTime;
+    private long sizeBytes;
+
+    private int attempts;
+    private long nextAttemptTime;
+    private String lastError;
+
+    private transient File dir;
+
+    /**
+     * @param id                    identifies the import in the spool
+     * @param jobFullName           the full name of the job
+     * @param buildNumber           the build number
+     * @param instanceId            the Xray instance configuration ID
+     * @param credentialId          the credential of the step, if any
+     * @param endpointName          the import endpoint
+     * @param importFilePath        the expanded results file path of the step
+     * @param queryParams           the expanded query parameters of the import, by name
+     * @param importToSameExecution true if the files must be imported to the same Test Execution
+     * @param info                  the expanded Test Execution info (its text, or its path relative to the spool directory)
+     * @param infoSwitcher          tells if the info is a text or a file path
+     * @param testInfo              the expanded Test info (its text, or its path relative to the spool directory)
+     * @param testInfoSwitcher      tells if the test info is a text or a file path
+     * @param filePaths             the results files, relative to the spool directory of the import
+     * @param lastError             the error of the import that caused the results to be spooled
+     */
+    public SpooledUpload(String id, String jobFullName, int buildNumber, String instanceId, @Nullable String credentialId,
+                         String endpointName, String importFilePath, Map<String, String> queryParams,
+                         boolean importToSameExecution, @Nullable String info, @Nullable String infoSwitcher,
+                         @Nullable String testInfo, @Nullable String testInfoSwitcher, List<String> filePaths,
+                         String lastError) {
+        this.id = id;
+        this.jobFullName = jobFullName;
+        this.buildNumber = buildNumber;
+        this.instanceId = instanceId;
+        this.credentialId = credentialId;
+        this.endpointName = endpointName;
+        this.importFilePath = importFilePath;
+        this.queryParams = new HashMap<>(queryParams);
+        this.importToSameExecution = importToSameExecution;
+        this.info = info;
+        this.infoSwitcher = infoSwitcher;
+        this.testInfo = testInfo;
+        this.testInfoSwitcher = testInfoSwitcher;
+        this.filePaths = new ArrayList<>(filePaths);
+        this.createdTime = System.currentTimeMillis();
+        this.nextAttemptTime = this.createdTime;
+        this.lastError = lastError;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getJobFullName() {
+        return jobFullName;
+    }
+
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    @CheckForNull
+    public String getCredentialId() {
+        return credentialId;
+    }
+
+    public String getEndpointName() {
+        return endpointName;
+    }
+
+    public String getImportFilePath() {
+        return importFilePath;
+    }
+
+    public Map<String, String> getQueryParams() {
+        return Collections.unmodifiableMap(queryParams);
+    }
+
+    public boolean isImportToSameExecution() {
+        return importToSameExecution;
+    }
+
+    @CheckForNull
+    public String getInfo() {
+        return info;
+    }
+
+    @CheckForNull
+    public String getInfoSwitcher() {
+        return infoSwitcher;
+    }
+
+    @CheckForNull
+    public String getTestInfo() {
+        return testInfo;
+    }
+
+    @CheckForNull
+    public String getTestInfoSwitcher() {
+        return testInfoSwitcher;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public Date getCreatedTime() {
+        return new Date(createdTime);
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public Date getNextAttemptTime() {
+        return new Date(nextAttemptTime);
+    }
+
+    public boolean isDue(long now) {
+        return nextAttemptTime <= now;
+    }
+
+    @CheckForNull
+    public String getLastError() {
+        return lastError;
+    }
+
+    public int getFileCount() {
+        return filePaths.size();
+    }
+
+    /**
+     * @return the spool directory of the import.
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    void setDir(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the results files, in the spool directory of the import.
+     */
+    public List<FilePath> getFiles() {
+        final List<FilePath> files = new ArrayList<>(filePaths.size());
+        final FilePath base = new FilePath(dir);
+        for (String filePath : filePaths) {
+            files.add(new FilePath(base, filePath));
+        }
+        return files;
+    }
+
+    void failed(String error, long retryDelayMillis) {
+        this.attempts++;
+        this.lastError = error;
+        this.nextAttemptTime = System.currentTimeMillis() + retryDelayMillis;
+    }
+
+    void retryNow() {
+        this.nextAttemptTime = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,225 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.Util;
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Durable queue of the results imports that failed because Xray was unavailable (e.g.: Jira under maintenance, or a
+ * long Retry-After). Each import is stored in its own directory under JENKINS_HOME, with its results files, and is
+ * retried by {@link UploadSpoolDrain} until it succeeds.
+ * <p>
+ * The spool is bounded: when a new import doesn't fit, the oldest ones are evicted. Imports older than the maximum
+ * age are evicted too.
+ */
+public class UploadSpool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadSpool.class);
+    private static final String SPOOL_DIR_NAME = "xray-upload-spool";
+    private static final String UPLOAD_FILE_NAME = "upload.xml";
+    private static final String FILES_DIR_NAME = "files";
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]+");
+
+    static final int MAX_UPLOADS = Integer.getInteger(UploadSpool.class.getName() + ".maxUploads", 200);
+    static final long MAX_SIZE_BYTES = Long.getLong(UploadSpool.class.getName() + ".maxSizeMb", 1024L) * BYTES_PER_MEGABYTE;
+    static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong(UploadSpool.class.getName() + ".maxAgeHours", 72L));
+
+    // The spool is small and only changed by the import steps and the drain, so a single lock is enough.
+    private static final Object LOCK = new Object();
+
+    private UploadSpool() {}
+
+    /**
+     * @param id identifies the import in the spool
+     * @return the directory where the files of the import must be copied before calling {@link #add(SpooledUpload)}.
+     */
+    public static File getFilesDir(String id) {
+        return new File(getUploadDir(id), FILES_DIR_NAME);
+    }
+
+    /**
+     * Adds an import to the spool, replacing the import with the same ID, if any, and evicting the oldest imports if
+     * there isn't enough space for it.
+     *
+     * @param upload the import, its files already copied to {@link #getFilesDir(String)}
+     * @throws IOException if the import is bigger than the spool, or it cannot be saved
+     */
+    public static void add(SpooledUpload upload) throws IOException {
+        upload.setSizeBytes(getDirectorySize(getFilesDir(upload.getId()).toPath()));
+        if (upload.getSizeBytes() > MAX_SIZE_BYTES) {
+            delete(upload.getId());
+            throw new IOException("The results files (" + upload.getSizeBytes() / BYTES_PER_MEGABYTE
+                                          + " MB) don't fit in the Xray upload spool (" + MAX_SIZE_BYTES / BYTES_PER_MEGABYTE + " MB)");
+        }
+
+        synchronized (LOCK) {
+            final List<SpooledUpload> uploads = list();
+            uploads.removeIf(spooled -> spooled.getId().equals(upload.getId()));
+
+            long totalSize = upload.getSizeBytes();
+            for (SpooledUpload spooled : uploads) {
+                totalSize += spooled.getSizeBytes();
+            }
+
+            // The list is sorted by creation time, so the oldest imports are evicted first
+            while (!uploads.isEmpty() && (uploads.size() >= MAX_UPLOADS || totalSize > MAX_SIZE_BYTES)) {
+                final SpooledUpload evicted = uploads.remove(0);
+                totalSize -= evicted.getSizeBytes();
+                LOG.warn("Evicting the Xray import {} of {} #{} from the upload spool: the spool is full",
+                         evicted.getId(), evicted.getJobFullName(), evicted.getBuildNumber());
+                delete(evicted.getId());
+            }
+
+            upload.setDir(getFilesDir(upload.getId()));
+            getUploadFile(upload.getId()).write(upload);
+        }
+    }
+
+    /**
+     * @return the imports in the spool, oldest first.
+     */
+    public static List<SpooledUpload> list() {
+        final List<SpooledUpload> uploads = new ArrayList<>();
+        final File[] dirs = getSpoolDir().listFiles(File::isDirectory);
+        if (dirs == null) {
+            return uploads;
+        }
+
+        for (File dir : dirs) {
+            if (!ID_PATTERN.matcher(dir.getName()).matches()) {
+                continue;
+            }
+            final SpooledUpload upload = load(dir.getName());
+            if (upload != null) {
+                uploads.add(upload);
+            }
+        }
+        uploads.sort(Comparator.comparing(SpooledUpload::getCreatedTime));
+        return uploads;
+    }
+
+    @CheckForNull
+    public static SpooledUpload find(String id) {
+        return load(id);
+    }
+
+    /**
+     * @return the total size of the files in the spool.
+     */
+    public static long getSizeBytes() {
+        long size = 0L;
+        for (SpooledUpload upload : list()) {
+            size += upload.getSizeBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Saves a failed attempt to import a spooled import.
+     *
+     * @param upload           the import
+     * @param error            the error
+     * @param retryDelayMillis the time to wait before the next attempt
+     */
+    public static void failed(SpooledUpload upload, String error, long retryDelayMillis) {
+        upload.failed(error, retryDelayMillis);
+        save(upload);
+    }
+
+    /**
+     * Schedules a spooled import to be retried on the next drain.
+     *
+     * @param id the import ID
+     */
+    public static void retryNow(String id) {
+        final SpooledUpload upload = load(id);
+        if (upload != null) {
+            upload.retryNow();
+            save(upload);
+        }
+    }
+
+    /**
+     * Removes an import, and its files, from the spool.
+     *
+     * @param id the import ID
+     */
+    public static void delete(String id) {
+        synchronized (LOCK) {
+            try {
+                Util.deleteRecursive(getUploadDir(id));
+            } catch (IOException e) {
+                LOG.warn("Unable to delete the Xray import " + id + " from the upload spool", e);
+            }
+        }
+    }
+
+    private static void save(SpooledUpload upload) {
+        synchronized (LOCK) {
+            // The import may have been deleted meanwhile (e.g.: from the management page)
+            if (!getUploadFile(upload.getId()).exists()) {
+                return;
+            }
+            try {
+                getUploadFile(upload.getId()).write(upload);
+            } catch (IOException e) {
+                LOG.warn("Unable to save the Xray import " + upload.getId() + " in the upload spool", e);
+            }
+        }
+    }
+
+    @CheckForNull
+    private static SpooledUpload load(String id) {
+        final XmlFile file = getUploadFile(id);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            final SpooledUpload upload = (SpooledUpload) file.read();
+            upload.setDir(getFilesDir(id));
+            return upload;
+        } catch (IOException | ClassCastException e) {
+            LOG.warn("Unable to read the Xray import " + id + " from the upload spool", e);
+            return null;
+        }
+    }
+
+    private static long getDirectorySize(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                        .mapToLong(path -> path.toFile().length())
+                        .sum();
+        }
+    }
+
+    private static XmlFile getUploadFile(String id) {
+        return new XmlFile(new File(getUploadDir(id), UPLOAD_FILE_NAME));
+    }
+
+    private static File getUploadDir(String id) {
+        // The IDs are hex digests, anything else could point outside the spool
+        if (!ID_PATTERN.matcher(id).matches()) {
+            throw new IllegalArgumentException("Invalid Xray upload spool ID: " + id);
+        }
+        return new File(getSpoolDir(), id);
+    }
+
+    private static File getSpoolDir() {
+        return new File(Jenkins.get().getRootDir(), SPOOL_DIR_NAME);
+    }
+}
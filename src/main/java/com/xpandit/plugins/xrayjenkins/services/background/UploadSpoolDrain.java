@@ -0,0 +1,88 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import com.xpandit.plugins.xrayjenkins.task.XrayImportBuilder;
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+
+import javax.annotation.CheckForNull;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries the imports in the {@link UploadSpool}, oldest first.
+ * When an import fails, the other imports to the same Xray instance are not tried in the same run, and the import
+ * waits exponentially longer before its next attempt.
+ */
+@Extension
+public class UploadSpoolDrain extends AsyncPeriodicWork {
+
+    private static final long RECURRENCE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long INITIAL_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_BACKOFF_EXPONENT = 10;
+
+    public UploadSpoolDrain() {
+        super("Xray upload spool drain");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        final long now = System.currentTimeMillis();
+        final Set<String> unavailableInstances = new HashSet<>();
+
+        for (SpooledUpload upload : UploadSpool.list()) {
+            if (now - upload.getCreatedTime().getTime() > UploadSpool.MAX_AGE_MILLIS) {
+                listener.getLogger().println("Evicting " + upload.getId() + ": it could not be imported in "
+                                                     + TimeUnit.MILLISECONDS.toHours(UploadSpool.MAX_AGE_MILLIS) + " hours");
+                UploadSpool.delete(upload.getId());
+                continue;
+            }
+            if (!upload.isDue(now) || unavailableInstances.contains(upload.getInstanceId())) {
+                continue;
+            }
+
+            final Run<?, ?> build = findBuild(upload);
+            if (build == null) {
+                listener.getLogger().println("Evicting " + upload.getId() + ": the build "
+                                                     + upload.getJobFullName() + " #" + upload.getBuildNumber() + " no longer exists");
+                UploadSpool.delete(upload.getId());
+                continue;
+            }
+
+            listener.getLogger().println("Importing " + upload.getId() + " of " + build.getFullDisplayName());
+            try {
+                XrayImportBuilder.importSpooledResults(build, upload, listener);
+                UploadSpool.delete(upload.getId());
+                listener.getLogger().println("Imported " + upload.getId());
+            } catch (IOException | RuntimeException e) {
+                unavailableInstances.add(upload.getInstanceId());
+                final long retryDelayMillis = getRetryDelay(upload.getAttempts() + 1);
+                UploadSpool.failed(upload, e.getMessage(), retryDelayMillis);
+                listener.getLogger().println("Unable to import " + upload.getId() + ", retrying in "
+                                                     + TimeUnit.MILLISECONDS.toSeconds(retryDelayMillis) + " seconds: " + e.getMessage());
+            }
+        }
+    }
+
+    static long getRetryDelay(int attempts) {
+        final int exponent = Math.min(Math.max(attempts - 1, 0), MAX_BACKOFF_EXPONENT);
+        return Math.min(INITIAL_RETRY_DELAY_MILLIS << exponent, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    @CheckForNull
+    private static Run<?, ?> findBuild(SpooledUpload upload) {
+        final Job<?, ?> job = Jenkins.get().getItemByFullName(upload.getJobFullName(), Job.class);
+        return job == null ? null : job.getBuildByNumber(upload.getBuildNumber());
+    }
+}
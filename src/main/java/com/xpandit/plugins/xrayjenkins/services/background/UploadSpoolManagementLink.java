@@ -0,0 +1,76 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import javax.annotation.CheckForNull;
+import java.util.List;
+
+/**
+ * Management page of the {@link UploadSpool}: lists the imports waiting to be retried, and allows to retry them right
+ * away or to delete them.
+ */
+@Extension
+public class UploadSpoolManagementLink extends ManagementLink {
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    @CheckForNull
+    @Override
+    public String getIconFileName() {
+        return "clipboard.png";
+    }
+
+    @CheckForNull
+    @Override
+    public String getDisplayName() {
+        return "Xray upload spool";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Results imports waiting for Xray to be available again.";
+    }
+
+    @CheckForNull
+    @Override
+    public String getUrlName() {
+        return "xray-upload-spool";
+    }
+
+    public List<SpooledUpload> getUploads() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        return UploadSpool.list();
+    }
+
+    public long getSizeMegabytes() {
+        return UploadSpool.getSizeBytes() / BYTES_PER_MEGABYTE;
+    }
+
+    public long getMaxSizeMegabytes() {
+        return UploadSpool.MAX_SIZE_BYTES / BYTES_PER_MEGABYTE;
+    }
+
+    public int getMaxUploads() {
+        return UploadSpool.MAX_UPLOADS;
+    }
+
+    @RequirePOST
+    public HttpResponse doRetry(@QueryParameter String id) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        UploadSpool.retryNow(id);
+        return HttpResponses.redirectToDot();
+    }
+
+    @RequirePOST
+    public HttpResponse doDelete(@QueryParameter String id) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        UploadSpool.delete(id);
+        return HttpResponses.redirectToDot();
+    }
+}
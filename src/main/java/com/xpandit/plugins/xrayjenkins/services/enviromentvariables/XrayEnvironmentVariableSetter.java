@@ -1,6 +1,7 @@
 package com.xpandit.plugins.xrayjenkins.services.enviromentvariables;
 
 import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.ImportResponse;
 import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil;
 import com.xpandit.xray.model.UploadResult;
 import hudson.model.Run;
@@ -8,13 +9,17 @@ import hudson.model.TaskListener;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.FALSE_STRING;
 import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.TRUE_STRING;
@@ -23,6 +28,7 @@ import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.
 import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.getModifiedTestKeys;
 import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.getRawResponses;
 import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.isUploadSuccessful;
+import static com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.XrayEnvironmentVariableSetterUtil.parseResponses;
 
 /**
  * This class will contain and set the new values for the Xray Jenkins environment variables.
@@ -37,7 +43,14 @@ public class XrayEnvironmentVariableSetter {
         XRAY_TESTS  // Test Issues created/modified, separated by a semicolon.
     }
 
+    /**
+     * Longer raw responses are stored in a file of the build (see {@link XrayRawResponsesAction}), and
+     * XRAY_RAW_RESPONSE only has the URL where they can be read, so they don't end up in the build record.
+     */
+    static final int MAX_RAW_RESPONSE_LENGTH = Integer.getInteger(XrayEnvironmentVariableSetter.class.getName() + ".maxRawResponseLength", 16 * 1024);
+
     private final Map<XrayEnvironmentVariable, String> newVariables;
+    private List<String> rawResponses = Collections.emptyList();
 
     private XrayEnvironmentVariableSetter() {
         // We can't use Java native Synchronized structures since they are blocked by Jenkins in a Pipeline project
@@ -62,9 +75,9 @@ public class XrayEnvironmentVariableSetter {
                                                                                    final PrintStream logger) {
         final XrayEnvironmentVariableSetter variableSetter = new XrayEnvironmentVariableSetter();
 
-        variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE, getRawResponses(results));
+        variableSetter.setRawResponses(results);
         variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_IS_REQUEST_SUCCESSFUL, isUploadSuccessful(results));
-        variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_ISSUES_MODIFIED, getImportedFeatureIssueKeys(results, hostingType, logger));
+        variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_ISSUES_MODIFIED, getImportedFeatureIssueKeys(parseResponses(results, hostingType, logger)));
 
         return variableSetter;
     }
@@ -80,17 +93,36 @@ public class XrayEnvironmentVariableSetter {
     public static XrayEnvironmentVariableSetter parseResultImportResponse(final Collection<UploadResult> results,
                                                                           final HostingType hostingType,
                                                                           final PrintStream logger) {
+        return parseResultImportResponse(results, hostingType, logger, Collections.emptyList());
+    }
+
+    /**
+     * Parses all the Upload Results of a Test result importation, adding the Test Executions of the files that were
+     * not uploaded again, because they were already imported.
+     *
+     * @param results the request results.
+     * @param hostingType the hosting type of the Jira instance.
+     * @param logger the logger that will be used to log some messages.
+     * @param reusedTestExecKeys the Test Execution keys of the files already imported.
+     * @return the XrayEnvironmentVariableSetter will all the relevant information.
+     */
+    public static XrayEnvironmentVariableSetter parseResultImportResponse(final Collection<UploadResult> results,
+                                                                          final HostingType hostingType,
+                                                                          final PrintStream logger,
+                                                                          final Collection<String> reusedTestExecKeys) {
         if (results == null) {
             return failed();
         }
 
         final XrayEnvironmentVariableSetter variableSetter = new XrayEnvironmentVariableSetter();
 
-        variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE, getRawResponses(results));
+        variableSetter.setRawResponses(results);
         variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_IS_REQUEST_SUCCESSFUL, isUploadSuccessful(results));
 
-        final String testExecKeys = getModifiedTestExecutionsKeys(results, hostingType, logger);
-        final String testKeys = getModifiedTestKeys(results, hostingType, logger);
+        // Each response is parsed once, for all the variables
+        final List<ImportResponse> responses = parseResponses(results, hostingType, logger);
+        final String testExecKeys = addKeys(getModifiedTestExecutionsKeys(responses), reusedTestExecKeys);
+        final String testKeys = getModifiedTestKeys(responses);
         variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_TEST_EXECS, testExecKeys);
         variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_TESTS, testKeys);
         variableSetter.newVariables.put(XrayEnvironmentVariable.XRAY_ISSUES_MODIFIED, getAllKeys(testExecKeys, testKeys));
@@ -148,12 +180,32 @@ public class XrayEnvironmentVariableSetter {
         return variableSetter;
     }
 
+    private void setRawResponses(Collection<UploadResult> results) {
+        // The responses are only joined if they fit in the variable, a big import can have thousands of them
+        long length = Math.max(0, results.size() - 1);
+        for (UploadResult result : results) {
+            length += StringUtils.length(result.getMessage());
+        }
+
+        if (length <= MAX_RAW_RESPONSE_LENGTH) {
+            newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE, getRawResponses(results));
+            return;
+        }
+        rawResponses = new ArrayList<>(results.size());
+        for (UploadResult result : results) {
+            rawResponses.add(result.getMessage());
+        }
+        newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE, results.size() + " responses (" + length + " characters)");
+    }
+
     public void setAction(Run<?,?> build, TaskListener taskListener) {
         setAction(build, taskListener.getLogger());
     }
 
     private void setAction(Run<?,?> build, @Nullable PrintStream logger) {
         if (build != null) {
+            storeRawResponses(build, logger);
+
             // Builds the same name, but with the name of each XrayEnvironmentVariable.
             // Key - variable name; Value - Variable value
             final Map<String, String> newVariablesByName = getVariableValuesByName(logger);
@@ -164,6 +216,47 @@ public class XrayEnvironmentVariableSetter {
         }
     }
 
+    /**
+     * Writes the raw responses that are too long to the build directory, replacing XRAY_RAW_RESPONSE by the URL where
+     * they can be read.
+     */
+    private void storeRawResponses(Run<?,?> build, @Nullable PrintStream logger) {
+        build.removeActions(XrayRawResponsesAction.class);
+        if (rawResponses.isEmpty()) {
+            return;
+        }
+
+        try {
+            final XrayRawResponsesAction action = XrayRawResponsesAction.store(build, rawResponses);
+            build.addAction(action);
+            newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE,
+                             action.getCount() + " responses (" + action.getLength() + " characters) available at "
+                                     + XrayRawResponsesAction.getResponseUrl(build, 0) + " to "
+                                     + XrayRawResponsesAction.getResponseUrl(build, action.getCount() - 1));
+        } catch (IOException e) {
+            if (logger != null) {
+                logger.println("Unable to store the raw responses: " + e.getMessage());
+            }
+            newVariables.put(XrayEnvironmentVariable.XRAY_RAW_RESPONSE,
+                             StringUtils.abbreviate(StringUtils.join(rawResponses, XrayEnvironmentVariableSetterUtil.SEPARATOR), MAX_RAW_RESPONSE_LENGTH));
+        }
+        rawResponses = Collections.emptyList();
+    }
+
+    /**
+     * @return true if the new value of XRAY_IS_REQUEST_SUCCESSFUL is "true".
+     */
+    public boolean isSuccessful() {
+        return TRUE_STRING.equals(newVariables.get(XrayEnvironmentVariable.XRAY_IS_REQUEST_SUCCESSFUL));
+    }
+
+    /**
+     * @return the new value of each Xray environment variable, by variable name.
+     */
+    public Map<String, String> getVariables() {
+        return getVariableValuesByName(null);
+    }
+
     private Map<String, String> getVariableValuesByName(@Nullable PrintStream logger) {
         final Map<String, String> newVariablesByName = new HashMap<>();
         for (Map.Entry<XrayEnvironmentVariable, String> entry : newVariables.entrySet()) {
@@ -180,6 +273,20 @@ public class XrayEnvironmentVariableSetter {
         return newVariablesByName;
     }
 
+    private static String addKeys(String keys, Collection<String> otherKeys) {
+        final Set<String> keySet = new LinkedHashSet<>();
+        if (StringUtils.isNotBlank(keys)) {
+            keySet.addAll(Arrays.asList(StringUtils.split(keys, XrayEnvironmentVariableSetterUtil.SEPARATOR)));
+        }
+        for (String key : otherKeys) {
+            if (StringUtils.isNotBlank(key)) {
+                keySet.add(key);
+            }
+        }
+
+        return StringUtils.join(keySet, XrayEnvironmentVariableSetterUtil.SEPARATOR);
+    }
+
     private static String getAllKeys(String... allKeys) {
         final List<String> keyList = new ArrayList<>(allKeys.length);
         for (String keys : allKeys) {
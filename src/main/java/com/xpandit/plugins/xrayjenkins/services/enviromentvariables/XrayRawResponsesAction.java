@@ -0,0 +1,156 @@
+package com.xpandit.plugins.xrayjenkins.services.enviromentvariables;
+
+import hudson.model.Item;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+import jenkins.model.RunAction2;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Keeps the raw responses of the latest Xray request in a compressed file in the build directory, instead of in the
+ * build record. Each response is a separate entry of the file, so a single response can be read without reading the
+ * others, and nothing is loaded until a response is requested.
+ */
+public class XrayRawResponsesAction implements RunAction2 {
+
+    static final String RESPONSES_FILE_NAME = "xray-raw-responses.zip";
+    private static final String URL_NAME = "xray-responses";
+    private static final String ENTRY_SUFFIX = ".json";
+
+    private final int count;
+    private final long length;
+
+    private transient Run<?, ?> run;
+
+    private XrayRawResponsesAction(int count, long length) {
+        this.count = count;
+        this.length = length;
+    }
+
+    /**
+     * Writes the responses to the build directory, replacing the responses of a previous request of the same build.
+     *
+     * @param build     the build
+     * @param responses the raw responses
+     * @return the action that gives access to the responses
+     * @throws IOException if the file cannot be written
+     */
+    static XrayRawResponsesAction store(Run<?, ?> build, List<String> responses) throws IOException {
+        long length = 0L;
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(getResponsesFile(build).toPath()))) {
+            for (int i = 0; i < responses.size(); i++) {
+                final String response = responses.get(i) == null ? "" : responses.get(i);
+                out.putNextEntry(new ZipEntry(i + ENTRY_SUFFIX));
+                out.write(response.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+                length += response.length();
+            }
+        }
+        return new XrayRawResponsesAction(responses.size(), length);
+    }
+
+    static File getResponsesFile(Run<?, ?> build) {
+        return new File(build.getRootDir(), RESPONSES_FILE_NAME);
+    }
+
+    /**
+     * @param build the build
+     * @param index the index of the response
+     * @return the URL of the response, absolute if the Jenkins URL is configured, or relative to the Jenkins URL otherwise
+     */
+    static String getResponseUrl(Run<?, ?> build, int index) {
+        final String rootUrl = Jenkins.get().getRootUrl();
+        return StringUtils.defaultString(rootUrl) + build.getUrl() + URL_NAME + "/response?index=" + index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of characters of all the responses
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @param index the index of the response, in the order of the requests
+     * @return the response, or null if there is no response with that index
+     * @throws IOException if the file cannot be read
+     */
+    @CheckForNull
+    public String getResponse(int index) throws IOException {
+        final File file = getResponsesFile(run);
+        if (index < 0 || index >= count || !file.exists()) {
+            return null;
+        }
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final ZipEntry entry = zipFile.getEntry(index + ENTRY_SUFFIX);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = zipFile.getInputStream(entry)) {
+                return IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    public void doResponse(StaplerRequest req, StaplerResponse rsp, @QueryParameter int index) throws IOException {
+        run.getParent().checkPermission(Item.READ);
+
+        final String response = getResponse(index);
+        if (response == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND);
+            return;
+        }
+        rsp.setContentType("application/json;charset=UTF-8");
+        try (OutputStream out = rsp.getOutputStream()) {
+            out.write(response.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> r) {
+        this.run = r;
+    }
+
+    @CheckForNull
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @CheckForNull
+    @Override
+    public String getDisplayName() {
+        return "Xray raw responses";
+    }
+
+    @CheckForNull
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+}
@@ -0,0 +1,48 @@
+package com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util;
+
+import javax.annotation.CheckForNull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The issue keys of an Xray import response: the Test Execution key, and the keys of the Tests and Pre-conditions
+ * created or updated.
+ *
+ * @see ImportResponseParser
+ */
+public final class ImportResponse {
+
+    static final ImportResponse EMPTY = new ImportResponse(null, Collections.emptyList(), Collections.emptyList());
+
+    private final String testExecutionKey;
+    private final List<String> testKeys;
+    private final List<String> preconditionKeys;
+
+    ImportResponse(String testExecutionKey, List<String> testKeys, List<String> preconditionKeys) {
+        this.testExecutionKey = testExecutionKey;
+        this.testKeys = Collections.unmodifiableList(testKeys);
+        this.preconditionKeys = Collections.unmodifiableList(preconditionKeys);
+    }
+
+    /**
+     * @return the key of the Test Execution created or updated, or null if the response doesn't have it
+     */
+    @CheckForNull
+    public String getTestExecutionKey() {
+        return testExecutionKey;
+    }
+
+    /**
+     * @return the keys of the Tests created or updated (for the feature imports in Xray Server, all the issues)
+     */
+    public List<String> getTestKeys() {
+        return testKeys;
+    }
+
+    /**
+     * @return the keys of the Pre-conditions created or updated
+     */
+    public List<String> getPreconditionKeys() {
+        return preconditionKeys;
+    }
+}
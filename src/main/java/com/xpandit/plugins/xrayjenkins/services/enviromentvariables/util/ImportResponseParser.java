@@ -0,0 +1,137 @@
+package com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the issue keys of an Xray import response in a single pass, with a streaming parser, without building the whole
+ * JSON tree. The parts of the response that are not needed (e.g.: the errors) are skipped.
+ * <p>
+ * The supported responses are:
+ * <ul>
+ *     <li>Results import (Server): {@code {"testExecIssue": {"key": ...}, "testIssues": {"success": [{"key": ...}]}}}</li>
+ *     <li>Results import (Cloud): {@code {"key": ...}}</li>
+ *     <li>Feature import (Server): {@code [{"key": ...}]}</li>
+ *     <li>Feature import (Cloud): {@code {"updatedOrCreatedTests": [{"key": ...}], "updatedOrCreatedPreconditions": [{"key": ...}]}}</li>
+ * </ul>
+ */
+public class ImportResponseParser {
+
+    private static final String KEY = "key";
+    private static final String TEST_EXEC_ISSUE = "testExecIssue";
+    private static final String TEST_ISSUES = "testIssues";
+    private static final String SUCCESS = "success";
+    private static final String UPDATED_OR_CREATED_TESTS = "updatedOrCreatedTests";
+    private static final String UPDATED_OR_CREATED_PRECONDITIONS = "updatedOrCreatedPreconditions";
+
+    // Thread-safe, and expensive to create
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ImportResponseParser() {}
+
+    /**
+     * @param message     the body of the response
+     * @param hostingType the hosting type of the Jira instance
+     * @return the issue keys of the response, or no keys if it is not a valid JSON response
+     */
+    public static ImportResponse parse(@Nullable String message, HostingType hostingType) {
+        if (StringUtils.isBlank(message)) {
+            return ImportResponse.EMPTY;
+        }
+
+        final List<String> testKeys = new ArrayList<>();
+        final List<String> preconditionKeys = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(message)) {
+            final JsonToken rootToken = parser.nextToken();
+            if (rootToken == JsonToken.START_ARRAY) {
+                readKeys(parser, testKeys);
+                return new ImportResponse(null, testKeys, preconditionKeys);
+            } else if (rootToken != JsonToken.START_OBJECT) {
+                return ImportResponse.EMPTY;
+            }
+
+            String rootKey = null;
+            String testExecIssueKey = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String fieldName = parser.getCurrentName();
+                final JsonToken valueToken = parser.nextToken();
+
+                if (KEY.equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+                    rootKey = parser.getText();
+                } else if (TEST_EXEC_ISSUE.equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                    testExecIssueKey = readKey(parser);
+                } else if (TEST_ISSUES.equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                    readSuccessKeys(parser, testKeys);
+                } else if (UPDATED_OR_CREATED_TESTS.equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    readKeys(parser, testKeys);
+                } else if (UPDATED_OR_CREATED_PRECONDITIONS.equals(fieldName) && valueToken == JsonToken.START_ARRAY) {
+                    readKeys(parser, preconditionKeys);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            final String testExecutionKey = hostingType == HostingType.CLOUD ? rootKey : testExecIssueKey;
+            return new ImportResponse(testExecutionKey, testKeys, preconditionKeys);
+        } catch (IOException e) {
+            // Not a JSON response (e.g.: an HTML error page from a proxy)
+            return ImportResponse.EMPTY;
+        }
+    }
+
+    /**
+     * Reads the "key" field of the current object, skipping the other fields.
+     */
+    @Nullable
+    private static String readKey(JsonParser parser) throws IOException {
+        String key = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.VALUE_STRING && KEY.equals(fieldName)) {
+                key = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Reads the keys of the "success" array of the current object, skipping the other fields.
+     */
+    private static void readSuccessKeys(JsonParser parser, List<String> keys) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && SUCCESS.equals(fieldName)) {
+                readKeys(parser, keys);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads the "key" field of each object of the current array.
+     */
+    private static void readKeys(JsonParser parser, List<String> keys) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                final String key = readKey(parser);
+                if (StringUtils.isNotBlank(key)) {
+                    keys.add(key);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+}
@@ -1,11 +1,8 @@
 package com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util;
 
-import com.google.common.collect.Sets;
 import com.xpandit.plugins.xrayjenkins.model.HostingType;
 import com.xpandit.xray.model.UploadResult;
 import org.apache.commons.lang3.StringUtils;
-import org.json.JSONArray;
-import org.json.JSONObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -44,121 +41,59 @@ public class XrayEnvironmentVariableSetterUtil {
     }
 
     /**
-     * Gets all the modified Test Execution keys, joined by the SEPARATOR.
+     * Parses each response once, with {@link ImportResponseParser}.
      *
      * @param results all the request results.
-     * @return string representing the Test Execution keys created/modified in the requests.
+     * @param hostingType the hosting type of the Jira instance.
+     * @param logger the logger that will be used to log some messages.
+     * @return the issue keys of each response, in the same order of the results.
      */
-    public static String getModifiedTestExecutionsKeys(Collection<UploadResult> results, HostingType hostingType, @Nullable PrintStream logger) {
-        final Set<String> testExecutionKeys = new HashSet<>(results.size());
-        for (UploadResult result : results) {
-            final String testExecutionKey = getTestExecutionKey(result, hostingType, logger);
-
-            if (StringUtils.isNotBlank(testExecutionKey)) {
-                testExecutionKeys.add(testExecutionKey);
+    public static List<ImportResponse> parseResponses(Collection<UploadResult> results, HostingType hostingType, @Nullable PrintStream logger) {
+        final List<ImportResponse> responses = new ArrayList<>(results.size());
+        if (hostingType != HostingType.SERVER && hostingType != HostingType.CLOUD) {
+            if (logger != null) {
+                logger.println("[parseResponses] Hosting Type not implemented!");
             }
+            return responses;
         }
 
-        return StringUtils.join(testExecutionKeys, SEPARATOR);
-    }
-
-    private static String getTestExecutionKey(UploadResult result, HostingType hostingType, @Nullable PrintStream logger) {
-        JSONObject root;
-        try {
-            root = new JSONObject(result.getMessage());
-        } catch (Exception e) {
-            return StringUtils.EMPTY;
-        }
-
-        switch (hostingType) {
-            case CLOUD:
-                if (root.has("key")) {
-                    return root.getString("key");
-                }
-
-                // Test Exec Key not found in the place we were expecting it.
-                return StringUtils.EMPTY;
-            case SERVER:
-                if (root.has("testExecIssue")) {
-                    JSONObject testExecIssue = root.getJSONObject("testExecIssue");
-                    if (testExecIssue.has("key")) {
-                        return testExecIssue.getString("key");
-                    }
-                }
-
-                // Test Exec Key not found in the place we were expecting it.
-                return StringUtils.EMPTY;
-            default:
-                if (logger != null) {
-                    logger.println("[getTestExecutionKey] Hosting Type not implemented!");
-                }
-                return StringUtils.EMPTY;
+        for (UploadResult result : results) {
+            responses.add(ImportResponseParser.parse(result.getMessage(), hostingType));
         }
+        return responses;
     }
 
     /**
-     * Gets all the modified Test keys in a single request, joined by the SEPARATOR.
+     * Gets all the modified Test Execution keys, joined by the SEPARATOR.
      *
-     * @param results result of the upload requests.
-     * @param hostingType the hosting type of the Jira instance.
-     * @param logger the logger that will be used to log some messages.
+     * @param responses the parsed responses of the requests.
      * @return string representing the Test Execution keys created/modified in the requests.
      */
-    public static String getModifiedTestKeys(Collection<UploadResult> results, HostingType hostingType, @Nullable PrintStream logger) {
-        final Set<String> testKeys = new HashSet<>(results.size());
-        for (UploadResult result : results) {
-            final String testKey = getTestKey(result, hostingType, logger);
-
-            if (StringUtils.isNotBlank(testKey)) {
-                testKeys.add(testKey);
+    public static String getModifiedTestExecutionsKeys(Collection<ImportResponse> responses) {
+        final Set<String> testExecutionKeys = new HashSet<>(responses.size());
+        for (ImportResponse response : responses) {
+            if (StringUtils.isNotBlank(response.getTestExecutionKey())) {
+                testExecutionKeys.add(response.getTestExecutionKey());
             }
         }
 
-        return StringUtils.join(testKeys, SEPARATOR);
-    }
-
-    private static String getTestKey(UploadResult result, HostingType hostingType, @Nullable PrintStream logger) {
-        JSONObject root;
-        try {
-            root = new JSONObject(result.getMessage());
-        } catch (Exception e) {
-            return StringUtils.EMPTY;
-        }
-
-        switch (hostingType) {
-            case CLOUD:
-                // Xray Cloud doesn't provide information about created Tests
-                return StringUtils.EMPTY;
-            case SERVER:
-                Set<String> testKeys = extractTestKeysFromJson(root);
-
-                // Test Exec Key not found in the place we were expecting it.
-                return StringUtils.join(testKeys, SEPARATOR);
-            default:
-                if (logger != null) {
-                    logger.println("[getTestKey] Hosting Type not implemented!");
-                }
-                return StringUtils.EMPTY;
-        }
+        return StringUtils.join(testExecutionKeys, SEPARATOR);
     }
 
-    private static Set<String> extractTestKeysFromJson(JSONObject root) {
+    /**
+     * Gets all the modified Test keys, joined by the SEPARATOR.
+     * Xray Cloud doesn't provide information about created Tests in the results import responses.
+     *
+     * @param responses the parsed responses of the requests.
+     * @return string representing the Test keys created/modified in the requests.
+     */
+    public static String getModifiedTestKeys(Collection<ImportResponse> responses) {
         final Set<String> testKeys = new HashSet<>();
-
-        if (root.has("testIssues")) {
-            JSONObject testIssuesResult = root.getJSONObject("testIssues");
-            if (testIssuesResult.has("success")) {
-                JSONArray createdTestIssues = testIssuesResult.getJSONArray("success");
-                for (int i = 0; i < createdTestIssues.length(); i++) {
-                    JSONObject testIssue = createdTestIssues.getJSONObject(i);
-                    if (testIssue.has("key")) {
-                        testKeys.add(testIssue.getString("key"));
-                    }
-                }
-            }
+        for (ImportResponse response : responses) {
+            testKeys.addAll(response.getTestKeys());
         }
 
-        return testKeys;
+        return StringUtils.join(testKeys, SEPARATOR);
     }
 
     /**
@@ -182,86 +117,16 @@ public class XrayEnvironmentVariableSetterUtil {
     /**
      * Gets all the modified/created issues (Tests and Pre-conditions) from Cucumber feature file import requests.
      *
-     * @param results the Cucumber feature file import requests.
-     * @param hostingType the hosting type of the Jira instance.
-     * @param logger the logger that will be used to log some messages.
+     * @param responses the parsed responses of the Cucumber feature file import requests.
      * @return string with all the issue keys that were created and/or modified in the requests.
      */
-    public static String getImportedFeatureIssueKeys(Collection<UploadResult> results, HostingType hostingType, @Nullable PrintStream logger) {
-        final Set<String> allTestKeys = new HashSet<>(results.size());
-        for (UploadResult result : results) {
-            final String testKeys = getSingleResultImportedIssueKeys(result, hostingType, logger);
-
-            if (StringUtils.isNotBlank(testKeys)) {
-                allTestKeys.add(testKeys);
-            }
-        }
-
-        return StringUtils.join(allTestKeys, SEPARATOR);
-    }
-
-    private static String getSingleResultImportedIssueKeys(UploadResult result, HostingType hostingType, PrintStream logger) {
-        switch (hostingType) {
-            case CLOUD:
-                JSONObject cloudRoot;
-                try {
-                    cloudRoot = new JSONObject(result.getMessage());
-                } catch (Exception e) {
-                    return StringUtils.EMPTY;
-                }
-
-                return StringUtils.join(getCloudSingleResultImportedIssueKeys(cloudRoot), SEPARATOR);
-            case SERVER:
-                JSONArray serverRoot;
-                try {
-                    serverRoot = new JSONArray(result.getMessage());
-                } catch (Exception e) {
-                    return StringUtils.EMPTY;
-                }
-
-                return StringUtils.join(getServerSingleResultImportedIssueKeys(serverRoot), SEPARATOR);
-            default:
-                if (logger != null) {
-                    logger.println("[getSingleResultImportedTestKeys] Hosting Type not implemented!");
-                }
-                return StringUtils.EMPTY;
-        }
-    }
-
-    private static Set<String> getServerSingleResultImportedIssueKeys(JSONArray root) {
-        final Set<String> updatedOrCreatedIssueKeys = Sets.newHashSet();
-        for (int i = 0; i < root.length(); i++) {
-            final JSONObject test = root.getJSONObject(i);
-            if (test.has("key")) {
-                updatedOrCreatedIssueKeys.add(test.getString("key"));
-            }
+    public static String getImportedFeatureIssueKeys(Collection<ImportResponse> responses) {
+        final Set<String> allIssueKeys = new HashSet<>();
+        for (ImportResponse response : responses) {
+            allIssueKeys.addAll(response.getTestKeys());
+            allIssueKeys.addAll(response.getPreconditionKeys());
         }
 
-        return updatedOrCreatedIssueKeys;
-    }
-
-    private static Set<String> getCloudSingleResultImportedIssueKeys(JSONObject root) {
-        final Set<String> updatedOrCreatedIssueKeys = Sets.newHashSet();
-        if (root.has("updatedOrCreatedTests")) {
-            final JSONArray tests = root.getJSONArray("updatedOrCreatedTests");
-            for (int i = 0; i < tests.length(); i++) {
-                final JSONObject test = tests.getJSONObject(i);
-                if (test.has("key")) {
-                    updatedOrCreatedIssueKeys.add(test.getString("key"));
-                }
-            }
-        }
-
-        if (root.has("updatedOrCreatedPreconditions")) {
-            final JSONArray tests = root.getJSONArray("updatedOrCreatedPreconditions");
-            for (int i = 0; i < tests.length(); i++) {
-                final JSONObject test = tests.getJSONObject(i);
-                if (test.has("key")) {
-                    updatedOrCreatedIssueKeys.add(test.getString("key"));
-                }
-            }
-        }
-        
-        return updatedOrCreatedIssueKeys;
+        return StringUtils.join(allIssueKeys, SEPARATOR);
     }
 }
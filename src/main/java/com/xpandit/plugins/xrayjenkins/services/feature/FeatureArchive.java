@@ -0,0 +1,44 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+
+/**
+ * The zip file with the feature files to import, as it was when it was closed: the node where it was created only
+ * returns it once the whole file is written, so it can be uploaded right away. A zip streamed into the request has no
+ * path.
+ */
+public final class FeatureArchive implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final long size;
+    private final String checksum;
+
+    public FeatureArchive(@Nullable String path, long size, String checksum) {
+        this.path = path;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    /**
+     * @return the absolute path of the zip file, in the node where it is stored, or null if it was streamed
+     */
+    @CheckForNull
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the SHA-256 hex digest of the zip file
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+}
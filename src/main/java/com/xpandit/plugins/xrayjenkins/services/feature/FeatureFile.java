@@ -0,0 +1,40 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import java.io.Serializable;
+
+/**
+ * A feature file found in the workspace, with the attributes read while walking the folders, so the controller
+ * doesn't need to ask the agent for them again.
+ */
+public final class FeatureFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final long size;
+    private final long lastModified;
+
+    public FeatureFile(String path, long size, long lastModified) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return the absolute path of the file, in the node where it is stored
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the modification time of the file, in milliseconds since the epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,90 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent manifest of the feature files imported by a job, stored in the job directory.
+ * For each Xray instance, project and features folder, it keeps the content hash of each feature file (by its path relative to the
+ * features folder) as it was in the last successful import, so the next imports only upload the files added or changed
+ * since then, even on a fresh checkout.
+ */
+public class FeatureManifest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FeatureManifest.class);
+    private static final String MANIFEST_FILE_NAME = "xray-feature-manifest.xml";
+    // The manifest is only read and written for a few milliseconds, so a single lock for all the jobs is enough.
+    private static final Object LOCK = new Object();
+
+    private LinkedHashMap<String, HashMap<String, String>> hashesByPathByImport = new LinkedHashMap<>();
+
+    /**
+     * @param job        the job
+     * @param instanceId the Xray instance configuration ID
+     * @param projectKey the project where the features are imported
+     * @param folder     the features folder, relative to the workspace if it is in it
+     * @return the content hashes of the feature files of the last successful import, by relative path
+     */
+    public static Map<String, String> load(Job<?, ?> job, String instanceId, String projectKey, String folder) {
+        synchronized (LOCK) {
+            final Map<String, String> hashesByPath = read(job).hashesByPathByImport.get(getKey(instanceId, projectKey, folder));
+            return hashesByPath == null ? Collections.emptyMap() : new HashMap<>(hashesByPath);
+        }
+    }
+
+    /**
+     * Replaces the content hashes of the feature files, after a successful import.
+     *
+     * @param job          the job
+     * @param instanceId   the Xray instance configuration ID
+     * @param projectKey   the project where the features are imported
+     * @param folder       the features folder, relative to the workspace if it is in it
+     * @param hashesByPath the content hashes of the feature files, by relative path
+     */
+    public static void record(Job<?, ?> job, String instanceId, String projectKey, String folder, Map<String, String> hashesByPath) {
+        synchronized (LOCK) {
+            final FeatureManifest manifest = read(job);
+            manifest.hashesByPathByImport.put(getKey(instanceId, projectKey, folder), new HashMap<>(hashesByPath));
+
+            try {
+                getFile(job).write(manifest);
+            } catch (IOException e) {
+                LOG.warn("Unable to save the Xray feature manifest of " + job.getFullName(), e);
+            }
+        }
+    }
+
+    private static FeatureManifest read(Job<?, ?> job) {
+        final XmlFile file = getFile(job);
+        if (file.exists()) {
+            try {
+                final FeatureManifest manifest = (FeatureManifest) file.read();
+                if (manifest.hashesByPathByImport == null) {
+                    manifest.hashesByPathByImport = new LinkedHashMap<>();
+                }
+                return manifest;
+            } catch (IOException | ClassCastException e) {
+                LOG.warn("Unable to read the Xray feature manifest of " + job.getFullName() + ", starting a new one", e);
+            }
+        }
+        return new FeatureManifest();
+    }
+
+    private static XmlFile getFile(Job<?, ?> job) {
+        return new XmlFile(new File(job.getRootDir(), MANIFEST_FILE_NAME));
+    }
+
+    private static String getKey(String instanceId, String projectKey, String folder) {
+        // The paths of the hashes are relative to the folder, so the imports of different folders are kept apart
+        return instanceId + "|" + projectKey + "|" + folder;
+    }
+}
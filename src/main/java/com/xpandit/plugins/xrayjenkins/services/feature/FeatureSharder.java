@@ -0,0 +1,54 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Splits the feature files to import into several shards of (roughly) the same total size, so they can be imported
+ * with several smaller requests in parallel. The biggest files are assigned first, each one to the smallest shard.
+ */
+public class FeatureSharder {
+
+    private FeatureSharder() {}
+
+    /**
+     * @param featureFiles the feature files
+     * @param shardCount   the maximum number of shards
+     * @return the shards, without empty shards (there are less shards than files if there are few files)
+     */
+    public static List<List<FeatureFile>> shard(List<FeatureFile> featureFiles, int shardCount) {
+        final List<FeatureFile> bySize = new ArrayList<>(featureFiles);
+        bySize.sort(Comparator.comparingLong(FeatureFile::getSize).reversed());
+
+        final PriorityQueue<Shard> shards = new PriorityQueue<>(Comparator.comparingLong((Shard shard) -> shard.size)
+                                                                          .thenComparingInt(shard -> shard.index));
+        final List<List<FeatureFile>> result = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, Math.min(shardCount, featureFiles.size())); i++) {
+            final Shard shard = new Shard(i);
+            shards.add(shard);
+            result.add(shard.files);
+        }
+
+        for (FeatureFile featureFile : bySize) {
+            final Shard smallest = shards.poll();
+            smallest.files.add(featureFile);
+            smallest.size += featureFile.getSize();
+            shards.add(smallest);
+        }
+
+        result.removeIf(List::isEmpty);
+        return result;
+    }
+
+    private static class Shard {
+        private final int index;
+        private final List<FeatureFile> files = new ArrayList<>();
+        private long size;
+
+        Shard(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.xpandit.plugins.xrayjenkins.services.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket rate limiter for the requests made to a single Xray instance.
+ * The bucket is refilled with <i>permitsPerSecond</i> tokens per second, up to <i>burst</i> tokens, and each request
+ * consumes one token. When there are no tokens left, the request reserves the next token and waits for it.
+ * If <i>permitsPerSecond</i> is not positive, the limiter lets every request through without waiting.
+ *
+ * @see XrayRateLimiterRegistry
+ */
+public class XrayRateLimiter {
+
+    private double permitsPerSecond;
+    private double burst;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong waitingRequests = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    XrayRateLimiter(double permitsPerSecond, int burst) {
+        this.lastRefillNanos = System.nanoTime();
+        configure(permitsPerSecond, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * Updates the rate of the limiter, keeping the tokens currently available (up to the new burst).
+     *
+     * @param permitsPerSecond the number of requests allowed per second
+     * @param burst            the maximum number of requests that can be done at once, after an idle period
+     */
+    synchronized void configure(double permitsPerSecond, int burst) {
+        refill(System.nanoTime());
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(this.tokens, this.burst);
+    }
+
+    /**
+     * Waits until the next request is allowed by the rate limit.
+     *
+     * @return the time waited, in nanoseconds
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long acquire() throws InterruptedException {
+        final long waitNanos = reserveNext();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Reserves the next request allowed by the rate limit, without waiting for it.
+     *
+     * @return the time the request must wait before it is sent, in nanoseconds
+     */
+    public long reserveNext() {
+        requests.incrementAndGet();
+        final long waitNanos = reserve();
+        if (waitNanos > 0) {
+            waitingRequests.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    private synchronized long reserve() {
+        if (!isEnabled()) {
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        refill(now);
+
+        tokens -= 1.0;
+        if (tokens >= 0) {
+            return 0L;
+        }
+        // Tokens may go negative: the waiting requests are queued in the order they reserved their token.
+        return (long) (-tokens / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill(long now) {
+        if (isEnabled()) {
+            final double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+        }
+        lastRefillNanos = now;
+    }
+
+    public synchronized boolean isEnabled() {
+        return permitsPerSecond > 0;
+    }
+
+    public synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return the total time all the requests spent waiting for this limiter, in milliseconds.
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * @return the number of requests that had to wait for this limiter.
+     */
+    public long getWaitingRequests() {
+        return waitingRequests.get();
+    }
+
+    /**
+     * @return the number of requests that went through this limiter.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the current values of the counters of this limiter, which are never reset.
+     */
+    public Metrics getMetrics() {
+        return new Metrics(requests.get(), waitingRequests.get(), totalWaitNanos.get());
+    }
+
+    /**
+     * The counters of a limiter at some point in time.
+     */
+    public static class Metrics {
+
+        private final long requests;
+        private final long waitingRequests;
+        private final long totalWaitNanos;
+
+        Metrics(long requests, long waitingRequests, long totalWaitNanos) {
+            this.requests = requests;
+            this.waitingRequests = waitingRequests;
+            this.totalWaitNanos = totalWaitNanos;
+        }
+
+        /**
+         * @param start the counters at the start of the period
+         * @return the counters of the requests done since then
+         */
+        public Metrics since(Metrics start) {
+            return new Metrics(requests - start.requests,
+                               waitingRequests - start.waitingRequests,
+                               totalWaitNanos - start.totalWaitNanos);
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getWaitingRequests() {
+            return waitingRequests;
+        }
+
+        public long getTotalWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.xpandit.plugins.xrayjenkins.services.ratelimit;
+
+import com.xpandit.plugins.xrayjenkins.model.XrayInstance;
+import hudson.model.TaskListener;
+import jenkins.util.Timer;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one {@link XrayRateLimiter} per Xray instance (by configuration ID), shared by all the builds running in this
+ * Jenkins controller. This way, concurrent builds importing to the same Jira instance share the same request budget,
+ * instead of each one finding the server limit by itself.
+ */
+public class XrayRateLimiterRegistry {
+
+    private static final ConcurrentMap<String, XrayRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+    private static final long MIN_LOGGED_WAIT_MILLIS = 1000L;
+
+    private XrayRateLimiterRegistry() {}
+
+    /**
+     * Gets the rate limiter of an Xray instance, updated with the current instance configuration.
+     * If the instance has no rate limit configured, the returned limiter never waits.
+     *
+     * @param instance the Xray instance
+     * @return the rate limiter shared by all the requests to this instance
+     */
+    @Nonnull
+    public static XrayRateLimiter get(@Nonnull XrayInstance instance) {
+        final double permitsPerSecond = parsePositiveDouble(instance.getRequestsPerSecond());
+        final int burst = getBurst(instance.getRequestsBurst(), permitsPerSecond);
+
+        final XrayRateLimiter limiter = LIMITERS.computeIfAbsent(instance.getConfigID(),
+                                                                 configId -> new XrayRateLimiter(permitsPerSecond, burst));
+        limiter.configure(permitsPerSecond, burst);
+        return limiter;
+    }
+
+    /**
+     * Waits for the rate limiter of the instance, logging the time waited when relevant.
+     *
+     * @param limiter  the rate limiter
+     * @param listener the listener used to log the wait time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void acquire(@Nonnull XrayRateLimiter limiter, @CheckForNull TaskListener listener) throws InterruptedException {
+        final long waitMillis = TimeUnit.NANOSECONDS.toMillis(limiter.acquire());
+        if (listener != null && waitMillis >= MIN_LOGGED_WAIT_MILLIS) {
+            listener.getLogger().println("Waited " + waitMillis + " ms for the Xray instance request rate limit");
+        }
+    }
+
+    /**
+     * Same as {@link #acquire(XrayRateLimiter, TaskListener)}, but the tasks waiting for the rate limiter are scheduled
+     * instead of waited for, so they don't hold a thread of the given executor meanwhile.
+     *
+     * @param limiter  the rate limiter
+     * @param listener the listener used to log the wait time
+     * @param executor the executor of the requests
+     * @return an executor that dispatches each task to the given executor once the rate limiter allows it.
+     */
+    @Nonnull
+    public static Executor executor(@Nonnull XrayRateLimiter limiter,
+                                    @CheckForNull TaskListener listener,
+                                    @Nonnull Executor executor) {
+        return task -> {
+            final long waitNanos = limiter.reserveNext();
+            if (waitNanos <= 0) {
+                executor.execute(task);
+                return;
+            }
+            if (listener != null && TimeUnit.NANOSECONDS.toMillis(waitNanos) >= MIN_LOGGED_WAIT_MILLIS) {
+                listener.getLogger().println("Waiting " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms for the Xray instance request rate limit");
+            }
+            Timer.get().schedule(() -> {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // The executor was closed while the task was waiting, so the task is abandoned
+                }
+            }, waitNanos, TimeUnit.NANOSECONDS);
+        };
+    }
+
+    /**
+     * Logs the wait time metrics of the rate limiter since the start of an import. The limiter is shared, so the
+     * requests of other builds to the same instance during the import are also counted.
+     *
+     * @param limiter  the rate limiter
+     * @param start    the metrics of the limiter at the start of the import
+     * @param listener the listener used to log the metrics
+     */
+    public static void logMetrics(@Nonnull XrayRateLimiter limiter,
+                                  @Nonnull XrayRateLimiter.Metrics start,
+                                  @Nonnull TaskListener listener) {
+        if (limiter.isEnabled()) {
+            final XrayRateLimiter.Metrics metrics = limiter.getMetrics().since(start);
+            listener.getLogger().println(String.format(
+                    "Xray instance rate limit (%s requests/second): %d of %d requests waited during the import, %d ms waited in total",
+                    limiter.getPermitsPerSecond(),
+                    metrics.getWaitingRequests(),
+                    metrics.getRequests(),
+                    metrics.getTotalWaitMillis()));
+        }
+    }
+
+    private static int getBurst(String burst, double permitsPerSecond) {
+        final double parsedBurst = parsePositiveDouble(burst);
+        if (parsedBurst > 0) {
+            return (int) parsedBurst;
+        }
+        return (int) Math.max(1, Math.ceil(permitsPerSecond));
+    }
+
+    private static double parsePositiveDouble(String value) {
+        if (StringUtils.isBlank(value)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
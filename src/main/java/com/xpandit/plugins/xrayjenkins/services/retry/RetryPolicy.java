@@ -0,0 +1,388 @@
+package com.xpandit.plugins.xrayjenkins.services.retry;
+
+import com.xpandit.xray.model.UploadResult;
+import com.xpandit.xray.util.UploadResultUtil;
+import hudson.model.TaskListener;
+import jenkins.util.Timer;
+import org.apache.http.HttpStatus;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.xpandit.xray.util.UploadResultUtil.MAX_RETRY_AFTER_TIME_SECONDS;
+
+/**
+ * Retries the requests to Xray that fail with a transient error (see {@link RetryableError}), waiting between
+ * attempts with exponential backoff and full jitter (a random time between 0 and the backoff), or the Retry-After
+ * time when Xray sends it.
+ * <p>
+ * Each error class has its own maximum number of retries per request, and all the requests done with a policy share
+ * a retry budget, so a step talking to an unavailable Xray gives up instead of retrying every request. A step creates
+ * one policy each time it runs.
+ * <p>
+ * An upload that is not idempotent (e.g.: an import that creates a Test Execution) may have been processed by Xray
+ * even if its response was an error, so it is only retried when Xray surely did not process it: the connection
+ * failed, Xray answered 429, or Xray answered 503 with a Retry-After time. Any other failure of such an upload (e.g.: a
+ * 502 response, or a connection reset) aborts it, so the Test Execution is never created twice.
+ * <p>
+ * The waits are recorded in the {@link WaitTimeline} of the policy. Uploads done with
+ * {@link #executeUploadAsync(String, TaskListener, boolean, Call, Executor)} don't use any thread while they wait: the next
+ * attempt is scheduled in the Jenkins timer and then submitted to the upload executor.
+ */
+public class RetryPolicy {
+
+    static final int DEFAULT_BUDGET = Integer.getInteger(RetryPolicy.class.getName() + ".budget", 20);
+    static final long DEFAULT_BASE_DELAY_MILLIS = 1000L;
+    static final long DEFAULT_MAX_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long NO_RETRY = -1L;
+
+    private final AtomicInteger budget;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Map<RetryableError, Integer> maxRetries;
+    private final Sleeper sleeper;
+    private final ScheduledExecutorService scheduler;
+    private final WaitTimeline timeline = new WaitTimeline();
+
+    RetryPolicy(AtomicInteger budget, long baseDelayMillis, long maxDelayMillis, Map<RetryableError, Integer> maxRetries,
+                Sleeper sleeper, ScheduledExecutorService scheduler) {
+        this.budget = budget;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRetries = maxRetries;
+        this.sleeper = sleeper;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return a retry policy with a new retry budget and wait timeline, shared by the requests it is used for.
+     */
+    public static RetryPolicy create() {
+        return new RetryPolicy(new AtomicInteger(DEFAULT_BUDGET), DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS,
+                               getDefaultMaxRetries(), Thread::sleep, Timer.get());
+    }
+
+    static Map<RetryableError, Integer> getDefaultMaxRetries() {
+        final Map<RetryableError, Integer> maxRetries = new EnumMap<>(RetryableError.class);
+        for (RetryableError error : RetryableError.values()) {
+            maxRetries.put(error, error.getDefaultMaxRetries());
+        }
+        return maxRetries;
+    }
+
+    /**
+     * Does an upload request, retrying it while it fails with a transient error. The calling thread waits between the
+     * attempts.
+     *
+     * @param description describes the request in the log (e.g.: the file name)
+     * @param listener    the listener used to log the attempts
+     * @param idempotent  true if the upload can be done again without side effects (e.g.: it imports to an existing
+     *                    Test Execution), false if it may only be retried when Xray surely did not process it
+     * @param call        the request
+     * @return the result of the last attempt (it may still be an error, if the retries were exhausted)
+     * @throws IOException if the last attempt failed
+     */
+    public UploadResult executeUpload(String description, TaskListener listener, boolean idempotent, Call<UploadResult> call) throws IOException, InterruptedException {
+        final RetryState state = new RetryState(idempotent);
+        while (true) {
+            final UploadResult result;
+            long delayMillis;
+            try {
+                result = call.call();
+                delayMillis = getRetryDelay(description, listener, state, result);
+                if (delayMillis == NO_RETRY) {
+                    return result;
+                }
+            } catch (IOException | RuntimeException e) {
+                delayMillis = getRetryDelay(description, listener, state, e);
+                if (delayMillis == NO_RETRY) {
+                    throw e;
+                }
+            }
+            sleeper.sleep(delayMillis);
+        }
+    }
+
+    /**
+     * Does an upload request, retrying it while it fails with a transient error. No thread is used while waiting for
+     * the next attempt: it is scheduled in the Jenkins timer, and then submitted to the executor.
+     *
+     * @param description describes the request in the log (e.g.: the file name)
+     * @param listener    the listener used to log the attempts
+     * @param idempotent  true if the upload can be done again without side effects, see
+     *                    {@link #executeUpload(String, TaskListener, boolean, Call)}
+     * @param call        the request
+     * @param executor    the executor where the attempts are run
+     * @return the future result of the last attempt (it may still be an error, if the retries were exhausted)
+     */
+    public CompletableFuture<UploadResult> executeUploadAsync(String description, TaskListener listener, boolean idempotent,
+                                                              Call<UploadResult> call, Executor executor) {
+        return executeAsync(description, listener, call, executor, new RetryState(idempotent),
+                            (result, state) -> getRetryDelay(description, listener, state, result));
+    }
+
+    /**
+     * Does a request, retrying it while it fails with a transient I/O error. No thread is used while waiting for the
+     * next attempt: it is scheduled in the Jenkins timer, and then submitted to the executor.
+     *
+     * @param description describes the request in the log
+     * @param listener    the listener used to log the attempts
+     * @param call        the request
+     * @param executor    the executor where the attempts are run
+     * @return the future result of the request
+     */
+    public <T> CompletableFuture<T> executeAsync(String description, TaskListener listener, Call<T> call, Executor executor) {
+        return executeAsync(description, listener, call, executor, new RetryState(true), (result, state) -> NO_RETRY);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(String description, TaskListener listener, Call<T> call, Executor executor,
+                                                  RetryState state, ResultRetryDelay<T> resultRetryDelay) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Runnable attempt = new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    final T result = call.call();
+                    final long delayMillis = resultRetryDelay.get(result, state);
+                    if (delayMillis == NO_RETRY) {
+                        future.complete(result);
+                    } else {
+                        schedule(this, executor, delayMillis, future);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    final long delayMillis = getRetryDelay(description, listener, state, e);
+                    if (delayMillis == NO_RETRY) {
+                        future.completeExceptionally(e);
+                    } else {
+                        schedule(this, executor, delayMillis, future);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                }
+            }
+        };
+
+        try {
+            executor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Does a request, retrying it while it fails with a transient I/O error. The calling thread waits between the
+     * attempts.
+     *
+     * @param description describes the request in the log
+     * @param listener    the listener used to log the attempts
+     * @param call        the request
+     * @return the result of the request
+     * @throws IOException if the last attempt failed
+     */
+    public <T> T execute(String description, TaskListener listener, Call<T> call) throws IOException, InterruptedException {
+        final RetryState state = new RetryState(true);
+        while (true) {
+            try {
+                return call.call();
+            } catch (IOException | RuntimeException e) {
+                final long delayMillis = getRetryDelay(description, listener, state, e);
+                if (delayMillis == NO_RETRY) {
+                    throw e;
+                }
+                sleeper.sleep(delayMillis);
+            }
+        }
+    }
+
+    private void schedule(Runnable attempt, Executor executor, long delayMillis, CompletableFuture<?> future) {
+        scheduler.schedule(() -> {
+            try {
+                executor.execute(attempt);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the time to wait before attempting the upload again, or {@link #NO_RETRY} if the result is final.
+     */
+    private long getRetryDelay(String description, TaskListener listener, RetryState state, UploadResult result) {
+        final Optional<RetryableError> error = classify(result);
+        if (!error.isPresent()) {
+            return NO_RETRY;
+        }
+
+        final Optional<Long> retryAfterSeconds = UploadResultUtil.getRetryTime(result);
+        if (!state.idempotent && !isNotProcessed(result, retryAfterSeconds.isPresent())) {
+            listener.getLogger().println("Attempt #" + (state.retries + 1) + " of " + description + " failed (HTTP "
+                                                 + result.getStatusCode() + "), not retried: Xray may have processed it"
+                                                 + " and created the Test Execution");
+            return NO_RETRY;
+        }
+        if (retryAfterSeconds.isPresent() && retryAfterSeconds.get() > MAX_RETRY_AFTER_TIME_SECONDS) {
+            listener.getLogger().println(String.format(
+                    "Too Many Requests: Wait time (%s seconds) exceeds the maximum allowed (%s seconds)",
+                    retryAfterSeconds.get(),
+                    MAX_RETRY_AFTER_TIME_SECONDS));
+            return NO_RETRY;
+        }
+
+        final long delayMillis = retryAfterSeconds.map(TimeUnit.SECONDS::toMillis).orElseGet(() -> getBackoffMillis(state.retries));
+        return canRetry(description, listener, state, error.get(), "HTTP " + result.getStatusCode(), delayMillis, retryAfterSeconds.isPresent())
+                ? delayMillis
+                : NO_RETRY;
+    }
+
+    /**
+     * @return the time to wait before attempting the request again, or {@link #NO_RETRY} if the exception must be thrown.
+     */
+    private long getRetryDelay(String description, TaskListener listener, RetryState state, Exception exception) {
+        final Optional<RetryableError> error = classify(exception);
+        if (!error.isPresent()) {
+            return NO_RETRY;
+        }
+        if (!state.idempotent && error.get() != RetryableError.CONNECT_FAILURE) {
+            listener.getLogger().println("Attempt #" + (state.retries + 1) + " of " + description + " failed ("
+                                                 + exception + "), not retried: Xray may have processed it"
+                                                 + " and created the Test Execution");
+            return NO_RETRY;
+        }
+
+        final long delayMillis = getBackoffMillis(state.retries);
+        return canRetry(description, listener, state, error.get(), exception.toString(), delayMillis, false)
+                ? delayMillis
+                : NO_RETRY;
+    }
+
+    /**
+     * Checks if the error class and the retry budget still allow another attempt, logging the decision.
+     *
+     * @return true if the request must be attempted again, false otherwise
+     */
+    private boolean canRetry(String description, TaskListener listener, RetryState state, RetryableError error, String detail,
+                             long delayMillis, boolean serverImposed) {
+        final String failure = "Attempt #" + (state.retries + 1) + " of " + description + " failed (" + error + ": " + detail + ")";
+
+        final int errorRetries = state.retriesByError.merge(error, 1, Integer::sum);
+        if (errorRetries > maxRetries.getOrDefault(error, 0)) {
+            listener.getLogger().println(failure + ", no retries left for this error");
+            return false;
+        }
+        if (budget.getAndDecrement() <= 0) {
+            listener.getLogger().println(failure + ", the retry budget of the step is exhausted");
+            return false;
+        }
+
+        state.retries++;
+        timeline.record(description, error, delayMillis, serverImposed);
+        listener.getLogger().println(failure + ", retrying in " + delayMillis + " ms (" + getRemainingBudget()
+                                             + " retries left in this step)");
+        return true;
+    }
+
+    /**
+     * @param retry the number of retries already done
+     * @return a random time between 0 and the exponential backoff of the retry (full jitter)
+     */
+    long getBackoffMillis(int retry) {
+        final long backoff = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry, 20));
+        return ThreadLocalRandom.current().nextLong(backoff + 1);
+    }
+
+    /**
+     * @return the remaining retries of the policy.
+     */
+    public int getRemainingBudget() {
+        return Math.max(budget.get(), 0);
+    }
+
+    /**
+     * @return the waits of the requests done with this policy.
+     */
+    public WaitTimeline getTimeline() {
+        return timeline;
+    }
+
+    static Optional<RetryableError> classify(UploadResult result) {
+        if (result.isTooManyRequests()) {
+            return Optional.of(RetryableError.TOO_MANY_REQUESTS);
+        } else if (result.getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            return Optional.of(RetryableError.SERVER_ERROR);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return true if Xray surely did not process the request: it was rate limited, or Xray asked to wait before
+     * sending it again because it is unavailable.
+     */
+    static boolean isNotProcessed(UploadResult result, boolean hasRetryAfter) {
+        return result.isTooManyRequests()
+                || (hasRetryAfter && result.getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE);
+    }
+
+    static Optional<RetryableError> classify(Throwable exception) {
+        // The client and the builders wrap the I/O exceptions, so the whole cause chain is checked
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectTimeoutException || cause instanceof ConnectException) {
+                return Optional.of(RetryableError.CONNECT_FAILURE);
+            } else if (cause instanceof SocketTimeoutException) {
+                return Optional.of(RetryableError.READ_TIMEOUT);
+            } else if (cause instanceof SocketException || cause instanceof NoHttpResponseException) {
+                return Optional.of(RetryableError.CONNECTION_RESET);
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * A request to Xray.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface ResultRetryDelay<T> {
+        long get(T result, RetryState state);
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private static class RetryState {
+        private final Map<RetryableError, Integer> retriesByError = new EnumMap<>(RetryableError.class);
+        private final boolean idempotent;
+        private volatile int retries;
+
+        RetryState(boolean idempotent) {
+            this.idempotent = idempotent;
+        }
+    }
+}
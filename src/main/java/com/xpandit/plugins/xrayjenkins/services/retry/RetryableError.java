@@ -0,0 +1,24 @@
+package com.xpandit.plugins.xrayjenkins.services.retry;
+
+/**
+ * The classes of transient errors retried by the {@link RetryPolicy}, each one with its own maximum number of retries
+ * per request.
+ */
+public enum RetryableError {
+
+    TOO_MANY_REQUESTS(2),  // HTTP 429, the Retry-After header is honored
+    SERVER_ERROR(3),       // HTTP 5xx (e.g.: a 502 from a load balancer)
+    CONNECT_FAILURE(3),    // The connection could not be established (refused, or timed out)
+    CONNECTION_RESET(2),   // The connection was closed while the request was being sent or the response received
+    READ_TIMEOUT(1);       // No response in time: the request may have been processed, so it is retried only once
+
+    private final int defaultMaxRetries;
+
+    RetryableError(int defaultMaxRetries) {
+        this.defaultMaxRetries = defaultMaxRetries;
+    }
+
+    public int getDefaultMaxRetries() {
+        return defaultMaxRetries;
+    }
+}
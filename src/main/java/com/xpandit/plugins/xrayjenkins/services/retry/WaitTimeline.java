@@ -0,0 +1,98 @@
+package com.xpandit.plugins.xrayjenkins.services.retry;
+
+import hudson.model.TaskListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records the waits between the attempts of the requests to Xray, so the build log can show how much of the import
+ * time was spent waiting, and how much of it was imposed by the server (Retry-After).
+ */
+public class WaitTimeline {
+
+    private final long startMillis = System.currentTimeMillis();
+    private final List<Wait> waits = new ArrayList<>();
+
+    synchronized void record(String description, RetryableError error, long waitMillis, boolean serverImposed) {
+        waits.add(new Wait(System.currentTimeMillis() - startMillis, description, error, waitMillis, serverImposed));
+    }
+
+    public synchronized boolean isEmpty() {
+        return waits.isEmpty();
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        long total = 0L;
+        for (Wait wait : waits) {
+            total += wait.waitMillis;
+        }
+        return total;
+    }
+
+    public synchronized long getServerImposedWaitMillis() {
+        long total = 0L;
+        for (Wait wait : waits) {
+            if (wait.serverImposed) {
+                total += wait.waitMillis;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param description the description of the request (e.g.: the file name)
+     * @param error       the class of the errors
+     * @return the time waited after the errors of that class of the request
+     */
+    public synchronized long getWaitMillis(String description, RetryableError error) {
+        long total = 0L;
+        for (Wait wait : waits) {
+            if (wait.error == error && wait.description.equals(description)) {
+                total += wait.waitMillis;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Logs each wait, with the time it started (since the beginning of the import), and the totals.
+     *
+     * @param listener the listener
+     */
+    public synchronized void log(TaskListener listener) {
+        if (waits.isEmpty()) {
+            return;
+        }
+
+        listener.getLogger().println("Xray wait timeline:");
+        for (Wait wait : waits) {
+            listener.getLogger().println(String.format(Locale.ROOT, "  +%.1fs %s %s: waited %.1fs%s",
+                                                       wait.offsetMillis / 1000.0,
+                                                       wait.description,
+                                                       wait.error,
+                                                       wait.waitMillis / 1000.0,
+                                                       wait.serverImposed ? " (Retry-After)" : ""));
+        }
+        listener.getLogger().println(String.format(Locale.ROOT, "Time waiting for Xray: %.1fs, %.1fs of which imposed by the server",
+                                                   getTotalWaitMillis() / 1000.0,
+                                                   getServerImposedWaitMillis() / 1000.0));
+    }
+
+    private static class Wait {
+        private final long offsetMillis;
+        private final String description;
+        private final RetryableError error;
+        private final long waitMillis;
+        private final boolean serverImposed;
+
+        Wait(long offsetMillis, String description, RetryableError error, long waitMillis, boolean serverImposed) {
+            this.offsetMillis = offsetMillis;
+            this.description = description;
+            this.error = error;
+            this.waitMillis = waitMillis;
+            this.serverImposed = serverImposed;
+        }
+    }
+}
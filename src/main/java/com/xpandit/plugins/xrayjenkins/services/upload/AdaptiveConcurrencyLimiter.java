@@ -0,0 +1,240 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import jenkins.util.Timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Self-tuning limit for the number of uploads in flight, based on the AIMD (Additive Increase, Multiplicative
+ * Decrease) algorithm.
+ * While the responses are successful and fast, the limit grows by one upload per "window" of completed uploads.
+ * When Xray answers with a 429 (Too Many Requests) or the latency spikes, the limit is cut in half. The latency of a file
+ * bigger than {@link #REFERENCE_BYTES} is compared per {@link #REFERENCE_BYTES} sent, so a big file after several small
+ * ones is not taken for a spike. A 429 response with
+ * a Retry-After value also pauses new uploads until that time has passed, so the other parallel uploads stop
+ * hammering the server while it asks us to wait.
+ * <p>
+ * The permits are granted asynchronously: an upload waiting for a permit (or for the end of a pause) doesn't hold a
+ * thread, it is only dispatched to its executor once the permit is granted, see {@link #executor(Executor)}.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_SPIKE_FACTOR = 2.0;
+    private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+    private static final int MIN_LATENCY_SAMPLES = 3;
+    private static final long MIN_DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final long REFERENCE_BYTES = 64 * 1024L;
+
+    private final int maxLimit;
+    private final ScheduledExecutorService scheduler;
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+    private int latencySamples;
+    private double baselineLatencyMillis;
+    private long lastDecreaseNanos;
+    private long pausedUntilNanos;
+    private boolean grantScheduled;
+
+    /**
+     * @param initialLimit the number of uploads allowed in flight at the start
+     * @param maxLimit     the maximum number of uploads that can ever be in flight (e.g.: the number of upload threads)
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this(initialLimit, maxLimit, Timer.get());
+    }
+
+    /**
+     * @param initialLimit the number of uploads allowed in flight at the start
+     * @param maxLimit     the maximum number of uploads that can ever be in flight (e.g.: the number of upload threads)
+     * @param scheduler    grants the permits waiting for the end of a pause
+     */
+    AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, ScheduledExecutorService scheduler) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.min(Math.max(1, initialLimit), this.maxLimit);
+        this.scheduler = scheduler;
+        this.lastDecreaseNanos = System.nanoTime() - MIN_DECREASE_INTERVAL_NANOS;
+        this.pausedUntilNanos = System.nanoTime();
+    }
+
+    /**
+     * Asks for a permit to start a new upload, without blocking: the future is completed when the permit is granted,
+     * by the thread releasing a permit or by the scheduler at the end of a pause.
+     * Every granted permit must be followed by one of {@link #onSuccess(long, long)}, {@link #onTooManyRequests(long)}
+     * or {@link #onDropped()}, once the upload finishes. A permit cancelled before it is granted is discarded.
+     *
+     * @return the future permit
+     */
+    public CompletableFuture<Void> acquire() {
+        final CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            waiting.add(permit);
+        }
+        grantPermits();
+        return permit;
+    }
+
+    /**
+     * @param executor the executor of the uploads
+     * @return an executor that waits (without blocking) for a permit before dispatching each task to the given executor.
+     * Each task must report its outcome to this limiter.
+     */
+    public Executor executor(Executor executor) {
+        return task -> acquire().thenRun(() -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The executor was closed with the import, so the task is abandoned
+                onDropped();
+            }
+        });
+    }
+
+    /**
+     * Releases an upload that was accepted by the server.
+     *
+     * @param latencyMillis the time the request took
+     * @param bytes         the bytes sent in the request, or -1 if unknown
+     */
+    public void onSuccess(long latencyMillis, long bytes) {
+        synchronized (this) {
+            release();
+
+            final double normalizedLatencyMillis = normalizeLatency(latencyMillis, bytes);
+            final boolean isLatencySpike = latencySamples >= MIN_LATENCY_SAMPLES
+                    && normalizedLatencyMillis > baselineLatencyMillis * LATENCY_SPIKE_FACTOR;
+            updateBaselineLatency(normalizedLatencyMillis);
+
+            if (isLatencySpike) {
+                decrease();
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        grantPermits();
+    }
+
+    /**
+     * Releases an upload that was rejected with a 429 (Too Many Requests) response.
+     *
+     * @param retryAfterSeconds the time the server asked us to wait (0 if unknown)
+     */
+    public void onTooManyRequests(long retryAfterSeconds) {
+        synchronized (this) {
+            release();
+            decrease();
+
+            if (retryAfterSeconds > 0) {
+                pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds));
+            }
+        }
+        grantPermits();
+    }
+
+    /**
+     * Releases an upload that failed for a reason that is not related to the server load, so it doesn't change the limit.
+     */
+    public void onDropped() {
+        synchronized (this) {
+            release();
+        }
+        grantPermits();
+    }
+
+    /**
+     * @return the current number of uploads allowed in flight
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private void release() {
+        inFlight = Math.max(0, inFlight - 1);
+    }
+
+    /**
+     * Grants the waiting permits allowed by the limit, or schedules it at the end of the pause. The permits are
+     * completed outside the lock, as completing them dispatches the uploads.
+     */
+    private void grantPermits() {
+        final List<CompletableFuture<Void>> granted = new ArrayList<>();
+        synchronized (this) {
+            final long pauseNanos = pausedUntilNanos - System.nanoTime();
+            if (pauseNanos > 0) {
+                if (!grantScheduled && !waiting.isEmpty()) {
+                    grantScheduled = true;
+                    scheduler.schedule(this::grantScheduledPermits, pauseNanos, TimeUnit.NANOSECONDS);
+                }
+            } else {
+                while (!waiting.isEmpty() && inFlight < getLimit()) {
+                    final CompletableFuture<Void> permit = waiting.poll();
+                    if (!permit.isDone()) {
+                        inFlight++;
+                        granted.add(permit);
+                    }
+                }
+            }
+        }
+
+        for (CompletableFuture<Void> permit : granted) {
+            if (!permit.complete(null)) {
+                // Cancelled meanwhile
+                onDropped();
+            }
+        }
+    }
+
+    private void grantScheduledPermits() {
+        synchronized (this) {
+            grantScheduled = false;
+        }
+        grantPermits();
+    }
+
+    private void decrease() {
+        // Several uploads usually fail at the same time for the same overload, so we only cut the limit once per interval.
+        final long now = System.nanoTime();
+        if (now - lastDecreaseNanos >= MIN_DECREASE_INTERVAL_NANOS) {
+            limit = Math.max(1.0, limit * BACKOFF_RATIO);
+            lastDecreaseNanos = now;
+        }
+    }
+
+    /**
+     * @return the latency per {@link #REFERENCE_BYTES} sent, or the latency itself for small (or unknown size) requests,
+     * where the fixed cost of the request dominates.
+     */
+    static double normalizeLatency(long latencyMillis, long bytes) {
+        if (bytes <= REFERENCE_BYTES) {
+            return latencyMillis;
+        }
+        return latencyMillis * ((double) REFERENCE_BYTES / bytes);
+    }
+
+    private void updateBaselineLatency(double latencyMillis) {
+        if (latencySamples == 0) {
+            baselineLatencyMillis = latencyMillis;
+        } else {
+            baselineLatencyMillis += LATENCY_SMOOTHING_FACTOR * (latencyMillis - baselineLatencyMillis);
+        }
+        latencySamples++;
+    }
+}
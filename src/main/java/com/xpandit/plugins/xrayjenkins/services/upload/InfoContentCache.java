@@ -0,0 +1,106 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.FilePath;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the contents of the info files of an import (Test Execution info and Test info), so each file is read once
+ * (usually from the agent) and not once per uploaded results file.
+ * The contents are kept in memory up to a maximum size, the rest are copied to temporary files in the controller,
+ * which are deleted when the cache is closed.
+ */
+public class InfoContentCache implements Closeable {
+
+    static final long DEFAULT_MAX_MEMORY_BYTES = Long.getLong(InfoContentCache.class.getName() + ".maxMemoryBytes", 1024L * 1024L);
+
+    private static final String TEMP_FILE_PREFIX = "xray-info-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final long maxMemoryBytes;
+    private final Map<String, CachedContent> contents = new HashMap<>();
+    private long memoryBytes;
+
+    public InfoContentCache() {
+        this(DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    /**
+     * @param maxMemoryBytes the maximum size of the contents kept in memory
+     */
+    public InfoContentCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Opens the content of the file, reading it only the first time.
+     *
+     * @param file the info file
+     * @return a new stream with the file content, to be closed by the caller
+     */
+    public synchronized InputStream open(FilePath file) throws IOException, InterruptedException {
+        CachedContent content = contents.get(file.getRemote());
+        if (content == null) {
+            content = read(file);
+            contents.put(file.getRemote(), content);
+        }
+        return content.open();
+    }
+
+    private CachedContent read(FilePath file) throws IOException, InterruptedException {
+        if (memoryBytes + file.length() <= maxMemoryBytes) {
+            final byte[] bytes;
+            try (InputStream inputStream = file.read()) {
+                bytes = IOUtils.toByteArray(inputStream);
+            }
+            memoryBytes += bytes.length;
+            return new CachedContent(bytes, null);
+        }
+
+        final File tempFile = File.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+        try (OutputStream outputStream = Files.newOutputStream(tempFile.toPath())) {
+            file.copyTo(outputStream);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+        return new CachedContent(null, tempFile);
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (CachedContent content : contents.values()) {
+            if (content.file != null) {
+                Files.deleteIfExists(content.file.toPath());
+            }
+        }
+        contents.clear();
+        memoryBytes = 0L;
+    }
+
+    private static class CachedContent {
+        private final byte[] bytes;
+        private final File file;
+
+        CachedContent(byte[] bytes, File file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        InputStream open() throws IOException {
+            return bytes != null ? new ByteArrayInputStream(bytes) : Files.newInputStream(file.toPath());
+        }
+    }
+}
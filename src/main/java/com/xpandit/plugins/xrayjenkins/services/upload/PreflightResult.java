@@ -0,0 +1,48 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import javax.annotation.CheckForNull;
+import java.io.Serializable;
+
+/**
+ * The outcome of the pre-flight check of a results file: the number of tests found, or why the file is invalid.
+ */
+public class PreflightResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final int testCount;
+    private final String error;
+
+    PreflightResult(String path, int testCount, String error) {
+        this.path = path;
+        this.testCount = testCount;
+        this.error = error;
+    }
+
+    /**
+     * @return the absolute path of the results file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of tests in the file (0 if the file is invalid)
+     */
+    public int getTestCount() {
+        return testCount;
+    }
+
+    /**
+     * @return why the file is invalid, or null if it is valid
+     */
+    @CheckForNull
+    public String getError() {
+        return error;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+}
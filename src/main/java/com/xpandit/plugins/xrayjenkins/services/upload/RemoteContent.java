@@ -0,0 +1,45 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+
+/**
+ * The info (or test info) of the import: either the path of a file in the same JVM as the results file,
+ * or the text content itself.
+ */
+public class RemoteContent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String filePath;
+    private final String text;
+
+    private RemoteContent(String filePath, String text) {
+        this.filePath = filePath;
+        this.text = text;
+    }
+
+    public static RemoteContent ofFile(String remotePath) {
+        return new RemoteContent(remotePath, null);
+    }
+
+    public static RemoteContent ofText(String text) {
+        return new RemoteContent(null, text);
+    }
+
+    /**
+     * @return the path of the file with the content, or null if it is a text
+     */
+    @Nullable
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * @return the text content, or null if it is a file
+     */
+    @Nullable
+    public String getText() {
+        return text;
+    }
+}
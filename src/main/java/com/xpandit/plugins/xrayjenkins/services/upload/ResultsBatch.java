@@ -0,0 +1,46 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A file to be uploaded in a single request: either one of the original results files, or a temporary file with the
+ * suites of several results files merged together, or with some of the suites of a big results file (a chunk).
+ */
+public class ResultsBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+    private final List<String> sourcePaths;
+    private final boolean merged;
+
+    ResultsBatch(String path, List<String> sourcePaths, boolean merged) {
+        this.path = path;
+        this.sourcePaths = Collections.unmodifiableList(new ArrayList<>(sourcePaths));
+        this.merged = merged;
+    }
+
+    /**
+     * @return the absolute path of the file to upload
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the absolute paths of the results files included in this batch
+     */
+    public List<String> getSourcePaths() {
+        return sourcePaths;
+    }
+
+    /**
+     * @return true if the file to upload is a temporary file that must be deleted after the upload
+     */
+    public boolean isMerged() {
+        return merged;
+    }
+}
@@ -0,0 +1,214 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups small results files into batches of (roughly) a target size, merging the suites of each batch into a single
+ * temporary file, so they can be imported with one request instead of one request per file.
+ * The root element of a merged file has no attributes: the totals of the original roots (e.g.: tests, failures, time)
+ * would be wrong for the batch. The other children of the original roots (e.g.: the NUnit environment) are copied once
+ * per element name, from the first file that has them.
+ * The files are read and written with StAX, so the memory used doesn't depend on the file sizes.
+ * Files bigger than the target size, or that cannot be parsed, are kept as they are.
+ */
+public class ResultsFileBatcher {
+
+    private static final String BATCH_FILE_PREFIX = "xray-batch-";
+    private static final String BATCH_FILE_SUFFIX = ".xml";
+
+    private final ResultsFormat format;
+    private final long targetSizeBytes;
+    private final File outputDir;
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    /**
+     * @param format          the results format of the files
+     * @param targetSizeBytes the target size of each batch
+     * @param outputDir       the directory where the merged files are created
+     */
+    public ResultsFileBatcher(ResultsFormat format, long targetSizeBytes, File outputDir) {
+        this.format = format;
+        this.targetSizeBytes = targetSizeBytes;
+        this.outputDir = outputDir;
+
+        this.inputFactory = XMLInputFactory.newInstance();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Groups the results files into batches, keeping the order of the files as much as possible.
+     *
+     * @param files the results files
+     * @return the batches to upload
+     * @throws IOException if a merged file cannot be written
+     */
+    public List<ResultsBatch> batch(List<File> files) throws IOException {
+        final List<ResultsBatch> batches = new ArrayList<>();
+        // Files are only merged with files that have the same root element (e.g.: NUnit 2 and NUnit 3 files are not mixed)
+        final Map<String, PendingBatch> pendingBatches = new LinkedHashMap<>();
+
+        for (File file : files) {
+            final long size = file.length();
+            final String rootElement = size < targetSizeBytes ? readMergeableRootElement(file) : null;
+            if (rootElement == null) {
+                batches.add(new ResultsBatch(file.getAbsolutePath(), Collections.singletonList(file.getAbsolutePath()), false));
+                continue;
+            }
+
+            final PendingBatch pending = pendingBatches.computeIfAbsent(rootElement, PendingBatch::new);
+            if (!pending.files.isEmpty() && pending.size + size > targetSizeBytes) {
+                batches.add(write(pending));
+                pending.clear();
+            }
+            pending.add(file, size);
+        }
+
+        for (PendingBatch pending : pendingBatches.values()) {
+            if (!pending.files.isEmpty()) {
+                batches.add(write(pending));
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * @return the root element of the merged file where this file can be included, or null if the file cannot be merged.
+     */
+    private String readMergeableRootElement(File file) {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final XMLStreamReader reader = inputFactory.createXMLStreamReader(inputStream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamReader.START_ELEMENT) {
+                        final String rootElement = reader.getLocalName();
+                        if (format.getSuiteElement().equals(rootElement)) {
+                            return format.getDefaultRootElement();
+                        }
+                        return format.isRootElement(rootElement) ? rootElement : null;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            // The file will be uploaded as it is, so Xray can report what is wrong with it.
+        }
+        return null;
+    }
+
+    private ResultsBatch write(PendingBatch pending) throws IOException {
+        final List<String> sourcePaths = new ArrayList<>();
+        for (File file : pending.files) {
+            sourcePaths.add(file.getAbsolutePath());
+        }
+        if (pending.files.size() == 1) {
+            return new ResultsBatch(sourcePaths.get(0), sourcePaths, false);
+        }
+
+        final File mergedFile = File.createTempFile(BATCH_FILE_PREFIX, BATCH_FILE_SUFFIX, outputDir);
+        try (OutputStream outputStream = Files.newOutputStream(mergedFile.toPath())) {
+            final XMLEventWriter writer = outputFactory.createXMLEventWriter(outputStream, StandardCharsets.UTF_8.name());
+            writer.add(eventFactory.createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+            writer.add(eventFactory.createStartElement("", "", pending.rootElement));
+
+            final Set<String> copiedRootChildren = new HashSet<>();
+            for (File file : pending.files) {
+                copySuites(file, writer, copiedRootChildren);
+            }
+
+            writer.add(eventFactory.createEndElement("", "", pending.rootElement));
+            writer.add(eventFactory.createEndDocument());
+            writer.close();
+        } catch (XMLStreamException e) {
+            Files.deleteIfExists(mergedFile.toPath());
+            throw new IOException("Unable to merge the results files " + sourcePaths, e);
+        }
+        return new ResultsBatch(mergedFile.getAbsolutePath(), sourcePaths, true);
+    }
+
+    /**
+     * Copies the suites of a results file to the merged file, and the other children of its root element whose name
+     * was not copied yet.
+     *
+     * @param copiedRootChildren the names of the root children (other than suites) already copied to the merged file
+     */
+    private void copySuites(File file, XMLEventWriter writer, Set<String> copiedRootChildren)
+            throws IOException, XMLStreamException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final XMLEventReader reader = inputFactory.createXMLEventReader(inputStream);
+            int depth = 0;
+            int copyDepth = -1;
+
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    final StartElement startElement = event.asStartElement();
+                    final String name = startElement.getName().getLocalPart();
+
+                    if (copyDepth < 0 && format.getSuiteElement().equals(name) && depth <= 1) {
+                        copyDepth = depth;
+                    } else if (copyDepth < 0 && depth == 1 && copiedRootChildren.add(name)) {
+                        copyDepth = depth;
+                    }
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+
+                if (copyDepth >= 0) {
+                    writer.add(event);
+                    if (event.isEndElement() && depth == copyDepth) {
+                        copyDepth = -1;
+                    }
+                }
+            }
+            reader.close();
+        }
+    }
+
+    private static class PendingBatch {
+        private final String rootElement;
+        private final List<File> files = new ArrayList<>();
+        private long size;
+
+        PendingBatch(String rootElement) {
+            this.rootElement = rootElement;
+        }
+
+        void add(File file, long fileSize) {
+            files.add(file);
+            size += fileSize;
+        }
+
+        void clear() {
+            files.clear();
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import com.xpandit.xray.model.Endpoint;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the results files before uploading them: each file is parsed with StAX (so the memory used doesn't depend on
+ * the file size), its root element must match the results format, and its tests are counted.
+ * The files are checked in parallel, so it is meant to run in the JVM where the files are stored (usually an agent).
+ */
+public class ResultsFilePreflight implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private static final String ROBOT_ROOT_ELEMENT = "robot";
+    private static final String ROBOT_TEST_ELEMENT = "test";
+    private static final String CONFIG_ATTRIBUTE = "is-config";
+
+    private final ArrayList<String> rootElements;
+    private final String testElement;
+
+    /**
+     * @param rootElements the root elements of the files of the results format
+     * @param testElement  the element that is repeated for each test
+     */
+    public ResultsFilePreflight(Collection<String> rootElements, String testElement) {
+        this.rootElements = new ArrayList<>(rootElements);
+        this.testElement = testElement;
+    }
+
+    /**
+     * @param endpoint the import endpoint
+     * @return the pre-flight check of the results files of the endpoint, or empty if its files cannot be checked
+     */
+    public static Optional<ResultsFilePreflight> forEndpoint(Endpoint endpoint) {
+        final Optional<ResultsFormat> format = ResultsFormat.fromEndpoint(endpoint);
+        if (format.isPresent()) {
+            return Optional.of(new ResultsFilePreflight(format.get().getRootElements(), format.get().getTestElement()));
+        } else if (Endpoint.ROBOT.equals(endpoint) || Endpoint.ROBOT_MULTIPART.equals(endpoint)) {
+            return Optional.of(new ResultsFilePreflight(Collections.singletonList(ROBOT_ROOT_ELEMENT), ROBOT_TEST_ELEMENT));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks the files in parallel.
+     *
+     * @param files the results files
+     * @return the result of each file, in the same order of the files
+     */
+    public List<PreflightResult> check(List<File> files) throws IOException, InterruptedException {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(files.size(), MAX_THREADS),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Xray results pre-flight check"));
+        try {
+            final List<Future<PreflightResult>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(executor.submit(() -> check(file)));
+            }
+
+            final List<PreflightResult> results = new ArrayList<>(files.size());
+            for (Future<PreflightResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to check the results files", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks a single file.
+     *
+     * @param file the results file
+     * @return the result of the check
+     */
+    public PreflightResult check(File file) {
+        final String path = file.getAbsolutePath();
+        if (file.length() == 0) {
+            return new PreflightResult(path, 0, "the file is empty");
+        }
+
+        final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final XMLStreamReader reader = inputFactory.createXMLStreamReader(inputStream);
+            try {
+                boolean isRootRead = false;
+                int testCount = 0;
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamReader.START_ELEMENT) {
+                        continue;
+                    }
+
+                    final String name = reader.getLocalName();
+                    if (!isRootRead) {
+                        if (!rootElements.contains(name)) {
+                            return new PreflightResult(path, 0, "the root element <" + name + "> doesn't match the format, expected one of " + rootElements);
+                        }
+                        isRootRead = true;
+                    }
+                    // TestNG reports the configuration methods (e.g.: @BeforeClass) as test methods too
+                    if (testElement.equals(name) && !"true".equals(reader.getAttributeValue(null, CONFIG_ATTRIBUTE))) {
+                        testCount++;
+                    }
+                }
+                return new PreflightResult(path, testCount, null);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // The message includes the line and column of the error (e.g.: a truncated file)
+            return new PreflightResult(path, 0, "the file is not well-formed: " + e.getMessage());
+        } catch (IOException e) {
+            return new PreflightResult(path, 0, "the file cannot be read: " + e.getMessage());
+        }
+    }
+}
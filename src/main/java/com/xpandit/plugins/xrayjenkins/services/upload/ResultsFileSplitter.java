@@ -0,0 +1,255 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits results files bigger than a target size into chunks of (roughly) that size, cutting them between the suites
+ * of the root element, so a huge report can be imported with several smaller requests.
+ * As with {@link ResultsFileBatcher}, the root element of a chunk has no attributes, since the totals of the original root
+ * (e.g.: tests, failures, time) would be wrong for the chunk. The other children of the original root (e.g.: the NUnit
+ * environment) are copied to every chunk.
+ * The files are read and written with StAX, so the memory used doesn't depend on the size of the suites.
+ * Files that are smaller than the target size, have a single suite, or cannot be parsed are kept as they are.
+ */
+public class ResultsFileSplitter {
+
+    private static final String CHUNK_FILE_PREFIX = "xray-chunk-";
+    private static final String CHUNK_FILE_SUFFIX = ".xml";
+
+    private final ResultsFormat format;
+    private final long targetSizeBytes;
+    private final File outputDir;
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    /**
+     * @param format          the results format of the files
+     * @param targetSizeBytes the maximum size of the files that are not split, and the target size of each chunk
+     * @param outputDir       the directory where the chunks are created
+     */
+    public ResultsFileSplitter(ResultsFormat format, long targetSizeBytes, File outputDir) {
+        this.format = format;
+        this.targetSizeBytes = targetSizeBytes;
+        this.outputDir = outputDir;
+
+        this.inputFactory = XMLInputFactory.newInstance();
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Splits the results files bigger than the target size, keeping the order of the files and of their suites.
+     *
+     * @param files the results files
+     * @return the files to upload: the chunks of each split file, and the other files as they are
+     * @throws IOException if a chunk cannot be written
+     */
+    public List<ResultsBatch> split(List<File> files) throws IOException {
+        final List<ResultsBatch> batches = new ArrayList<>();
+        for (File file : files) {
+            final List<File> chunks = file.length() > targetSizeBytes ? splitFile(file) : Collections.emptyList();
+            if (chunks.isEmpty()) {
+                batches.add(new ResultsBatch(file.getAbsolutePath(), Collections.singletonList(file.getAbsolutePath()), false));
+                continue;
+            }
+            for (File chunk : chunks) {
+                batches.add(new ResultsBatch(chunk.getAbsolutePath(), Collections.singletonList(file.getAbsolutePath()), true));
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * @return the chunks of the file, or an empty list if the file must be uploaded as it is.
+     */
+    private List<File> splitFile(File file) throws IOException {
+        final List<File> chunks = new ArrayList<>();
+        Chunk chunk = null;
+        try {
+            final Root root = readRoot(file);
+            if (root == null) {
+                return Collections.emptyList();
+            }
+
+            try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+                final XMLEventReader reader = inputFactory.createXMLEventReader(inputStream);
+                int depth = 0;
+                boolean inSuite = false;
+
+                while (reader.hasNext()) {
+                    final XMLEvent event = reader.nextEvent();
+                    if (event.isStartElement()) {
+                        if (depth == 1 && isSuite(event.asStartElement())) {
+                            inSuite = true;
+                            if (chunk == null) {
+                                chunk = createChunk(root);
+                                chunks.add(chunk.file);
+                            }
+                        }
+                        depth++;
+                    } else if (event.isEndElement()) {
+                        depth--;
+                    }
+
+                    if (inSuite) {
+                        chunk.writer.add(event);
+                        if (event.isEndElement() && depth == 1) {
+                            inSuite = false;
+                            chunk.writer.flush();
+                            if (chunk.outputStream.getByteCount() >= targetSizeBytes) {
+                                chunk.close(root);
+                                chunk = null;
+                            }
+                        }
+                    }
+                }
+                reader.close();
+            }
+
+            if (chunk != null) {
+                chunk.close(root);
+                chunk = null;
+            }
+        } catch (XMLStreamException e) {
+            // The file will be uploaded as it is, so Xray can report what is wrong with it.
+            if (chunk != null) {
+                chunk.outputStream.close();
+            }
+            deleteAll(chunks);
+            return Collections.emptyList();
+        } catch (IOException | RuntimeException e) {
+            if (chunk != null) {
+                chunk.outputStream.close();
+            }
+            deleteAll(chunks);
+            throw e;
+        }
+
+        if (chunks.size() < 2) {
+            deleteAll(chunks);
+            return Collections.emptyList();
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads the root element of the file and its children that are not suites, which are copied to every chunk.
+     *
+     * @return the root of the file, or null if the file cannot be split (its root is a suite, or it is unknown)
+     */
+    private Root readRoot(File file) throws IOException, XMLStreamException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            final XMLEventReader reader = inputFactory.createXMLEventReader(inputStream);
+            StartElement rootElement = null;
+            final List<XMLEvent> otherChildren = new ArrayList<>();
+            int depth = 0;
+            boolean isOtherChild = false;
+
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    final StartElement startElement = event.asStartElement();
+                    if (depth == 0) {
+                        if (!format.isRootElement(startElement.getName().getLocalPart()) || isSuite(startElement)) {
+                            reader.close();
+                            return null;
+                        }
+                        rootElement = startElement;
+                    } else if (depth == 1) {
+                        isOtherChild = !isSuite(startElement);
+                    }
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+
+                if (isOtherChild) {
+                    otherChildren.add(event);
+                    if (event.isEndElement() && depth == 1) {
+                        isOtherChild = false;
+                    }
+                }
+            }
+            reader.close();
+            return rootElement == null ? null : new Root(rootElement, otherChildren);
+        }
+    }
+
+    private boolean isSuite(StartElement element) {
+        return format.getSuiteElement().equals(element.getName().getLocalPart());
+    }
+
+    private Chunk createChunk(Root root) throws IOException, XMLStreamException {
+        final File file = File.createTempFile(CHUNK_FILE_PREFIX, CHUNK_FILE_SUFFIX, outputDir);
+        final CountingOutputStream outputStream = new CountingOutputStream(Files.newOutputStream(file.toPath()));
+        try {
+            final XMLEventWriter writer = outputFactory.createXMLEventWriter(outputStream, StandardCharsets.UTF_8.name());
+            writer.add(eventFactory.createStartDocument(StandardCharsets.UTF_8.name(), "1.0"));
+            writer.add(eventFactory.createStartElement(root.element.getName(), Collections.emptyIterator(), root.element.getNamespaces()));
+            for (XMLEvent event : root.otherChildren) {
+                writer.add(event);
+            }
+            return new Chunk(file, outputStream, writer);
+        } catch (XMLStreamException | RuntimeException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    private static void deleteAll(List<File> files) throws IOException {
+        for (File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private static class Root {
+        private final StartElement element;
+        private final List<XMLEvent> otherChildren;
+
+        Root(StartElement element, List<XMLEvent> otherChildren) {
+            this.element = element;
+            this.otherChildren = otherChildren;
+        }
+    }
+
+    private class Chunk {
+        private final File file;
+        private final CountingOutputStream outputStream;
+        private final XMLEventWriter writer;
+
+        Chunk(File file, CountingOutputStream outputStream, XMLEventWriter writer) {
+            this.file = file;
+            this.outputStream = outputStream;
+            this.writer = writer;
+        }
+
+        void close(Root root) throws IOException, XMLStreamException {
+            try {
+                writer.add(eventFactory.createEndElement(root.element.getName(), root.element.getNamespaces()));
+                writer.add(eventFactory.createEndDocument());
+                writer.close();
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.exceptions.XrayJenkinsGenericException;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Plugin owned executor used to upload files to Xray in parallel.
+ * Unlike the JVM common ForkJoinPool, the number of threads is bounded by a configured maximum concurrency (and not by
+ * the number of cores of the Jenkins controller) and the submission queue is bounded, so a build with hundreds of files
+ * blocks on submission instead of flooding the controller and the Jira instance.
+ * Asynchronous tasks (see {@link #submitAsync(Function)}) keep their submission permit until they complete, but release
+ * the worker thread while they wait, so the other uploads can go ahead.
+ * Instances must be closed once all the uploads are done, so the worker threads are released.
+ */
+public class UploadExecutor implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final int MAX_ALLOWED_CONCURRENCY = 64;
+
+    private static final int QUEUE_CAPACITY_FACTOR = 2;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final int concurrency;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore submissionPermits;
+
+    /**
+     * @param name        the name prefix of the worker threads (e.g.: the build display name)
+     * @param concurrency the maximum number of uploads running at the same time
+     */
+    public UploadExecutor(String name, int concurrency) {
+        this.concurrency = Math.min(Math.max(1, concurrency), MAX_ALLOWED_CONCURRENCY);
+        final int queueCapacity = this.concurrency * QUEUE_CAPACITY_FACTOR;
+
+        this.submissionPermits = new Semaphore(this.concurrency + queueCapacity);
+        this.executor = new ThreadPoolExecutor(
+                this.concurrency,
+                this.concurrency,
+                60L,
+                TimeUnit.SECONDS,
+                // The submission permits bound the queue, the retries of the asynchronous tasks must never be rejected
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Xray upload - " + StringUtils.defaultString(name)));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Resolves the upload concurrency to be used, giving priority to the value defined in the build step,
+     * then to the value defined in the Jira instance configuration.
+     *
+     * @param stepConcurrency     the concurrency configured in the build step (may be blank)
+     * @param instanceConcurrency the concurrency configured in the Xray instance (may be blank)
+     * @return the maximum number of parallel uploads
+     */
+    public static int resolveConcurrency(String stepConcurrency, String instanceConcurrency) {
+        final Integer stepValue = parsePositiveInt(stepConcurrency);
+        if (stepValue != null) {
+            return Math.min(stepValue, MAX_ALLOWED_CONCURRENCY);
+        }
+
+        final Integer instanceValue = parsePositiveInt(instanceConcurrency);
+        if (instanceValue != null) {
+            return Math.min(instanceValue, MAX_ALLOWED_CONCURRENCY);
+        }
+        return DEFAULT_MAX_CONCURRENCY;
+    }
+
+    private static Integer parsePositiveInt(String value) {
+        if (StringUtils.isBlank(value)) {
+            return null;
+        }
+        try {
+            final int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Submits a new upload task. If the queue is full, this method blocks until one of the running uploads finishes.
+     *
+     * @param task the upload task
+     * @return the Future of the task
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public <T> Future<T> submit(Callable<T> task) throws InterruptedException {
+        submissionPermits.acquire();
+        try {
+            return executor.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    submissionPermits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            submissionPermits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Submits a new asynchronous upload task, whose attempts run in the worker threads of this executor. If the queue is
+     * full, this method blocks until one of the running uploads finishes.
+     *
+     * @param task starts the upload in the given executor, returning its future
+     * @return the future of the task
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public <T> CompletableFuture<T> submitAsync(Function<Executor, CompletableFuture<T>> task) throws InterruptedException {
+        submissionPermits.acquire();
+        final CompletableFuture<T> future;
+        try {
+            future = task.apply(executor);
+        } catch (RuntimeException e) {
+            submissionPermits.release();
+            throw e;
+        }
+        // A cancelled future completes too, so its next attempts are skipped and the permit released
+        future.whenComplete((result, error) -> submissionPermits.release());
+        return future;
+    }
+
+    /**
+     * Waits for all the tasks, returning their results in the same order of the futures.
+     * If one of the tasks fails, all the remaining tasks are cancelled and the original exception is thrown.
+     *
+     * @param futures the futures returned by {@link #submit(Callable)} or {@link #submitAsync(Function)}
+     * @return the result of each task
+     */
+    public <T> List<T> awaitAll(List<Future<T>> futures) throws IOException, InterruptedException {
+        final List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new XrayJenkinsGenericException(e);
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            throw e;
+        }
+        return results;
+    }
+
+    private static <T> void cancelAll(List<Future<T>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
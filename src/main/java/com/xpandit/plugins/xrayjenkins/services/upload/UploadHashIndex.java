@@ -0,0 +1,141 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent index of the results files already imported by a job, stored in the job directory.
+ * For each Xray instance, endpoint and import settings, it keeps the content hash of the imported files and the Test
+ * Execution key returned by Xray, so rebuilds and replays can skip the files that were already imported. The same file
+ * imported with other settings (e.g.: to another Test Plan or Test Environment) is a new import.
+ */
+public class UploadHashIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadHashIndex.class);
+    private static final String INDEX_FILE_NAME = "xray-upload-index.xml";
+    private static final int MAX_ENTRIES = 10_000;
+    // The index is only read and written for a few milliseconds, so a single lock for all the jobs is enough.
+    private static final Object LOCK = new Object();
+
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Finds the entries of the given content hashes.
+     *
+     * @param job        the job
+     * @param instanceId the Xray instance configuration ID
+     * @param endpoint   the endpoint suffix
+     * @param settings   the digest of the import settings (query parameters and info contents)
+     * @param hashes     the content hashes of the files to import
+     * @return the entries already imported, by content hash
+     */
+    public static Map<String, Entry> find(Job<?, ?> job, String instanceId, String endpoint, String settings, Collection<String> hashes) {
+        final Map<String, Entry> found = new HashMap<>();
+        synchronized (LOCK) {
+            final UploadHashIndex index = load(job);
+            for (String hash : hashes) {
+                final Entry entry = index.entries.get(getKey(instanceId, endpoint, settings, hash));
+                if (entry != null) {
+                    found.put(hash, entry);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Records the files imported successfully.
+     *
+     * @param job                       the job
+     * @param instanceId                the Xray instance configuration ID
+     * @param endpoint                  the endpoint suffix
+     * @param settings                  the digest of the import settings (query parameters and info contents)
+     * @param testExecutionKeysByHashes the Test Execution key of each imported file, by content hash
+     */
+    public static void record(Job<?, ?> job, String instanceId, String endpoint, String settings, Map<String, String> testExecutionKeysByHashes) {
+        if (testExecutionKeysByHashes.isEmpty()) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            final UploadHashIndex index = load(job);
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<String, String> imported : testExecutionKeysByHashes.entrySet()) {
+                final String key = getKey(instanceId, endpoint, settings, imported.getKey());
+                // Removed first, so the most recent entries are always at the end
+                index.entries.remove(key);
+                index.entries.put(key, new Entry(imported.getKey(), imported.getValue(), now));
+            }
+
+            final Iterator<String> oldest = index.entries.keySet().iterator();
+            while (index.entries.size() > MAX_ENTRIES && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+            }
+
+            try {
+                getFile(job).write(index);
+            } catch (IOException e) {
+                LOG.warn("Unable to save the Xray upload index of " + job.getFullName(), e);
+            }
+        }
+    }
+
+    private static UploadHashIndex load(Job<?, ?> job) {
+        final XmlFile file = getFile(job);
+        if (file.exists()) {
+            try {
+                final UploadHashIndex index = (UploadHashIndex) file.read();
+                if (index.entries == null) {
+                    index.entries = new LinkedHashMap<>();
+                }
+                return index;
+            } catch (IOException | ClassCastException e) {
+                LOG.warn("Unable to read the Xray upload index of " + job.getFullName() + ", starting a new one", e);
+            }
+        }
+        return new UploadHashIndex();
+    }
+
+    private static XmlFile getFile(Job<?, ?> job) {
+        return new XmlFile(new File(job.getRootDir(), INDEX_FILE_NAME));
+    }
+
+    private static String getKey(String instanceId, String endpoint, String settings, String hash) {
+        return instanceId + "|" + endpoint + "|" + settings + "|" + hash;
+    }
+
+    public static class Entry {
+        private final String hash;
+        private final String testExecutionKey;
+        private final long timestamp;
+
+        Entry(String hash, String testExecutionKey, long timestamp) {
+            this.hash = hash;
+            this.testExecutionKey = testExecutionKey;
+            this.timestamp = timestamp;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public String getTestExecutionKey() {
+            return testExecutionKey;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
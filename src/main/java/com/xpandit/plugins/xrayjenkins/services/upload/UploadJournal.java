@@ -0,0 +1,167 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.Util;
+import hudson.model.Run;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of the results files imported by a build step, stored in the build directory.
+ * Each completed upload is appended to the journal as soon as it finishes, so if the step is retried (e.g.: after a
+ * controller restart or an abort), it can continue from the first file that was not imported yet.
+ * <p>
+ * The uploads are found by file content hash: the merged and split results files are written to new temporary files on
+ * each attempt, so their paths are never the same.
+ * <p>
+ * Each line has the file path, the file content hash, the response status code and the Test Execution key, separated by tabs.
+ */
+public class UploadJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UploadJournal.class);
+    private static final String JOURNAL_FILE_PREFIX = "xray-import-journal-";
+    private static final String JOURNAL_FILE_SUFFIX = ".log";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELD_COUNT = 4;
+
+    private final File file;
+    private final Map<String, Entry> entriesByHash = new HashMap<>();
+    private final Map<String, String> hashesByPath;
+
+    private UploadJournal(File file, Map<String, String> hashesByPath) {
+        this.file = file;
+        this.hashesByPath = hashesByPath;
+    }
+
+    /**
+     * Opens (or creates) the journal of a build step, loading the uploads already done.
+     *
+     * @param build        the build
+     * @param stepId       identifies the step in the build (e.g.: a digest of its configuration)
+     * @param hashesByPath the content hash of each file to upload, by path
+     * @return the journal
+     */
+    public static UploadJournal open(Run<?, ?> build, String stepId, Map<String, String> hashesByPath) {
+        return open(new File(build.getRootDir(), JOURNAL_FILE_PREFIX + Util.getDigestOf(stepId) + JOURNAL_FILE_SUFFIX), hashesByPath);
+    }
+
+    static UploadJournal open(File file, Map<String, String> hashesByPath) {
+        final UploadJournal journal = new UploadJournal(file, hashesByPath);
+
+        if (file.exists()) {
+            try {
+                final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                for (String line : lines) {
+                    final String[] fields = line.split(FIELD_SEPARATOR, -1);
+                    if (fields.length == FIELD_COUNT && StringUtils.isNotEmpty(fields[1])) {
+                        final Entry entry = new Entry(fields[0], fields[1], Integer.parseInt(fields[2]), StringUtils.trimToNull(fields[3]));
+                        journal.put(entry);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                LOG.warn("Unable to read the Xray import journal " + file, e);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * @param path the file path
+     * @return the journal entry of a successful upload of a file with the same content, or null if there isn't one.
+     */
+    @CheckForNull
+    public synchronized Entry findImported(String path) {
+        final String hash = hashesByPath.get(path);
+        final Entry entry = hash == null ? null : entriesByHash.get(hash);
+        return entry != null && entry.isSuccessful() ? entry : null;
+    }
+
+    /**
+     * Appends a completed upload to the journal.
+     *
+     * @param path             the file path
+     * @param statusCode       the response status code
+     * @param testExecutionKey the Test Execution key of the response, if any
+     */
+    public synchronized void append(String path, int statusCode, @Nullable String testExecutionKey) {
+        final Entry entry = new Entry(path, StringUtils.defaultString(hashesByPath.get(path)), statusCode, testExecutionKey);
+        put(entry);
+
+        final String line = clean(entry.path) + FIELD_SEPARATOR
+                + entry.hash + FIELD_SEPARATOR
+                + entry.statusCode + FIELD_SEPARATOR
+                + clean(StringUtils.defaultString(entry.testExecutionKey));
+        try {
+            Files.write(file.toPath(),
+                        Collections.singletonList(line),
+                        StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOG.warn("Unable to write the Xray import journal " + file, e);
+        }
+    }
+
+    private void put(Entry entry) {
+        if (StringUtils.isEmpty(entry.hash)) {
+            return;
+        }
+        final Entry previous = entriesByHash.get(entry.hash);
+        // A failed attempt must not hide a successful upload of the same content
+        if (previous == null || !previous.isSuccessful() || entry.isSuccessful()) {
+            entriesByHash.put(entry.hash, entry);
+        }
+    }
+
+    private static String clean(String value) {
+        return value.replace(FIELD_SEPARATOR, " ").replace('\n', ' ').replace('\r', ' ');
+    }
+
+    public static class Entry {
+        private final String path;
+        private final String hash;
+        private final int statusCode;
+        private final String testExecutionKey;
+
+        Entry(String path, String hash, int statusCode, String testExecutionKey) {
+            this.path = path;
+            this.hash = hash;
+            this.statusCode = statusCode;
+            this.testExecutionKey = testExecutionKey;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @CheckForNull
+        public String getTestExecutionKey() {
+            return testExecutionKey;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= HttpStatus.SC_OK && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
+        }
+    }
+}
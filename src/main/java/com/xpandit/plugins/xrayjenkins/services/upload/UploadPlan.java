@@ -0,0 +1,132 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.xray.model.Endpoint;
+import com.xpandit.xray.model.QueryParameter;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Everything needed to upload the results files of an import that doesn't depend on the file: the endpoint, the query
+ * parameters (with the environment variables already expanded) and the info fields.
+ * It is resolved once per import and shared by all the uploads, so it is immutable (and serializable, so it can be sent
+ * to the agents). In the controller, the info files are read through the {@link InfoContentCache} of the import, and
+ * the uploads are recorded in its {@link UploadTelemetry}.
+ */
+public final class UploadPlan implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Endpoint endpoint;
+    private final Endpoint sameExecutionEndpoint;
+    private final EnumMap<QueryParameter, String> queryParams;
+    private final boolean sameExecution;
+    private final boolean resultsFile;
+    private final RemoteContent info;
+    private final RemoteContent testInfo;
+    private final transient InfoContentCache infoCache;
+    private final transient UploadTelemetry telemetry;
+
+    /**
+     * @param endpoint              the endpoint of the import
+     * @param sameExecutionEndpoint the endpoint used when the results are imported to an existing Test Execution
+     *                              (the multipart endpoints don't accept a Test Execution key)
+     * @param queryParams           the query parameters, with the environment variables expanded
+     * @param sameExecution         true if the results are imported to the same Test Execution, when its key is known
+     * @param resultsFile           true if the request includes the results file
+     * @param info                  the Test Execution info field, or null
+     * @param testInfo              the Test info field, or null
+     * @param infoCache             the cache of the info files contents, or null to read them for each upload
+     * @param telemetry             the telemetry of the import, or null to not record the uploads
+     */
+    public UploadPlan(Endpoint endpoint,
+                      Endpoint sameExecutionEndpoint,
+                      Map<QueryParameter, String> queryParams,
+                      boolean sameExecution,
+                      boolean resultsFile,
+                      @Nullable RemoteContent info,
+                      @Nullable RemoteContent testInfo,
+                      @Nullable InfoContentCache infoCache,
+                      @Nullable UploadTelemetry telemetry) {
+        this.endpoint = endpoint;
+        this.sameExecutionEndpoint = sameExecutionEndpoint;
+        this.queryParams = new EnumMap<>(QueryParameter.class);
+        this.queryParams.putAll(queryParams);
+        this.sameExecution = sameExecution;
+        this.resultsFile = resultsFile;
+        this.info = info;
+        this.testInfo = testInfo;
+        this.infoCache = infoCache;
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * @param sameExecutionKey the key of the Test Execution where all the results are imported, or null
+     * @return the endpoint of the upload
+     */
+    public Endpoint getEndpoint(@Nullable String sameExecutionKey) {
+        return isSameExecution(sameExecutionKey) ? sameExecutionEndpoint : endpoint;
+    }
+
+    /**
+     * @param sameExecutionKey the key of the Test Execution where all the results are imported, or null
+     * @return a copy of the query parameters of the upload
+     */
+    public Map<QueryParameter, String> getQueryParams(@Nullable String sameExecutionKey) {
+        // A copy, the client is free to change it
+        final Map<QueryParameter, String> params = new EnumMap<>(queryParams);
+        if (isSameExecution(sameExecutionKey)) {
+            params.put(QueryParameter.TEST_EXEC_KEY, sameExecutionKey);
+        }
+        return params;
+    }
+
+    /**
+     * @param sameExecutionKey the key of the Test Execution where all the results are imported, or null
+     * @return true if the upload imports to an existing Test Execution, so it can be done again without creating another
+     */
+    public boolean isExistingTestExecution(@Nullable String sameExecutionKey) {
+        return StringUtils.isNotBlank(getQueryParams(sameExecutionKey).get(QueryParameter.TEST_EXEC_KEY));
+    }
+
+    private boolean isSameExecution(@Nullable String sameExecutionKey) {
+        return sameExecution && StringUtils.isNotBlank(sameExecutionKey);
+    }
+
+    /**
+     * @return true if the request includes the results file
+     */
+    public boolean isResultsFile() {
+        return resultsFile;
+    }
+
+    @CheckForNull
+    public RemoteContent getInfo() {
+        return info;
+    }
+
+    @CheckForNull
+    public RemoteContent getTestInfo() {
+        return testInfo;
+    }
+
+    /**
+     * @return the cache of the info files contents, or null if they must be read for each upload (e.g.: in the agents)
+     */
+    @CheckForNull
+    public InfoContentCache getInfoCache() {
+        return infoCache;
+    }
+
+    /**
+     * @return the telemetry of the import, or null if the uploads are not recorded (e.g.: in the agents)
+     */
+    @CheckForNull
+    public UploadTelemetry getTelemetry() {
+        return telemetry;
+    }
+}
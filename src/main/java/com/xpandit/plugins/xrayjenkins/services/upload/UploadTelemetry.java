@@ -0,0 +1,163 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.services.retry.RetryableError;
+import com.xpandit.plugins.xrayjenkins.services.retry.WaitTimeline;
+import hudson.model.TaskListener;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the attempts of the uploads of an import (bytes sent, latency, status code), so the time spent in each file
+ * can be shown in the build (see {@link UploadTelemetryAction}). The uploads may run in parallel, so it is thread-safe.
+ */
+public class UploadTelemetry {
+
+    static final int SLOWEST_FILES = 10;
+
+    private final Map<String, FileStats> statsByFile = new LinkedHashMap<>();
+
+    /**
+     * @param inputStream the results file stream sent to Xray
+     * @return a stream that counts the bytes read by the client, and knows when the whole file was sent
+     */
+    public TrackedInputStream track(InputStream inputStream) {
+        return new TrackedInputStream(inputStream);
+    }
+
+    /**
+     * Records an attempt to upload a file.
+     *
+     * @param fileName           the path of the file (relative to the workspace, if it is in it)
+     * @param bytes              the bytes sent, or -1 if unknown
+     * @param latencyMillis      the time since the request started until the response was received
+     * @param responseWaitMillis the time since the whole file was sent until the response was received, or -1 if unknown
+     * @param statusCode         the status code of the response, or 0 if there was no response
+     */
+    public synchronized void record(String fileName, long bytes, long latencyMillis, long responseWaitMillis, int statusCode) {
+        final FileStats stats = statsByFile.computeIfAbsent(fileName, name -> new FileStats());
+        stats.attempts++;
+        stats.bytes += Math.max(bytes, 0L);
+        stats.latencyMillis += latencyMillis;
+        stats.responseWaitMillis = responseWaitMillis;
+        stats.statusCode = statusCode;
+    }
+
+    public synchronized boolean isEmpty() {
+        return statsByFile.isEmpty();
+    }
+
+    /**
+     * @param timeline the waits of the import, to know how long each file waited after the 429 responses
+     * @return the summary of the import, with the details of the slowest files only
+     */
+    public synchronized UploadTelemetryAction toAction(WaitTimeline timeline) {
+        final List<UploadTelemetryAction.FileTelemetry> files = new ArrayList<>(statsByFile.size());
+        for (Map.Entry<String, FileStats> entry : statsByFile.entrySet()) {
+            final FileStats stats = entry.getValue();
+            files.add(new UploadTelemetryAction.FileTelemetry(entry.getKey(),
+                                                               stats.bytes,
+                                                               stats.latencyMillis,
+                                                               stats.responseWaitMillis,
+                                                               stats.attempts - 1,
+                                                               timeline.getWaitMillis(entry.getKey(), RetryableError.TOO_MANY_REQUESTS),
+                                                               stats.statusCode));
+        }
+
+        long totalBytes = 0L;
+        int totalRetries = 0;
+        long tooManyRequestsWaitMillis = 0L;
+        final List<Long> latencies = new ArrayList<>(files.size());
+        final List<Long> responseWaits = new ArrayList<>(files.size());
+        for (UploadTelemetryAction.FileTelemetry file : files) {
+            totalBytes += file.getBytes();
+            totalRetries += file.getRetries();
+            tooManyRequestsWaitMillis += file.getTooManyRequestsWaitMillis();
+            latencies.add(file.getLatencyMillis());
+            if (file.getResponseWaitMillis() >= 0) {
+                responseWaits.add(file.getResponseWaitMillis());
+            }
+        }
+        Collections.sort(latencies);
+        Collections.sort(responseWaits);
+
+        files.sort(Comparator.comparingLong(UploadTelemetryAction.FileTelemetry::getLatencyMillis).reversed());
+        return new UploadTelemetryAction(files.size(),
+                                         totalBytes,
+                                         totalRetries,
+                                         tooManyRequestsWaitMillis,
+                                         percentile(latencies, 50),
+                                         percentile(latencies, 95),
+                                         percentile(responseWaits, 50),
+                                         percentile(responseWaits, 95),
+                                         new ArrayList<>(files.subList(0, Math.min(SLOWEST_FILES, files.size()))));
+    }
+
+    /**
+     * Logs a one line summary of the import.
+     */
+    public static void log(UploadTelemetryAction action, TaskListener listener) {
+        listener.getLogger().println(String.format(Locale.ROOT, "Xray uploads: %d files, %s sent, latency p50 %dms, p95 %dms, %d retries",
+                                                   action.getFileCount(),
+                                                   FileUtils.byteCountToDisplaySize(action.getTotalBytes()),
+                                                   action.getP50LatencyMillis(),
+                                                   action.getP95LatencyMillis(),
+                                                   action.getTotalRetries()));
+    }
+
+    /**
+     * @return the value of the (nearest rank) percentile of the sorted values, or -1 if there are no values
+     */
+    static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty()) {
+            return -1L;
+        }
+        final int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.size());
+        return sortedValues.get(Math.max(rank, 1) - 1);
+    }
+
+    private static class FileStats {
+        private int attempts;
+        private long bytes;
+        private long latencyMillis;
+        private long responseWaitMillis = -1L;
+        private int statusCode;
+    }
+
+    /**
+     * Counts the bytes read from the results file, and records when the end of the file was reached.
+     */
+    public static class TrackedInputStream extends CountingInputStream {
+
+        private volatile long endNanos;
+
+        TrackedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        protected synchronized void afterRead(int n) {
+            super.afterRead(n);
+            if (n == -1 && endNanos == 0L) {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * @param responseNanos the time (System.nanoTime) when the response was received
+         * @return the time waiting for the response after the whole file was sent, or -1 if the end wasn't reached
+         */
+        public long getResponseWaitMillis(long responseNanos) {
+            return endNanos == 0L ? -1L : TimeUnit.NANOSECONDS.toMillis(responseNanos - endNanos);
+        }
+    }
+}
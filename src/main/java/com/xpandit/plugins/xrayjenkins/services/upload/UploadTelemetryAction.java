@@ -0,0 +1,174 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.model.Action;
+import org.apache.commons.io.FileUtils;
+
+import javax.annotation.CheckForNull;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of the uploads of a results import: latency percentiles, bytes sent, retries, and the slowest files.
+ * Only the slowest files are kept, so the build record stays small on imports with thousands of files.
+ */
+public class UploadTelemetryAction implements Action {
+
+    private final int fileCount;
+    private final long totalBytes;
+    private final int totalRetries;
+    private final long tooManyRequestsWaitMillis;
+    private final long p50LatencyMillis;
+    private final long p95LatencyMillis;
+    private final long p50ResponseWaitMillis;
+    private final long p95ResponseWaitMillis;
+    private final List<FileTelemetry> slowestFiles;
+
+    UploadTelemetryAction(int fileCount,
+                          long totalBytes,
+                          int totalRetries,
+                          long tooManyRequestsWaitMillis,
+                          long p50LatencyMillis,
+                          long p95LatencyMillis,
+                          long p50ResponseWaitMillis,
+                          long p95ResponseWaitMillis,
+                          List<FileTelemetry> slowestFiles) {
+        this.fileCount = fileCount;
+        this.totalBytes = totalBytes;
+        this.totalRetries = totalRetries;
+        this.tooManyRequestsWaitMillis = tooManyRequestsWaitMillis;
+        this.p50LatencyMillis = p50LatencyMillis;
+        this.p95LatencyMillis = p95LatencyMillis;
+        this.p50ResponseWaitMillis = p50ResponseWaitMillis;
+        this.p95ResponseWaitMillis = p95ResponseWaitMillis;
+        this.slowestFiles = slowestFiles;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public String getTotalSize() {
+        return FileUtils.byteCountToDisplaySize(totalBytes);
+    }
+
+    public int getTotalRetries() {
+        return totalRetries;
+    }
+
+    public long getTooManyRequestsWaitMillis() {
+        return tooManyRequestsWaitMillis;
+    }
+
+    public long getP50LatencyMillis() {
+        return p50LatencyMillis;
+    }
+
+    public long getP95LatencyMillis() {
+        return p95LatencyMillis;
+    }
+
+    /**
+     * @return the median time waiting for the response after the whole file was sent, or -1 if unknown
+     */
+    public long getP50ResponseWaitMillis() {
+        return p50ResponseWaitMillis;
+    }
+
+    public long getP95ResponseWaitMillis() {
+        return p95ResponseWaitMillis;
+    }
+
+    public List<FileTelemetry> getSlowestFiles() {
+        return Collections.unmodifiableList(slowestFiles);
+    }
+
+    @CheckForNull
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @CheckForNull
+    @Override
+    public String getDisplayName() {
+        return "Xray uploads";
+    }
+
+    @CheckForNull
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * The uploads of a file (all the attempts).
+     */
+    public static class FileTelemetry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String fileName;
+        private final long bytes;
+        private final long latencyMillis;
+        private final long responseWaitMillis;
+        private final int retries;
+        private final long tooManyRequestsWaitMillis;
+        private final int statusCode;
+
+        FileTelemetry(String fileName, long bytes, long latencyMillis, long responseWaitMillis, int retries,
+                      long tooManyRequestsWaitMillis, int statusCode) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.latencyMillis = latencyMillis;
+            this.responseWaitMillis = responseWaitMillis;
+            this.retries = retries;
+            this.tooManyRequestsWaitMillis = tooManyRequestsWaitMillis;
+            this.statusCode = statusCode;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return the bytes sent, in all the attempts
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the latency of all the attempts, without the waits between them
+         */
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        /**
+         * @return the time waiting for the response after the whole file was sent (last attempt), or -1 if unknown
+         */
+        public long getResponseWaitMillis() {
+            return responseWaitMillis;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public long getTooManyRequestsWaitMillis() {
+            return tooManyRequestsWaitMillis;
+        }
+
+        /**
+         * @return the status code of the last attempt, or 0 if it failed without a response
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
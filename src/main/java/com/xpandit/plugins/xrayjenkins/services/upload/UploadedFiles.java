@@ -0,0 +1,105 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.ImportResponseParser;
+import com.xpandit.xray.model.UploadResult;
+import hudson.FilePath;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpStatus;
+
+import javax.annotation.CheckForNull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The upload result of each results file of an import, by file path. The parallel uploads finish in any order, so each
+ * result is kept with its file instead of by its position in the list of results.
+ */
+public class UploadedFiles {
+
+    private final Map<String, UploadResult> resultsByPath = new LinkedHashMap<>();
+
+    /**
+     * @param path   the path of the uploaded file
+     * @param result the result of its upload
+     */
+    public synchronized void add(String path, UploadResult result) {
+        resultsByPath.put(path, result);
+    }
+
+    /**
+     * @param hashesByPath the content hash of each file, by path
+     * @param hostingType  the hosting type of the Xray instance
+     * @return the Test Execution key of each file imported successfully, by content hash
+     */
+    public synchronized Map<String, String> getTestExecutionKeysByHash(Map<String, String> hashesByPath, HostingType hostingType) {
+        final Map<String, String> testExecutionKeysByHash = new HashMap<>();
+        for (Map.Entry<String, UploadResult> uploaded : resultsByPath.entrySet()) {
+            final String hash = hashesByPath.get(uploaded.getKey());
+            final UploadResult result = uploaded.getValue();
+            if (hash == null || !result.isOkStatusCode()) {
+                continue;
+            }
+            final String key = ImportResponseParser.parse(result.getMessage(), hostingType).getTestExecutionKey();
+            if (StringUtils.isNotBlank(key)) {
+                testExecutionKeysByHash.put(hash, key);
+            }
+        }
+        return testExecutionKeysByHash;
+    }
+
+    /**
+     * @param hostingType the hosting type of the Xray instance
+     * @return the Test Execution key of the first file imported successfully, or null if there isn't one
+     */
+    @CheckForNull
+    public synchronized String getTestExecutionKey(HostingType hostingType) {
+        for (UploadResult result : resultsByPath.values()) {
+            if (result.isOkStatusCode()) {
+                final String key = ImportResponseParser.parse(result.getMessage(), hostingType).getTestExecutionKey();
+                if (StringUtils.isNotBlank(key)) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param files the files of the import
+     * @return the files that were not imported successfully (failed, or not uploaded at all)
+     */
+    public synchronized List<FilePath> getNotImported(List<FilePath> files) {
+        final List<FilePath> notImported = new ArrayList<>();
+        for (FilePath file : files) {
+            final UploadResult result = resultsByPath.get(file.getRemote());
+            if (result == null || !result.isOkStatusCode()) {
+                notImported.add(file);
+            }
+        }
+        return notImported;
+    }
+
+    /**
+     * @return the error of the last failed upload if all the failed uploads were refused because Xray was unavailable
+     * (too many requests, or a server error), or null if no upload failed or one failed for another reason (e.g.: an
+     * invalid file, which would fail again).
+     */
+    @CheckForNull
+    public synchronized String getUnavailableError() {
+        String error = null;
+        for (UploadResult result : resultsByPath.values()) {
+            if (result.isOkStatusCode()) {
+                continue;
+            }
+            if (!result.isTooManyRequests() && result.getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                return null;
+            }
+            error = "(" + result.getStatusCode() + ") " + result.getMessage();
+        }
+        return error;
+    }
+}
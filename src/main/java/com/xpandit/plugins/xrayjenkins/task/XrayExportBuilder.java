@@ -14,6 +14,9 @@ import com.xpandit.plugins.xrayjenkins.model.HostingType;
 import com.xpandit.plugins.xrayjenkins.model.ServerConfiguration;
 import com.xpandit.plugins.xrayjenkins.model.XrayInstance;
 import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.XrayEnvironmentVariableSetter;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiter;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiterRegistry;
+import com.xpandit.plugins.xrayjenkins.services.retry.RetryPolicy;
 import com.xpandit.plugins.xrayjenkins.task.compatibility.XrayExportBuilderCompatibilityDelegate;
 import com.xpandit.xray.exception.XrayClientCoreGenericException;
 import com.xpandit.xray.service.XrayExporter;
@@ -225,7 +228,11 @@ public class XrayExportBuilder extends Builder implements SimpleBuildStep {
                 listener.getLogger().println("Will save the feature files in: " + expandedFilePath);
             }
             
-            InputStream file = client.downloadFeatures(expandedIssues, expandedFilter,"true");
+            final XrayRateLimiter rateLimiter = XrayRateLimiterRegistry.get(xrayInstance);
+            InputStream file = RetryPolicy.create().execute("the features export", listener, () -> {
+                XrayRateLimiterRegistry.acquire(rateLimiter, listener);
+                return client.downloadFeatures(expandedIssues, expandedFilter, "true");
+            });
             this.unzipFeatures(listener, workspace, expandedFilePath, file);
             FileUtils.closeSilently(file);
             
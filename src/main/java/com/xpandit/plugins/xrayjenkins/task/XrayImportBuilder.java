@@ -1,7 +1,6 @@
 package com.xpandit.plugins.xrayjenkins.task;
 
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.xpandit.plugins.xrayjenkins.Utils.BuilderUtils;
@@ -10,13 +9,43 @@ import com.xpandit.plugins.xrayjenkins.Utils.FileUtils;
 import com.xpandit.plugins.xrayjenkins.Utils.FormUtils;
 import com.xpandit.plugins.xrayjenkins.Utils.ProxyUtil;
 import com.xpandit.plugins.xrayjenkins.exceptions.XrayJenkinsGenericException;
+import com.xpandit.plugins.xrayjenkins.exceptions.XrayUnavailableException;
 import com.xpandit.plugins.xrayjenkins.factory.ClientFactory;
 import com.xpandit.plugins.xrayjenkins.model.CredentialResolver;
 import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.plugins.xrayjenkins.model.RemoteClientSettings;
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
 import com.xpandit.plugins.xrayjenkins.model.ServerConfiguration;
 import com.xpandit.plugins.xrayjenkins.model.XrayInstance;
+import com.xpandit.plugins.xrayjenkins.services.background.BackgroundUploadAction;
+import com.xpandit.plugins.xrayjenkins.services.background.BackgroundUploadQueue;
+import com.xpandit.plugins.xrayjenkins.services.background.SpooledUpload;
+import com.xpandit.plugins.xrayjenkins.services.background.UploadSpool;
 import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.XrayEnvironmentVariableSetter;
+import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util.ImportResponseParser;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiter;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiterRegistry;
+import com.xpandit.plugins.xrayjenkins.services.retry.RetryPolicy;
+import com.xpandit.plugins.xrayjenkins.services.upload.AdaptiveConcurrencyLimiter;
+import com.xpandit.plugins.xrayjenkins.services.upload.InfoContentCache;
+import com.xpandit.plugins.xrayjenkins.services.upload.PreflightResult;
+import com.xpandit.plugins.xrayjenkins.services.upload.RemoteContent;
+import com.xpandit.plugins.xrayjenkins.services.upload.ResultsBatch;
+import com.xpandit.plugins.xrayjenkins.services.upload.ResultsFilePreflight;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadHashIndex;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadJournal;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadPlan;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadTelemetry;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadTelemetryAction;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadedFiles;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadExecutor;
 import com.xpandit.plugins.xrayjenkins.task.compatibility.XrayImportBuilderCompatibilityDelegate;
+import com.xpandit.plugins.xrayjenkins.task.remote.CompressedFileReader;
+import com.xpandit.plugins.xrayjenkins.task.remote.ContentHashCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.RemoteResultsUploadCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.ResultsBatchCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.ResultsPreflightCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.ResultsSplitCallable;
 import com.xpandit.xray.exception.XrayClientCoreGenericException;
 import com.xpandit.xray.model.Content;
 import com.xpandit.xray.model.Endpoint;
@@ -34,24 +63,29 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Notifier;
 import hudson.tasks.Publisher;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.StreamTaskListener;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.HttpStatus;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
@@ -59,24 +93,37 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 import static com.xpandit.plugins.xrayjenkins.Utils.ConfigurationUtils.getConfiguration;
 import static com.xpandit.plugins.xrayjenkins.Utils.ConfigurationUtils.getConfigurationOrFirstAvailable;
 import static com.xpandit.plugins.xrayjenkins.Utils.CredentialUtil.getUserScopedCredentialsListBoxModel;
 import static com.xpandit.plugins.xrayjenkins.Utils.EnvironmentVariableUtil.expandVariable;
-import static com.xpandit.xray.util.UploadResultUtil.MAX_RETRY_AFTER_TIME_SECONDS;
 
 /**
  * This class is responsible for performing the Xray: Results Import Task
@@ -118,10 +165,24 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
     private static final String TEST_IMPORT_INFO = "testImportInfo";
     private static final String CREDENTIAL_ID = "credentialId";
     private static final String FORMAT_SUFFIX = "formatSuffix";
+    private static final String UPLOAD_CONCURRENCY = "uploadConcurrency";
+    private static final String UPLOAD_FROM_AGENT = "uploadFromAgent";
+    private static final String BATCH_TARGET_SIZE = "batchTargetSize";
+    private static final String SPLIT_FILE_SIZE = "splitFileSize";
+    private static final String SKIP_IDENTICAL_UPLOADS = "skipIdenticalUploads";
+    private static final String RESUME_IMPORT = "resumeImport";
+    private static final String UPLOAD_IN_BACKGROUND = "uploadInBackground";
+    private static final String BACKGROUND_SNAPSHOT_DIR = "xray-background-upload";
+    private static final String SPOOL_FAILED_IMPORTS = "spoolFailedImports";
+    private static final String CREATE_TEST_EXECUTION_FIRST = "createTestExecutionFirst";
+    private static final String VALIDATE_RESULTS_FILES = "validateResultsFiles";
+    private static final String EXCLUDE_INVALID_FILES = "excludeInvalidFiles";
+    private static final String EMPTY_REPORT_FILE_NAME = "empty-report.xml";
+    private static final long BYTES_PER_KILOBYTE = 1024L;
     private static final String CLOUD_DOC_URL = "https://confluence.xpand-it.com/display/XRAYCLOUD/Import+Execution+Results+-+REST";
     private static final String SERVER_DOC_URL = "https://confluence.xpand-it.com/display/XRAY/Import+Execution+Results+-+REST";
     private static final String MULTIPART = "multipart";
-    private static final int MAX_TRIES = 3;
+    private static final int INITIAL_PARALLEL_UPLOADS = 1;
 
 
     private String formatSuffix; //value of format select
@@ -141,6 +202,18 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
     private String importToSameExecution;
     private String importInParallel;
     private String credentialId;
+    private String uploadConcurrency;//Maximum number of parallel uploads, overrides the value of the Xray instance
+    private String uploadFromAgent;
+    private String batchTargetSize;//Target size (in KB) of the merged results files, empty to upload each file by itself
+    private String splitFileSize;//Size (in KB) above which the results files are split into chunks, empty to never split
+    private String skipIdenticalUploads;
+    private String resumeImport;
+    private String uploadInBackground;
+    private String spoolFailedImports;
+    private String createTestExecutionFirst;
+    private String validateResultsFiles;
+    private String excludeInvalidFiles;//Excludes the files that fail the validation, instead of failing the import
+    private transient boolean spooledImport;//Imports the files of the spool, see forSpooledUpload
 
 
     /**
@@ -397,6 +470,137 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
         this.credentialId = credentialId;
     }
 
+    public String getUploadConcurrency() {
+        return this.uploadConcurrency;
+    }
+
+    @DataBoundSetter
+    public void setUploadConcurrency(String uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    public String getUploadFromAgent() {
+        return this.uploadFromAgent;
+    }
+
+    public boolean isUploadFromAgent() {
+        return "true".equals(this.uploadFromAgent);
+    }
+
+    @DataBoundSetter
+    public void setUploadFromAgent(String uploadFromAgent) {
+        this.uploadFromAgent = uploadFromAgent;
+    }
+
+    public String getBatchTargetSize() {
+        return this.batchTargetSize;
+    }
+
+    @DataBoundSetter
+    public void setBatchTargetSize(String batchTargetSize) {
+        this.batchTargetSize = batchTargetSize;
+    }
+
+    public String getSplitFileSize() {
+        return this.splitFileSize;
+    }
+
+    @DataBoundSetter
+    public void setSplitFileSize(String splitFileSize) {
+        this.splitFileSize = splitFileSize;
+    }
+
+    public String getSkipIdenticalUploads() {
+        return this.skipIdenticalUploads;
+    }
+
+    public boolean isSkipIdenticalUploads() {
+        return "true".equals(this.skipIdenticalUploads);
+    }
+
+    @DataBoundSetter
+    public void setSkipIdenticalUploads(String skipIdenticalUploads) {
+        this.skipIdenticalUploads = skipIdenticalUploads;
+    }
+
+    public String getResumeImport() {
+        return this.resumeImport;
+    }
+
+    public boolean isResumeImport() {
+        return "true".equals(this.resumeImport);
+    }
+
+    @DataBoundSetter
+    public void setResumeImport(String resumeImport) {
+        this.resumeImport = resumeImport;
+    }
+
+    public String getUploadInBackground() {
+        return this.uploadInBackground;
+    }
+
+    public boolean isUploadInBackground() {
+        return "true".equals(this.uploadInBackground);
+    }
+
+    @DataBoundSetter
+    public void setUploadInBackground(String uploadInBackground) {
+        this.uploadInBackground = uploadInBackground;
+    }
+
+    public String getSpoolFailedImports() {
+        return this.spoolFailedImports;
+    }
+
+    public boolean isSpoolFailedImports() {
+        return "true".equals(this.spoolFailedImports);
+    }
+
+    @DataBoundSetter
+    public void setSpoolFailedImports(String spoolFailedImports) {
+        this.spoolFailedImports = spoolFailedImports;
+    }
+
+    public String getCreateTestExecutionFirst() {
+        return this.createTestExecutionFirst;
+    }
+
+    public boolean isCreateTestExecutionFirst() {
+        return "true".equals(this.createTestExecutionFirst);
+    }
+
+    @DataBoundSetter
+    public void setCreateTestExecutionFirst(String createTestExecutionFirst) {
+        this.createTestExecutionFirst = createTestExecutionFirst;
+    }
+
+    public String getValidateResultsFiles() {
+        return this.validateResultsFiles;
+    }
+
+    public boolean isValidateResultsFiles() {
+        return "true".equals(this.validateResultsFiles);
+    }
+
+    @DataBoundSetter
+    public void setValidateResultsFiles(String validateResultsFiles) {
+        this.validateResultsFiles = validateResultsFiles;
+    }
+
+    public String getExcludeInvalidFiles() {
+        return this.excludeInvalidFiles;
+    }
+
+    public boolean isExcludeInvalidFiles() {
+        return "true".equals(this.excludeInvalidFiles);
+    }
+
+    @DataBoundSetter
+    public void setExcludeInvalidFiles(String excludeInvalidFiles) {
+        this.excludeInvalidFiles = excludeInvalidFiles;
+    }
+
     public String getFormatName() {
         return Endpoint.lookupByName(endpointName).getName();
     }
@@ -501,85 +705,892 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
 
         validate(getDynamicFieldsMap());
 
-        listener.getLogger().println("Starting XRAY: Results Import Task...");
+        listener.getLogger().println("Starting XRAY: Results Import Task...");
+
+        listener.getLogger().println("##########################################################");
+        listener.getLogger().println("####     Xray is importing the execution results      ####");
+        listener.getLogger().println("##########################################################");
+        XrayInstance importInstance = ConfigurationUtils.getConfiguration(serverInstance);
+
+        if (importInstance == null) {
+            XrayEnvironmentVariableSetter
+                    .failed("The Jira server configuration of this task was not found.")
+                    .setAction(build, listener);
+            throw new AbortException("The Jira server configuration of this task was not found.");
+        } else if (StringUtils.isBlank(importInstance.getCredentialId()) && StringUtils.isBlank(credentialId)) {
+            listener.getLogger().println("This XrayInstance requires an User scoped credential.");
+
+            XrayEnvironmentVariableSetter
+                    .failed("This XrayInstance requires an User scoped credential.")
+                    .setAction(build, listener);
+            throw new AbortException("This XrayInstance requires an User scoped credential.");
+        }
+
+        final HostingType hostingType = importInstance.getHosting() == null
+                ? HostingType.SERVER
+                : importInstance.getHosting();
+        final StandardCredentials credentials = getCredentials(build, importInstance, hostingType);
+        final XrayImporter client = createImportClient(build, listener, importInstance, hostingType, credentials);
+
+        // When uploading from the agent, the results files are sent to Xray by the agent itself, not by the controller.
+        final RemoteClientSettings agentClientSettings;
+        if (isUploadFromAgent()) {
+            agentClientSettings = RemoteClientSettings.create(importInstance, credentials)
+                    .orElseThrow(() -> new XrayJenkinsGenericException("Unable to upload the results from the agent! (check credential type selected)."));
+            listener.getLogger().println("The results files will be uploaded directly from the agent");
+        } else {
+            agentClientSettings = null;
+        }
+        final boolean compressTransfers = importInstance.isCompressTransfers();
+
+        EnvVars env = build.getEnvironment(listener);
+        String resolved = expandVariable(env, this.importFilePath);
+
+        Endpoint endpointValue = Endpoint.lookupBySuffix(this.endpointName);
+
+        List<FilePath> files = BuilderUtils.isGlobExpressionsSupported(endpointValue)
+                ? FileUtils.getFiles(workspace, resolved, listener, launcher.getChannel())
+                : Collections.singletonList(getFile(workspace, resolved, listener));
+        if (isValidateResultsFiles() && BuilderUtils.isGlobExpressionsSupported(endpointValue)) {
+            files = preflightResultsFiles(build, workspace, listener, endpointValue, files);
+        }
+
+        if (isUploadInBackground()) {
+            uploadInBackground(build, workspace, listener, importInstance, client, hostingType, env, endpointValue, files);
+            return;
+        }
+
+        final XrayEnvironmentVariableSetter variableSetter = importResults(build, workspace, listener, importInstance, client,
+                                                                           hostingType, env, endpointValue, files,
+                                                                           agentClientSettings, compressTransfers, true);
+
+        // Sets the Xray Build Environment Variables
+        variableSetter.setAction(build, listener);
+    }
+
+    /**
+     * Parses the results files on the agent (in parallel) before uploading them, checking that they are well-formed
+     * and match the format of the endpoint. The invalid files are excluded, or the import fails before any upload.
+     *
+     * @return the files to import
+     */
+    private List<FilePath> preflightResultsFiles(
+            Run<?, ?> build,
+            FilePath workspace,
+            TaskListener listener,
+            Endpoint endpointValue,
+            List<FilePath> files
+    ) throws IOException, InterruptedException {
+        final Optional<ResultsFilePreflight> preflight = ResultsFilePreflight.forEndpoint(endpointValue);
+        if (!preflight.isPresent() || CollectionUtils.isEmpty(files)) {
+            return files;
+        }
+
+        final List<String> filePaths = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            filePaths.add(file.getRemote());
+        }
+        final List<PreflightResult> results = workspace.act(new ResultsPreflightCallable(preflight.get(), filePaths));
+
+        final List<FilePath> validFiles = new ArrayList<>(files.size());
+        final List<String> invalidFiles = new ArrayList<>();
+        long testCount = 0L;
+        for (int i = 0; i < files.size(); i++) {
+            final PreflightResult result = results.get(i);
+            if (result.isValid()) {
+                listener.getLogger().println(files.get(i).getName() + ": " + result.getTestCount() + " tests");
+                validFiles.add(files.get(i));
+                testCount += result.getTestCount();
+            } else {
+                listener.getLogger().println(files.get(i).getName() + ": invalid, " + result.getError());
+                invalidFiles.add(files.get(i).getName());
+            }
+        }
+        listener.getLogger().println("Pre-flight check: " + testCount + " tests in " + validFiles.size() + " valid results files, "
+                                             + invalidFiles.size() + " invalid");
+
+        if (!invalidFiles.isEmpty() && (!isExcludeInvalidFiles() || validFiles.isEmpty())) {
+            final String message = "Invalid results files: " + StringUtils.join(invalidFiles, ", ");
+            XrayEnvironmentVariableSetter
+                    .failed(message)
+                    .setAction(build, listener);
+            throw new AbortException(message);
+        }
+        return validFiles;
+    }
+
+    private StandardCredentials getCredentials(
+            Run<?, ?> build,
+            XrayInstance importInstance,
+            HostingType hostingType
+    ) throws AbortException {
+        final CredentialResolver credentialResolver = importInstance
+                .getCredential(build)
+                .orElseGet(() -> new CredentialResolver(this.credentialId, build, importInstance.getHosting()));
+
+        final StandardCredentials credentials = credentialResolver.getCredentials();
+        if (credentials == null) {
+            String credentialIdNotFound = Optional.ofNullable(importInstance.getCredentialId())
+                    .filter(StringUtils::isNotBlank)
+                    .orElse(this.credentialId);
+            String errorTxt = String.format(
+                    "Unable to create Xray %s results import client! Credential '%s' not found. For Cloud instances: Secret Text credentials are not allowed",
+                    hostingType.name(),
+                    credentialIdNotFound);
+            throw new AbortException(errorTxt);
+        }
+        return credentials;
+    }
+
+    private XrayImporter createImportClient(
+            Run<?, ?> build,
+            TaskListener listener,
+            XrayInstance importInstance,
+            HostingType hostingType,
+            StandardCredentials credentials
+    ) {
+        final HttpRequestProvider.ProxyBean proxyBean = ProxyUtil.createProxyBean();
+
+        if (hostingType == HostingType.CLOUD) {
+            return ClientFactory.getCloudResultsImportClient(credentials, proxyBean)
+                    .orElseThrow(() -> new XrayJenkinsGenericException("Unable to create Xray Cloud results import client! (check credential type selected)."));
+        } else if (hostingType == HostingType.SERVER) {
+            return ClientFactory.getServerResultsImportClient(importInstance.getServerAddress(), credentials, proxyBean)
+                    .orElseThrow(() -> new XrayJenkinsGenericException("Unable to create Xray Server/DC results import client! (check credential type selected)."));
+        } else {
+            XrayEnvironmentVariableSetter
+                    .failed("Hosting type not recognized.")
+                    .setAction(build, listener);
+            throw new XrayJenkinsGenericException("Hosting type not recognized.");
+        }
+    }
+
+    /**
+     * Imports the results files.
+     *
+     * @param workspace   the directory where the results and info files are stored
+     * @param files       the results files
+     * @param inBuildStep true if the import runs inside the build step, false if it runs after it (e.g.: in the
+     *                    background), when nothing must be added to the build and the import can't be spooled
+     * @return the new values of the Xray environment variables
+     */
+    private XrayEnvironmentVariableSetter importResults(
+            Run<?, ?> build,
+            FilePath workspace,
+            TaskListener listener,
+            XrayInstance importInstance,
+            XrayImporter client,
+            HostingType hostingType,
+            @Nullable EnvVars env,
+            Endpoint endpointValue,
+            List<FilePath> files,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers,
+            boolean inBuildStep
+    ) throws IOException, InterruptedException {
+        final List<UploadResult> uploadResults = new ArrayList<>();
+        XrayEnvironmentVariableSetter spooledVariables = null;
+        final List<String> reusedTestExecKeys = new ArrayList<>();
+        final XrayRateLimiter rateLimiter = XrayRateLimiterRegistry.get(importInstance);
+        final XrayRateLimiter.Metrics rateLimiterStart = rateLimiter.getMetrics();
+        final RetryPolicy retryPolicy = RetryPolicy.create();
+        final UploadTelemetry telemetry = new UploadTelemetry();
+        // The info files are read once, and not for each results file
+        try (InfoContentCache infoCache = new InfoContentCache()) {
+            final UploadPlan plan = createUploadPlan(workspace, listener, env, infoCache, telemetry);
+
+            if (BuilderUtils.isGlobExpressionsSupported(endpointValue)) {
+                final List<FilePath> mergedFiles = new ArrayList<>();
+                try {
+                    List<FilePath> filesToImport = batchResultsFiles(workspace, listener, endpointValue, files, mergedFiles);
+                    final int unsplitFilesCount = filesToImport.size();
+                    filesToImport = splitResultsFiles(workspace, listener, endpointValue, filesToImport, mergedFiles);
+                    // The chunks of a file are always imported in parallel, to the same Test Execution
+                    final boolean isSplit = filesToImport.size() > unsplitFilesCount;
+
+                    String sameExecutionKey = null;
+                    final Map<String, String> hashesByPath = isSkipIdenticalUploads() || isResumeImport()
+                            ? hashResultsFiles(workspace, filesToImport)
+                            : Collections.emptyMap();
+                    final String importSettings = isSkipIdenticalUploads() ? getImportSettingsDigest(workspace, plan) : null;
+                    final UploadJournal journal = isResumeImport()
+                            ? UploadJournal.open(build, getJournalId(importInstance), hashesByPath)
+                            : null;
+                    // Only the Test Executions of this build can receive the other files of the import
+                    final List<String> resumedTestExecKeys = new ArrayList<>();
+                    if (journal != null) {
+                        filesToImport = skipJournaledFiles(listener, journal, filesToImport, resumedTestExecKeys);
+                        reusedTestExecKeys.addAll(resumedTestExecKeys);
+                    }
+                    if (isSkipIdenticalUploads() && !hashesByPath.isEmpty()) {
+                        filesToImport = skipImportedFiles(build, listener, importInstance, importSettings, filesToImport, hashesByPath, reusedTestExecKeys);
+                    }
+                    if ("true".equals(importToSameExecution) && !resumedTestExecKeys.isEmpty()) {
+                        sameExecutionKey = resumedTestExecKeys.get(0);
+                    }
+
+                    final UploadedFiles uploadedFiles = new UploadedFiles();
+                    String unreachableError = null;
+                    try {
+                        if (("true".equals(importInParallel) || isSplit) && CollectionUtils.isNotEmpty(filesToImport) && filesToImport.size() > 1) {
+                            importResultsInParallel(build, workspace, listener, importInstance, client, plan, uploadResults, new ArrayList<>(filesToImport), sameExecutionKey, journal, uploadedFiles, rateLimiter, retryPolicy, agentClientSettings, compressTransfers, inBuildStep);
+                        } else {
+                            importResultsSequential(build, workspace, listener, importInstance, client, plan, uploadResults, filesToImport, sameExecutionKey, journal, uploadedFiles, rateLimiter, retryPolicy, agentClientSettings, compressTransfers, inBuildStep);
+                        }
+                    } catch (IOException | XrayUnavailableException e) {
+                        unreachableError = getUnreachableError(e);
+                    }
+
+                    if (isSkipIdenticalUploads() && !hashesByPath.isEmpty()) {
+                        UploadHashIndex.record(build.getParent(), importInstance.getConfigID(), this.endpointName, importSettings,
+                                               uploadedFiles.getTestExecutionKeysByHash(hashesByPath, hostingType));
+                    }
+                    // Spooled before the temporary (merged and split) files are deleted
+                    spooledVariables = spoolUnavailableImport(build, workspace, listener, importInstance, hostingType, env,
+                                                              filesToImport, uploadedFiles, sameExecutionKey,
+                                                              unreachableError);
+                } finally {
+                    for (FilePath mergedFile : mergedFiles) {
+                        mergedFile.delete();
+                    }
+                }
+
+            } else {
+                final UploadedFiles uploadedFiles = new UploadedFiles();
+                String unreachableError = null;
+                try {
+                    final UploadResult result = uploadResults(workspace, listener, client, plan, null, files.get(0),
+                                                              rateLimiter, retryPolicy, agentClientSettings, compressTransfers);
+                    uploadResults.add(result);
+                    uploadedFiles.add(files.get(0).getRemote(), result);
+                } catch (IOException | XrayUnavailableException e) {
+                    unreachableError = getUnreachableError(e);
+                }
+                spooledVariables = spoolUnavailableImport(build, workspace, listener, importInstance, hostingType, env,
+                                                          files, uploadedFiles, null, unreachableError);
+            }
+        }
+
+        XrayRateLimiterRegistry.logMetrics(rateLimiter, rateLimiterStart, listener);
+        retryPolicy.getTimeline().log(listener);
+        if (!telemetry.isEmpty()) {
+            final UploadTelemetryAction telemetryAction = telemetry.toAction(retryPolicy.getTimeline());
+            UploadTelemetry.log(telemetryAction, listener);
+            if (inBuildStep) {
+                build.addAction(telemetryAction);
+            }
+        }
+
+        if (spooledVariables != null) {
+            return spooledVariables;
+        }
+        return XrayEnvironmentVariableSetter.parseResultImportResponse(uploadResults, hostingType, listener.getLogger(), reusedTestExecKeys);
+    }
+
+    /**
+     * @return the error of an upload that could not connect to Xray, or was asked to wait too long, if the failed
+     * imports are spooled
+     * @throws IOException the error, if it can't be spooled (e.g.: the import is not spooled, or Xray refused a file)
+     */
+    private String getUnreachableError(Exception e) throws IOException {
+        if (isSpoolFailedImports() && isXrayUnreachable(e)) {
+            return e.getMessage();
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    private static boolean isXrayUnreachable(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof XrayUnavailableException
+                    || cause instanceof ConnectException
+                    || cause instanceof NoRouteToHostException
+                    || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Spools the files that were not imported, when Xray was unreachable or refused them because it was unavailable
+     * (too many requests, or a server error). The files refused for another reason (e.g.: invalid) are never spooled,
+     * they would fail again. A background import is spooled too, so the results are not lost; only the spool actions of
+     * the build are changed.
+     *
+     * @param sameExecutionKey the Test Execution the files of this build are imported to, if already known
+     * @param unreachableError the error of an upload that could not connect to Xray, if any
+     * @return the values of the Xray variables if the files were spooled, or null if the import was not spooled
+     */
+    @CheckForNull
+    private XrayEnvironmentVariableSetter spoolUnavailableImport(
+            Run<?, ?> build,
+            FilePath workspace,
+            TaskListener listener,
+            XrayInstance importInstance,
+            HostingType hostingType,
+            @Nullable EnvVars env,
+            List<FilePath> files,
+            UploadedFiles uploadedFiles,
+            @Nullable String sameExecutionKey,
+            @Nullable String unreachableError
+    ) throws InterruptedException {
+        if (!isSpoolFailedImports()) {
+            return null;
+        }
+        final String error = unreachableError != null ? unreachableError : uploadedFiles.getUnavailableError();
+        if (error == null) {
+            return null;
+        }
+        final String message = "Xray is unavailable: " + error;
+        if (spooledImport) {
+            // Already in the spool: the spool drain imports it again later
+            throw new XrayJenkinsGenericException(message);
+        }
+
+        String testExecutionKey = null;
+        if ("true".equals(importToSameExecution)) {
+            testExecutionKey = sameExecutionKey != null ? sameExecutionKey : uploadedFiles.getTestExecutionKey(hostingType);
+        }
+        if (!spoolImport(build, workspace, listener, importInstance, env, uploadedFiles.getNotImported(files), testExecutionKey, message)) {
+            throw new XrayJenkinsGenericException(message);
+        }
+        return XrayEnvironmentVariableSetter.failed(message);
+    }
+
+    /**
+     * Copies the results (and info) files to the build directory and queues their import in the controller, so the
+     * step returns without waiting for Xray. The build is updated with the results when the import finishes.
+     */
+    private void uploadInBackground(
+            Run<?, ?> build,
+            FilePath workspace,
+            TaskListener listener,
+            XrayInstance importInstance,
+            XrayImporter client,
+            HostingType hostingType,
+            EnvVars env,
+            Endpoint endpointValue,
+            List<FilePath> files
+    ) throws IOException, InterruptedException {
+        final String id = BACKGROUND_SNAPSHOT_DIR + "-" + Util.getDigestOf(getJournalId(importInstance));
+        final FilePath snapshotDir = new FilePath(new File(build.getRootDir(), id));
+        final List<FilePath> snapshotFiles = snapshotFiles(workspace, listener, env, files, snapshotDir);
+
+        final BackgroundUploadAction action = new BackgroundUploadAction(id, false);
+        build.addAction(action);
+        build.save();
+
+        BackgroundUploadQueue.submit(() -> importResultsInBackground(build, snapshotDir, action, importInstance, client,
+                                                                     hostingType, env, endpointValue, snapshotFiles));
+        listener.getLogger().println(snapshotFiles.size() + " results files will be imported in the background. "
+                                             + "The import log is available at " + action.getLogFile(build));
+    }
+
+    private void importResultsInBackground(
+            Run<?, ?> build,
+            FilePath snapshotDir,
+            BackgroundUploadAction action,
+            XrayInstance importInstance,
+            XrayImporter client,
+            HostingType hostingType,
+            EnvVars env,
+            Endpoint endpointValue,
+            List<FilePath> snapshotFiles
+    ) {
+        action.running();
+        try (StreamTaskListener listener = new StreamTaskListener(action.getLogFile(build), true, StandardCharsets.UTF_8)) {
+            try {
+                final XrayEnvironmentVariableSetter variableSetter = importResults(build, snapshotDir, listener, importInstance,
+                                                                                   client, hostingType, env, endpointValue,
+                                                                                   snapshotFiles, null, false, false);
+                logVariables(listener, variableSetter);
+                action.finished(variableSetter.isSuccessful(), null, variableSetter.getVariables());
+            } catch (IOException | RuntimeException e) {
+                LOG.error(ERROR_LOG, e);
+                listener.error(ERROR_LOG + ": " + e.getMessage());
+                action.finished(false, e.getMessage(), XrayEnvironmentVariableSetter.failed(e.getMessage()).getVariables());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                action.finished(false, "The import was interrupted", XrayEnvironmentVariableSetter.failed().getVariables());
+            }
+
+            BackgroundUploadQueue.deleteSnapshot(snapshotDir);
+            build.save();
+        } catch (IOException e) {
+            LOG.error("Unable to save the background import of " + build.getFullDisplayName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies the results files, and the info files given as paths, to a directory in the controller.
+     *
+     * @return the copies of the results files
+     */
+    private List<FilePath> snapshotFiles(
+            FilePath workspace,
+            TaskListener listener,
+            EnvVars env,
+            List<FilePath> files,
+            FilePath snapshotDir
+    ) throws IOException, InterruptedException {
+        snapshotDir.deleteRecursive();
+        snapshotDir.mkdirs();
+
+        final List<FilePath> snapshotFiles = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            final FilePath snapshotFile = new FilePath(snapshotDir, getSnapshotPath(workspace, file, snapshotFiles.size()));
+            file.copyTo(snapshotFile);
+            snapshotFiles.add(snapshotFile);
+        }
+        if ("filePath".equals(this.inputInfoSwitcher) && StringUtils.isNotBlank(this.importInfo)) {
+            copyInfoFileToSnapshot(workspace, listener, snapshotDir, expandVariable(env, this.importInfo));
+        }
+        if ("filePath".equals(this.inputTestInfoSwitcher) && StringUtils.isNotBlank(this.testImportInfo)) {
+            copyInfoFileToSnapshot(workspace, listener, snapshotDir, expandVariable(env, this.testImportInfo));
+        }
+        return snapshotFiles;
+    }
+
+    /**
+     * Copies the results files to the {@link UploadSpool}, so they are imported when Xray is available again, and
+     * leaves the build successful.
+     *
+     * @param files            the files that were not imported
+     * @param testExecutionKey the Test Execution where the files must be imported, if any
+     * @param error            the error of the import
+     * @return true if the import was spooled, false if it could not be spooled (the error must be thrown)
+     */
+    private boolean spoolImport(
+            Run<?, ?> build,
+            FilePath workspace,
+            TaskListener listener,
+            XrayInstance importInstance,
+            @Nullable EnvVars env,
+            List<FilePath> files,
+            @Nullable String testExecutionKey,
+            String error
+    ) throws InterruptedException {
+        final String id = Util.getDigestOf(build.getExternalizableId() + "|" + getJournalId(importInstance));
+        final FilePath spoolDir = new FilePath(UploadSpool.getFilesDir(id));
+        try {
+            final List<FilePath> spooledFiles = snapshotFiles(workspace, listener, env, files, spoolDir);
+            final List<String> filePaths = new ArrayList<>(spooledFiles.size());
+            for (FilePath spooledFile : spooledFiles) {
+                filePaths.add(spooledFile.getRemote().substring(spoolDir.getRemote().length() + 1));
+            }
+
+            final Map<String, String> queryParams = new HashMap<>();
+            for (Map.Entry<QueryParameter, String> queryParam : prepareQueryParam(env).entrySet()) {
+                queryParams.put(queryParam.getKey().name(), queryParam.getValue());
+            }
+            if (testExecutionKey != null) {
+                queryParams.put(QueryParameter.TEST_EXEC_KEY.name(), testExecutionKey);
+            }
+            UploadSpool.add(new SpooledUpload(id, build.getParent().getFullName(), build.getNumber(),
+                                              importInstance.getConfigID(), this.credentialId, this.endpointName,
+                                              expandVariable(env, this.importFilePath), queryParams,
+                                              "true".equals(importToSameExecution),
+                                              expandVariable(env, this.importInfo), this.inputInfoSwitcher,
+                                              expandVariable(env, this.testImportInfo), this.inputTestInfoSwitcher,
+                                              filePaths, error));
+
+            // A retry of this step in the same build replaces the previous import in the spool
+            for (BackgroundUploadAction previousAction : build.getActions(BackgroundUploadAction.class)) {
+                if (previousAction.getId().equals(id)) {
+                    build.removeAction(previousAction);
+                }
+            }
+            final BackgroundUploadAction action = new BackgroundUploadAction(id, true);
+            action.queued(error);
+            build.addAction(action);
+            build.save();
+        } catch (IOException e) {
+            LOG.error("Unable to spool the Xray import", e);
+            UploadSpool.delete(id);
+            listener.error("Unable to queue the import to retry it later: " + e.getMessage());
+            return false;
+        }
+
+        listener.getLogger().println("Unable to import " + files.size() + " results files: " + error);
+        listener.getLogger().println("The results were queued, they will be imported when Xray is available again");
+        return true;
+    }
+
+    /**
+     * Imports the results files spooled by a previous build.
+     *
+     * @param build         the build that spooled the import
+     * @param upload        the spooled import
+     * @param drainListener the listener used when the build has no log for the import
+     * @throws IOException if the import failed, and must be retried
+     */
+    public static void importSpooledResults(
+            Run<?, ?> build,
+            SpooledUpload upload,
+            TaskListener drainListener
+    ) throws IOException, InterruptedException {
+        forSpooledUpload(upload).importSpooledResultsWithLog(build, upload, drainListener);
+    }
+
+    /**
+     * @return a step that imports the spooled files with the settings they were spooled with. The journal of the step
+     * keeps a failed attempt from importing again the files already imported.
+     */
+    static XrayImportBuilder forSpooledUpload(SpooledUpload upload) {
+        final Map<String, String> queryParams = upload.getQueryParams();
+        final XrayImportBuilder step = new XrayImportBuilder(upload.getInstanceId(),
+                                                             upload.getEndpointName(),
+                                                             queryParams.get(QueryParameter.PROJECT_KEY.name()),
+                                                             queryParams.get(QueryParameter.TEST_ENVIRONMENTS.name()),
+                                                             queryParams.get(QueryParameter.TEST_PLAN_KEY.name()),
+                                                             queryParams.get(QueryParameter.FIX_VERSION.name()),
+                                                             upload.getImportFilePath(),
+                                                             queryParams.get(QueryParameter.TEST_EXEC_KEY.name()),
+                                                             queryParams.get(QueryParameter.REVISION.name()),
+                                                             upload.getInfo(),
+                                                             upload.getTestInfo(),
+                                                             upload.getInfoSwitcher(),
+                                                             upload.getTestInfoSwitcher(),
+                                                             String.valueOf(upload.isImportToSameExecution()),
+                                                             upload.getCredentialId(),
+                                                             null);
+        step.setResumeImport("true");
+        step.setSpoolFailedImports("true");
+        step.spooledImport = true;
+        return step;
+    }
+
+    private void importSpooledResultsWithLog(
+            Run<?, ?> build,
+            SpooledUpload upload,
+            TaskListener drainListener
+    ) throws IOException, InterruptedException {
+        final BackgroundUploadAction action = build.getActions(BackgroundUploadAction.class).stream()
+                .filter(candidate -> candidate.getId().equals(upload.getId()))
+                .findFirst()
+                .orElse(null);
+        if (action == null) {
+            importSpooledResults(build, upload, drainListener, null);
+            return;
+        }
+
+        action.running();
+        try (StreamTaskListener listener = new StreamTaskListener(action.getLogFile(build), true, StandardCharsets.UTF_8)) {
+            importSpooledResults(build, upload, listener, action);
+        }
+    }
+
+    private void importSpooledResults(
+            Run<?, ?> build,
+            SpooledUpload upload,
+            TaskListener listener,
+            @Nullable BackgroundUploadAction action
+    ) throws IOException, InterruptedException {
+        try {
+            final XrayInstance importInstance = ConfigurationUtils.getConfiguration(serverInstance);
+            if (importInstance == null) {
+                throw new AbortException("The Jira server configuration of this task was not found.");
+            }
+            final HostingType hostingType = importInstance.getHosting() == null
+                    ? HostingType.SERVER
+                    : importInstance.getHosting();
+            final StandardCredentials credentials = getCredentials(build, importInstance, hostingType);
+            final XrayImporter client = createImportClient(build, listener, importInstance, hostingType, credentials);
+
+            listener.getLogger().println("Importing the results queued by " + build.getFullDisplayName()
+                                                 + " (attempt #" + (upload.getAttempts() + 1) + ")");
+            final XrayEnvironmentVariableSetter variableSetter = importResults(build, new FilePath(upload.getDir()), listener,
+                                                                               importInstance, client, hostingType,
+                                                                               null, lookupForEndpoint(),
+                                                                               upload.getFiles(), null, false, false);
+            logVariables(listener, variableSetter);
+            if (action != null) {
+                action.finished(variableSetter.isSuccessful(), null, variableSetter.getVariables());
+            }
+        } catch (IOException | RuntimeException e) {
+            listener.error(e.getMessage());
+            if (action != null) {
+                action.queued(e.getMessage());
+            }
+            throw e;
+        } finally {
+            build.save();
+        }
+    }
+
+    /**
+     * Logs the values of the Xray variables of an import that runs outside the build step, instead of setting them in
+     * the build: the build may be complete, and its next steps can't read them anyway.
+     */
+    private static void logVariables(TaskListener listener, XrayEnvironmentVariableSetter variableSetter) {
+        for (Map.Entry<String, String> variable : new TreeMap<>(variableSetter.getVariables()).entrySet()) {
+            listener.getLogger().println(variable.getKey() + ": " + variable.getValue());
+        }
+    }
+
+    /**
+     * @return the path of the file in the snapshot: the same path relative to the workspace, when the file is inside it.
+     */
+    private String getSnapshotPath(FilePath workspace, FilePath file, int index) {
+        final String workspacePath = workspace.getRemote();
+        final String filePath = file.getRemote();
+        if (filePath.startsWith(workspacePath) && filePath.length() > workspacePath.length() + 1) {
+            return filePath.substring(workspacePath.length() + 1);
+        }
+        return index + "-" + file.getName();
+    }
+
+    private void copyInfoFileToSnapshot(
+            FilePath workspace,
+            TaskListener listener,
+            FilePath snapshotDir,
+            String infoFilePath
+    ) throws IOException, InterruptedException {
+        final String relativePath = StringUtils.trimToEmpty(infoFilePath);
+        if (new File(relativePath).isAbsolute()) {
+            throw new AbortException("The info files of a background import must be relative to the workspace: " + relativePath);
+        }
+        getFile(workspace, relativePath, listener).copyTo(new FilePath(snapshotDir, relativePath));
+    }
+
+    /**
+     * Merges the small results files into batches of the configured target size, in the agent where they are stored.
+     *
+     * @param mergedFiles the list where the temporary merged files are added, so they can be deleted after the upload
+     * @return the files to upload (merged files and the files that were not merged)
+     */
+    private List<FilePath> batchResultsFiles(
+            FilePath workspace,
+            TaskListener listener,
+            Endpoint endpointValue,
+            List<FilePath> files,
+            List<FilePath> mergedFiles
+    ) throws IOException, InterruptedException {
+        final long targetSizeBytes = NumberUtils.toLong(StringUtils.trim(this.batchTargetSize), 0L) * BYTES_PER_KILOBYTE;
+        final Optional<ResultsFormat> format = ResultsFormat.fromEndpoint(endpointValue);
+        final FilePath tempDir = WorkspaceList.tempDir(workspace);
+        if (targetSizeBytes <= 0 || !format.isPresent() || tempDir == null || CollectionUtils.isEmpty(files) || files.size() < 2) {
+            return files;
+        }
+        if (!"true".equals(importToSameExecution)) {
+            listener.getLogger().println("The results files are not merged: merging requires importing them to the same Test Execution");
+            return files;
+        }
+
+        final List<String> filePaths = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            filePaths.add(file.getRemote());
+        }
+
+        tempDir.mkdirs();
+        final List<ResultsBatch> batches = tempDir.act(new ResultsBatchCallable(format.get(), targetSizeBytes, filePaths));
+
+        final List<FilePath> batchedFiles = new ArrayList<>(batches.size());
+        for (ResultsBatch batch : batches) {
+            final FilePath batchFile = new FilePath(workspace.getChannel(), batch.getPath());
+            if (batch.isMerged()) {
+                mergedFiles.add(batchFile);
+            }
+            batchedFiles.add(batchFile);
+        }
+
+        listener.getLogger().println("Merged " + files.size() + " results files into " + batchedFiles.size() + " uploads");
+        return batchedFiles;
+    }
+
+    /**
+     * Splits the results files bigger than the configured size into chunks (between their suites) on the agent, so they
+     * can be uploaded in parallel. The chunks are added to the temporary files, to be deleted after the import.
+     *
+     * @return the files to upload
+     */
+    private List<FilePath> splitResultsFiles(
+            FilePath workspace,
+            TaskListener listener,
+            Endpoint endpointValue,
+            List<FilePath> files,
+            List<FilePath> chunkFiles
+    ) throws IOException, InterruptedException {
+        final long splitSizeBytes = NumberUtils.toLong(StringUtils.trim(this.splitFileSize), 0L) * BYTES_PER_KILOBYTE;
+        final Optional<ResultsFormat> format = ResultsFormat.fromEndpoint(endpointValue);
+        final FilePath tempDir = WorkspaceList.tempDir(workspace);
+        if (splitSizeBytes <= 0 || !format.isPresent() || tempDir == null || CollectionUtils.isEmpty(files)) {
+            return files;
+        }
+        if (!"true".equals(importToSameExecution)) {
+            listener.getLogger().println("The results files are not split: splitting requires importing them to the same Test Execution");
+            return files;
+        }
 
-        listener.getLogger().println("##########################################################");
-        listener.getLogger().println("####     Xray is importing the execution results      ####");
-        listener.getLogger().println("##########################################################");
-        XrayInstance importInstance = ConfigurationUtils.getConfiguration(serverInstance);
+        final List<String> filePaths = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            filePaths.add(file.getRemote());
+        }
 
-        if (importInstance == null) {
-            XrayEnvironmentVariableSetter
-                    .failed("The Jira server configuration of this task was not found.")
-                    .setAction(build, listener);
-            throw new AbortException("The Jira server configuration of this task was not found.");
-        } else if (StringUtils.isBlank(importInstance.getCredentialId()) && StringUtils.isBlank(credentialId)) {
-            listener.getLogger().println("This XrayInstance requires an User scoped credential.");
+        tempDir.mkdirs();
+        final List<ResultsBatch> batches = tempDir.act(new ResultsSplitCallable(format.get(), splitSizeBytes, filePaths));
 
-            XrayEnvironmentVariableSetter
-                    .failed("This XrayInstance requires an User scoped credential.")
-                    .setAction(build, listener);
-            throw new AbortException("This XrayInstance requires an User scoped credential.");
+        final List<FilePath> splitFiles = new ArrayList<>(batches.size());
+        for (ResultsBatch batch : batches) {
+            final FilePath batchFile = new FilePath(workspace.getChannel(), batch.getPath());
+            if (batch.isMerged()) {
+                chunkFiles.add(batchFile);
+            }
+            splitFiles.add(batchFile);
         }
 
-        final CredentialResolver credentialResolver = importInstance
-                .getCredential(build)
-                .orElseGet(() -> new CredentialResolver(this.credentialId, build, importInstance.getHosting()));
-        final HttpRequestProvider.ProxyBean proxyBean = ProxyUtil.createProxyBean();
-        final HostingType hostingType = importInstance.getHosting() == null
-                ? HostingType.SERVER
-                : importInstance.getHosting();
+        if (splitFiles.size() > files.size()) {
+            listener.getLogger().println("Split " + files.size() + " results files into " + splitFiles.size() + " uploads");
+        }
+        return splitFiles;
+    }
 
-        final StandardCredentials credentials = credentialResolver.getCredentials();
-        if (credentials == null) {
-            String credentialIdNotFound = Optional.ofNullable(importInstance.getCredentialId())
-                    .filter(StringUtils::isNotBlank)
-                    .orElse(this.credentialId);
-            String errorTxt = String.format(
-                    "Unable to create Xray %s results import client! Credential '%s' not found. For Cloud instances: Secret Text credentials are not allowed",
-                    hostingType.name(),
-                    credentialIdNotFound);
-            throw new AbortException(errorTxt);
+    /**
+     * @return the digest of the settings that change what an import does (the query parameters, e.g.: the Test Plan or
+     * the Test Environments, and the info contents), so a file imported with other settings is not skipped
+     */
+    private static String getImportSettingsDigest(FilePath workspace, UploadPlan plan) throws IOException, InterruptedException {
+        final List<String> infoFilePaths = new ArrayList<>(2);
+        for (RemoteContent content : Arrays.asList(plan.getInfo(), plan.getTestInfo())) {
+            if (content != null && content.getFilePath() != null) {
+                infoFilePaths.add(content.getFilePath());
+            }
+        }
+        final Map<String, String> infoHashes = infoFilePaths.isEmpty()
+                ? Collections.emptyMap()
+                : workspace.act(new ContentHashCallable(infoFilePaths));
+
+        final StringBuilder settings = new StringBuilder();
+        // An EnumMap, always in the same order
+        for (Map.Entry<QueryParameter, String> queryParam : plan.getQueryParams(null).entrySet()) {
+            settings.append(queryParam.getKey().name()).append('=').append(queryParam.getValue()).append('\n');
         }
+        appendInfoSettings(settings, "info", plan.getInfo(), infoHashes);
+        appendInfoSettings(settings, "testInfo", plan.getTestInfo(), infoHashes);
+        return Util.getDigestOf(settings.toString());
+    }
 
-        XrayImporter client;
-        if (hostingType == HostingType.CLOUD) {
-            client = ClientFactory.getCloudResultsImportClient(credentials, proxyBean)
-                    .orElseThrow(() -> new XrayJenkinsGenericException("Unable to create Xray Cloud results import client! (check credential type selected)."));
-        } else if (hostingType == HostingType.SERVER) {
-            client = ClientFactory.getServerResultsImportClient(importInstance.getServerAddress(), credentials, proxyBean)
-                    .orElseThrow(() -> new XrayJenkinsGenericException("Unable to create Xray Server/DC results import client! (check credential type selected)."));
-        } else {
-            XrayEnvironmentVariableSetter
-                    .failed("Hosting type not recognized.")
-                    .setAction(build, listener);
-            throw new XrayJenkinsGenericException("Hosting type not recognized.");
+    private static void appendInfoSettings(StringBuilder settings, String name, @Nullable RemoteContent content, Map<String, String> infoHashes) {
+        if (content != null) {
+            final String value = content.getFilePath() != null ? infoHashes.get(content.getFilePath()) : content.getText();
+            settings.append(name).append('=').append(value).append('\n');
         }
+    }
 
-        EnvVars env = build.getEnvironment(listener);
-        String resolved = expandVariable(env, this.importFilePath);
+    private Map<String, String> hashResultsFiles(FilePath workspace, List<FilePath> files) throws IOException, InterruptedException {
+        if (CollectionUtils.isEmpty(files)) {
+            return Collections.emptyMap();
+        }
 
-        Endpoint endpointValue = Endpoint.lookupBySuffix(this.endpointName);
+        final List<String> filePaths = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            filePaths.add(file.getRemote());
+        }
+        return workspace.act(new ContentHashCallable(filePaths));
+    }
 
-        final List<UploadResult> uploadResults = new ArrayList<>();
-        
-        if (BuilderUtils.isGlobExpressionsSupported(endpointValue)) {
-            List<FilePath> files = FileUtils.getFiles(workspace, resolved, listener, launcher.getChannel());
-            if ("true".equals(importInParallel) && CollectionUtils.isNotEmpty(files) && files.size() > 1) {
-                importResultsInParallel(build, workspace, listener, importInstance, client, env, uploadResults, files);
+    /**
+     * Removes the files that were already imported by a previous build of this job (with the same content, to the same
+     * Xray instance and endpoint, with the same settings), adding their Test Execution keys to the reused keys. These keys are only reported:
+     * the files of this build are never imported to the Test Execution of a previous build.
+     *
+     * @return the files that must be uploaded
+     */
+    private List<FilePath> skipImportedFiles(
+            Run<?, ?> build,
+            TaskListener listener,
+            XrayInstance importInstance,
+            String importSettings,
+            List<FilePath> files,
+            Map<String, String> hashesByPath,
+            List<String> reusedTestExecKeys
+    ) {
+        final Map<String, UploadHashIndex.Entry> imported = UploadHashIndex.find(build.getParent(),
+                                                                                 importInstance.getConfigID(),
+                                                                                 this.endpointName,
+                                                                                 importSettings,
+                                                                                 hashesByPath.values());
+        final List<FilePath> filesToUpload = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            final UploadHashIndex.Entry entry = imported.get(hashesByPath.get(file.getRemote()));
+            if (entry == null) {
+                filesToUpload.add(file);
             } else {
-                importResultsSequential(build, workspace, listener, importInstance, client, env, uploadResults, files);
+                listener.getLogger().println("Skipping " + file.getName() + ": already imported to " + entry.getTestExecutionKey());
+                if (!reusedTestExecKeys.contains(entry.getTestExecutionKey())) {
+                    reusedTestExecKeys.add(entry.getTestExecutionKey());
+                }
             }
-            
-        } else {
-            FilePath file = getFile(workspace, resolved, listener);
-            uploadResults.add(tryUploadResults(workspace, listener, client, file, env, null));
         }
+        return filesToUpload;
+    }
 
-        // Sets the Xray Build Environment Variables
-        XrayEnvironmentVariableSetter
-                .parseResultImportResponse(uploadResults, hostingType, listener.getLogger())
-                .setAction(build, listener);
+    /**
+     * Removes the files already imported by a previous attempt of this step, in the same build (e.g.: inside a retry
+     * block, or after the controller restarts), adding their Test Execution keys to the reused keys.
+     *
+     * @param resumedTestExecKeys receives the Test Execution keys of the files already imported by this build
+     * @return the files that must be uploaded
+     */
+    private List<FilePath> skipJournaledFiles(
+            TaskListener listener,
+            UploadJournal journal,
+            List<FilePath> files,
+            List<String> resumedTestExecKeys
+    ) {
+        final List<FilePath> filesToUpload = new ArrayList<>(files.size());
+        for (FilePath file : files) {
+            final UploadJournal.Entry entry = journal.findImported(file.getRemote());
+            if (entry == null) {
+                filesToUpload.add(file);
+            } else if (entry.getTestExecutionKey() != null && !resumedTestExecKeys.contains(entry.getTestExecutionKey())) {
+                resumedTestExecKeys.add(entry.getTestExecutionKey());
+            }
+        }
+
+        final int journaledFiles = files.size() - filesToUpload.size();
+        if (journaledFiles > 0) {
+            listener.getLogger().println("Resuming the import: " + journaledFiles + " files were already imported by a previous attempt");
+        }
+        return filesToUpload;
+    }
+
+    private void onFileUploaded(
+            @Nullable UploadJournal journal,
+            UploadedFiles uploadedFiles,
+            TaskListener listener,
+            XrayInstance importInstance,
+            FilePath file,
+            UploadResult result
+    ) {
+        uploadedFiles.add(file.getRemote(), result);
+        if (journal == null) {
+            return;
+        }
+
+        String key = null;
+        if (result.isOkStatusCode()) {
+            final HostingType hostingType = importInstance.getHosting() == null ? HostingType.SERVER : importInstance.getHosting();
+            try {
+                key = parseTestExecutionKey(hostingType, result);
+            } catch (XrayJenkinsGenericException e) {
+                listener.getLogger().println("Unable to read the Test Execution key of " + file.getName());
+            }
+        }
+        journal.append(file.getRemote(), result.getStatusCode(), key);
+    }
+
+    /**
+     * @return identifies this step in the build, so several import steps of the same build have different journals.
+     */
+    private String getJournalId(XrayInstance importInstance) {
+        return StringUtils.join(new String[]{importInstance.getConfigID(), this.endpointName, this.importFilePath, this.projectKey,
+                                             this.testExecKey, this.testPlanKey}, '|');
     }
 
     private void importResultsSequential(
@@ -588,19 +1599,30 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
             TaskListener listener,
             XrayInstance importInstance,
             XrayImporter client,
-            EnvVars env,
+            UploadPlan plan,
             List<UploadResult> uploadResults,
-            List<FilePath> files
+            List<FilePath> files,
+            @Nullable String sameExecutionKey,
+            @Nullable UploadJournal journal,
+            UploadedFiles uploadedFiles,
+            XrayRateLimiter rateLimiter,
+            RetryPolicy retryPolicy,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers,
+            boolean inBuildStep
     ) throws IOException, InterruptedException {
-        String key = null;
+        // The files are imported one at a time (the first one may create the Test Execution of the next ones), so the
+        // build waits in place while Xray asks for it.
+        String key = sameExecutionKey;
         if (CollectionUtils.isEmpty(files)) {
             return;
         }
         for (FilePath fp : files) {
-            UploadResult result = uploadResults(workspace, listener, client, env, key, fp);
+            UploadResult result = uploadResults(workspace, listener, client, plan, key, fp, rateLimiter, retryPolicy, agentClientSettings, compressTransfers);
             uploadResults.add(result);
+            onFileUploaded(journal, uploadedFiles, listener, importInstance, fp, result);
             if (key == null && "true".equals(importToSameExecution)) {
-                key = getTestExecutionKeyFromResponse(build, listener, importInstance, result);
+                key = getTestExecutionKeyFromResponse(build, listener, importInstance, result, inBuildStep);
             }
         }
     }
@@ -611,122 +1633,239 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
             TaskListener listener,
             XrayInstance importInstance,
             XrayImporter client,
-            EnvVars env,
+            UploadPlan plan,
             List<UploadResult> uploadResults,
-            List<FilePath> files
+            List<FilePath> files,
+            @Nullable String sameExecutionKey,
+            @Nullable UploadJournal journal,
+            UploadedFiles uploadedFiles,
+            XrayRateLimiter rateLimiter,
+            RetryPolicy retryPolicy,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers,
+            boolean inBuildStep
     ) throws InterruptedException, IOException {
 
-        String key = null;
+        String key = sameExecutionKey;
+
+        if (key == null && "true".equals(importToSameExecution) && isCreateTestExecutionFirst() && CollectionUtils.isNotEmpty(files)) {
+            // Creating the Test Execution with an empty report allows all the files to be imported in parallel
+            key = createTestExecution(workspace, listener, importInstance, client, plan, rateLimiter);
+        }
 
-        if ("true".equals(importToSameExecution) && CollectionUtils.isNotEmpty(files)) {
+        if (key == null && "true".equals(importToSameExecution) && CollectionUtils.isNotEmpty(files)) {
             // When import to same test execution we need to do a first import to get the Test Execution Key
             FilePath file1 = files.get(0);
-            UploadResult result = uploadResults(workspace, listener, client, env, null, file1);
+            UploadResult result = uploadResults(workspace, listener, client, plan, null, file1, rateLimiter, retryPolicy, agentClientSettings, compressTransfers);
             uploadResults.add(result);
+            onFileUploaded(journal, uploadedFiles, listener, importInstance, file1, result);
             // We remove the file to not import it again below.
             files.remove(0);
-            key = getTestExecutionKeyFromResponse(build, listener, importInstance, result);
+            key = getTestExecutionKeyFromResponse(build, listener, importInstance, result, inBuildStep);
         }
 
         final String finalKey = key;
-        List<UploadResult> results = files
-                .parallelStream()
-                .map(file -> getUploadResultImportInParallel(workspace, listener, client, env, finalKey, file))
-                .collect(Collectors.toList());
-        
-        uploadResults.addAll(results);
-    }
-    
-    private UploadResult getUploadResultImportInParallel(
+        final int concurrency = UploadExecutor.resolveConcurrency(this.uploadConcurrency,
+                                                                  importInstance.getMaxUploadConcurrency());
+
+        try (UploadExecutor uploadExecutor = new UploadExecutor(build.getFullDisplayName(), concurrency)) {
+            listener.getLogger()
+                    .println("Importing " + files.size() + " files in parallel (maximum parallel uploads: " + uploadExecutor.getConcurrency() + ")");
+
+            // The number of uploads in flight adapts itself to the server responses, up to the number of upload threads.
+            final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(INITIAL_PARALLEL_UPLOADS,
+                                                                                      uploadExecutor.getConcurrency());
+            // A file waiting for its next attempt doesn't hold an upload thread, so the other files go ahead meanwhile.
+            final List<Future<UploadResult>> futures = new ArrayList<>(files.size());
+            for (FilePath file : files) {
+                futures.add(uploadExecutor.submitAsync(executor ->
+                        uploadResultsAsync(workspace, listener, client, plan, finalKey, file, limiter, rateLimiter, retryPolicy, agentClientSettings, compressTransfers, executor)
+                                .thenApply(result -> {
+                                    onFileUploaded(journal, uploadedFiles, listener, importInstance, file, result);
+                                    return result;
+                                })));
+            }
+
+            uploadResults.addAll(uploadExecutor.awaitAll(futures));
+            listener.getLogger().println("Parallel uploads allowed at the end of the import: " + limiter.getLimit());
+        }
+    }
+
+    /**
+     * Creates the Test Execution of the import, by importing a results file without any test, with the same info fields.
+     *
+     * @return the Test Execution key, or null if it could not be created
+     */
+    @Nullable
+    private String createTestExecution(
             FilePath workspace,
             TaskListener listener,
+            XrayInstance importInstance,
             XrayImporter client,
-            EnvVars env,
-            String finalKey,
-            FilePath filePath
-    ) {
+            UploadPlan plan,
+            XrayRateLimiter rateLimiter
+    ) throws InterruptedException {
+        final Endpoint targetEndpoint = plan.getEndpoint(null);
+        final Optional<ResultsFormat> format = ResultsFormat.fromEndpoint(targetEndpoint);
+        if (!format.isPresent()) {
+            listener.getLogger().println("The Test Execution cannot be created first for the " + targetEndpoint.getName() + " format");
+            return null;
+        }
+
+        final Map<com.xpandit.xray.model.DataParameter, Content> dataParams = new HashMap<>();
         try {
-            return uploadResults(workspace, listener, client, env, finalKey, filePath);
-        } catch (InterruptedException | IOException e) {
-            throw new XrayJenkinsGenericException(e);
+            final byte[] emptyReport = format.get().getEmptyReport().getBytes(StandardCharsets.UTF_8);
+            dataParams.put(com.xpandit.xray.model.DataParameter.FILEPATH,
+                           new com.xpandit.xray.model.FileStream(EMPTY_REPORT_FILE_NAME,
+                                                                 new ByteArrayInputStream(emptyReport),
+                                                                 targetEndpoint.getResultsMediaType()));
+            addInfoContents(workspace, plan, targetEndpoint, dataParams);
+
+            XrayRateLimiterRegistry.acquire(rateLimiter, listener);
+            listener.getLogger().println("Creating the Test Execution");
+            final UploadResult result = client.uploadResults(targetEndpoint, dataParams, plan.getQueryParams(null));
+
+            final String key = result.isOkStatusCode() ? parseTestExecutionKey(importInstance.getHosting(), result) : null;
+            if (StringUtils.isBlank(key)) {
+                listener.getLogger().println("Unable to create the Test Execution: (" + result.getStatusCode() + ") " + result.getMessage());
+                return null;
+            }
+
+            listener.getLogger().println("Created the Test Execution " + key);
+            return key;
+        } catch (XrayClientCoreGenericException | XrayJenkinsGenericException | IOException e) {
+            LOG.warn("Unable to create the Test Execution", e);
+            listener.getLogger().println("Unable to create the Test Execution: " + e.getMessage());
+            return null;
+        } finally {
+            closeContents(listener, dataParams);
         }
     }
 
+    /**
+     * @param inBuildStep false if the import runs after the build step, when the failure must not be added to the build
+     */
     private String getTestExecutionKeyFromResponse(
             Run<?, ?> build,
             TaskListener listener,
             XrayInstance importInstance,
-            UploadResult result
+            UploadResult result,
+            boolean inBuildStep
     ) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        String key = null;
-        HostingType instanceType = importInstance.getHosting();
-
-        if (instanceType == HostingType.SERVER) {
-
-            Map<String, Object> resultMap = mapper.readValue(result.getMessage(), Map.class);
-            if (MapUtils.isNotEmpty(resultMap)) {
-                Map<String, String> testExecIssue = (Map<String, String>) resultMap.get("testExecIssue");
-                if (MapUtils.isNotEmpty(testExecIssue)) {
-                    key = testExecIssue.get("key");
-                }
-            }
-        } else if (instanceType == HostingType.CLOUD) {
-
-            Map<String, String> map = mapper.readValue(result.getMessage(), Map.class);
-            key = map.get("key");
-        } else {
-            throw new XrayJenkinsGenericException("Instance type not found.");
-        }
+        final String key = parseTestExecutionKey(importInstance.getHosting(), result);
 
         if (key == null && result.getStatusCode() != HttpStatus.SC_ACCEPTED) {
-            XrayEnvironmentVariableSetter
-                    .failed("No Test Execution Key returned")
-                    .setAction(build, listener);
+            if (inBuildStep) {
+                XrayEnvironmentVariableSetter
+                        .failed("No Test Execution Key returned")
+                        .setAction(build, listener);
+            }
             throw new XrayJenkinsGenericException("No Test Execution Key returned");
         }
         return key;
     }
 
+    @Nullable
+    private String parseTestExecutionKey(HostingType instanceType, UploadResult result) {
+        if (instanceType != HostingType.SERVER && instanceType != HostingType.CLOUD) {
+            throw new XrayJenkinsGenericException("Instance type not found.");
+        }
+        return ImportResponseParser.parse(result.getMessage(), instanceType).getTestExecutionKey();
+    }
+
     private UploadResult uploadResults(
             @Nonnull FilePath workspace,
             @Nonnull TaskListener listener,
             XrayImporter client,
-            EnvVars environmentVariables,
+            UploadPlan plan,
             String key,
-            FilePath filePath
+            FilePath filePath,
+            XrayRateLimiter rateLimiter,
+            RetryPolicy retryPolicy,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers
     ) throws InterruptedException, IOException {
-        UploadResult result = tryUploadResults(workspace, listener, client, filePath, environmentVariables, key);
-
-        int tries = 1; // Tries start with 1 because we count the original request as a try.
-
-        // Xray Cloud may return a 429 (Too Many Requests) response, in this case, we want to retry up to 3 times (after the waiting period).
-        while (result.isTooManyRequests() && tries < MAX_TRIES) {
-            final long sleepTimeSeconds = UploadResultUtil.getRetryTime(result)
-                                                          .orElse(MAX_RETRY_AFTER_TIME_SECONDS);
-
-            listener.getLogger().println("Too Many Requests: Waiting " + sleepTimeSeconds + " seconds - try #" + tries);
-
-            if (sleepTimeSeconds > MAX_RETRY_AFTER_TIME_SECONDS) { // If the server asks us to wait to much time, we abort the whole import.
-                final String logText = String.format(
-                        "Too Many Requests: Wait time (%s seconds) exceeds the maximum allowed (%s seconds)",
-                        sleepTimeSeconds,
-                        MAX_RETRY_AFTER_TIME_SECONDS);
+        // Xray may return a 429 (Too Many Requests) or a 5xx response, or the connection may fail: these are retried
+        // (after the waiting period) while the retry policy allows it. An import creating a Test Execution is only
+        // retried if Xray did not process it, so it is never created twice.
+        final UploadResult result = retryPolicy.executeUpload(getUploadName(workspace, filePath), listener, plan.isExistingTestExecution(key), () ->
+                tryUploadResults(workspace, listener, client, filePath, plan, key, rateLimiter, agentClientSettings, compressTransfers, null));
+        return checkNotTooManyRequests(result);
+    }
 
-                listener.getLogger().println(logText);
-                throw new XrayJenkinsGenericException(result.getMessage());
-            } else if (sleepTimeSeconds > 0) {
-                Thread.sleep(TimeUnit.SECONDS.toMillis(sleepTimeSeconds));
-            }
+    /**
+     * Same as {@link #uploadResults}, but the retries are scheduled instead of waited for, and the attempts run in the
+     * given executor. Each attempt is only dispatched to the executor once the adaptive concurrency limiter grants it a
+     * permit and the rate limiter allows it, so the attempts waiting for a permit (or for the end of a Retry-After pause)
+     * or for the rate limit don't hold an upload thread.
+     */
+    private CompletableFuture<UploadResult> uploadResultsAsync(
+            @Nonnull FilePath workspace,
+            @Nonnull TaskListener listener,
+            XrayImporter client,
+            UploadPlan plan,
+            String key,
+            FilePath filePath,
+            AdaptiveConcurrencyLimiter limiter,
+            XrayRateLimiter rateLimiter,
+            RetryPolicy retryPolicy,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers,
+            Executor executor
+    ) {
+        return retryPolicy.executeUploadAsync(getUploadName(workspace, filePath), listener, plan.isExistingTestExecution(key), () ->
+                tryLimitedUploadResults(workspace, listener, client, filePath, plan, key, limiter, agentClientSettings, compressTransfers),
+                                              limiter.executor(XrayRateLimiterRegistry.executor(rateLimiter, listener, executor)))
+                          .thenApply(XrayImportBuilder::checkNotTooManyRequests);
+    }
 
-            result = tryUploadResults(workspace, listener, client, filePath, environmentVariables, key);
-            tries++;
+    private static UploadResult checkNotTooManyRequests(UploadResult result) {
+        // If the server keeps asking us to wait, or asks us to wait too much time, we abort the whole import.
+        if (result.isTooManyRequests()) {
+            throw new XrayUnavailableException(result.getMessage());
         }
+        return result;
+    }
 
-        if (result.isTooManyRequests() && tries >= MAX_TRIES) {
-            throw new XrayJenkinsGenericException(result.getMessage());
+    /**
+     * Upload the results to the xray instance with a permit of the adaptive concurrency limiter, reporting the outcome
+     * to it afterwards so the permit is released.
+     */
+    private UploadResult tryLimitedUploadResults(
+            FilePath workspace,
+            TaskListener listener,
+            XrayImporter client,
+            FilePath resultsFile,
+            UploadPlan plan,
+            @Nullable String sameTestExecutionKey,
+            AdaptiveConcurrencyLimiter limiter,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers
+    ) throws InterruptedException, IOException {
+        final long bytes;
+        final UploadResult result;
+        // Only the request is measured: the rate limit wait and the opening of the files are not a server latency
+        final AtomicLong requestMillis = new AtomicLong();
+        try {
+            // The latency of the upload is compared by the limiter relative to the size of the file
+            bytes = plan.isResultsFile() ? resultsFile.length() : -1L;
+            // The rate limiter was already waited for before the attempt was dispatched
+            result = tryUploadResults(workspace, listener, client, resultsFile, plan, sameTestExecutionKey, null,
+                                      agentClientSettings, compressTransfers, requestMillis::set);
+        } catch (InterruptedException | IOException | RuntimeException e) {
+            limiter.onDropped();
+            throw e;
         }
 
+        if (result.isTooManyRequests()) {
+            final long retryAfterSeconds = UploadResultUtil.getRetryTime(result).orElse(0L);
+            limiter.onTooManyRequests(retryAfterSeconds);
+            listener.getLogger().println("Too Many Requests: reducing the parallel uploads to " + limiter.getLimit());
+        } else if (result.isOkStatusCode()) {
+            limiter.onSuccess(requestMillis.get(), bytes);
+        } else {
+            limiter.onDropped();
+        }
         return result;
     }
 
@@ -737,8 +1876,12 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
      * @param listener             the TaskListener
      * @param client               the xray client
      * @param resultsFile          the FilePath of the results file
-     * @param env                  the environment variables
+     * @param plan                 the upload plan of the import
      * @param sameTestExecutionKey The key used when multiple results are imported to the same Test Execution
+     * @param rateLimiter          the request rate limiter of the xray instance, or null if it was already waited for
+     * @param agentClientSettings  the client settings used to upload the results from the agent, or null to upload from the controller
+     * @param compressTransfers    true to compress the files while they are transferred from the agent to the controller
+     * @param requestLatency       receives the time the request took, in milliseconds, once the response is received
      * @return the upload results
      */
     private UploadResult tryUploadResults(
@@ -746,86 +1889,78 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
             TaskListener listener,
             XrayImporter client,
             FilePath resultsFile,
-            EnvVars env,
-            @Nullable String sameTestExecutionKey
+            UploadPlan plan,
+            @Nullable String sameTestExecutionKey,
+            @Nullable XrayRateLimiter rateLimiter,
+            @Nullable RemoteClientSettings agentClientSettings,
+            boolean compressTransfers,
+            @Nullable LongConsumer requestLatency
     ) throws InterruptedException, IOException {
         try {
-            Endpoint targetEndpoint = lookupForEndpoint();
-            Map<com.xpandit.xray.model.QueryParameter, String> queryParams = prepareQueryParam(env);
-
-            if (BuilderUtils.isEnvVariableUndefined(this.testExecKey)
-                    && StringUtils.isNotBlank(sameTestExecutionKey)
-                    && "true".equals(importToSameExecution)) {
-                if (isMultipartEndpoint(targetEndpoint)) {
-                    targetEndpoint = BuilderUtils.getGenericEndpointFromMultipartSuffix(targetEndpoint.getSuffix());
-                }
-
-                queryParams.put(com.xpandit.xray.model.QueryParameter.TEST_EXEC_KEY, sameTestExecutionKey);
+            if (agentClientSettings != null) {
+                return tryUploadResultsFromAgent(workspace, listener, resultsFile, plan, sameTestExecutionKey, rateLimiter,
+                                                 agentClientSettings, requestLatency);
             }
 
-            Map<com.xpandit.xray.model.DataParameter, Content> dataParams = new HashMap<>();
+            final Endpoint targetEndpoint = plan.getEndpoint(sameTestExecutionKey);
+            final Map<com.xpandit.xray.model.DataParameter, Content> dataParams = new HashMap<>();
+            try {
+                UploadTelemetry.TrackedInputStream trackedStream = null;
+                if (plan.isResultsFile()) {
+                    InputStream resultsStream = compressTransfers
+                            ? CompressedFileReader.read(resultsFile, listener)
+                            : resultsFile.read();
+                    if (plan.getTelemetry() != null) {
+                        trackedStream = plan.getTelemetry().track(resultsStream);
+                        resultsStream = trackedStream;
+                    }
+                    Content results = new com.xpandit.xray.model.FileStream(resultsFile.getName(), resultsStream,
+                                                                            targetEndpoint.getResultsMediaType());
+                    dataParams.put(com.xpandit.xray.model.DataParameter.FILEPATH, results);
 
-            if (StringUtils.isNotBlank(this.importFilePath)) {
-                Content results = new com.xpandit.xray.model.FileStream(resultsFile.getName(), resultsFile.read(),
-                                                                        targetEndpoint.getResultsMediaType());
-                dataParams.put(com.xpandit.xray.model.DataParameter.FILEPATH, results);
+                }
 
-            }
+                addInfoContents(workspace, plan, targetEndpoint, dataParams);
 
-            if (StringUtils.isNotBlank(this.importInfo)) {
-                String resolved = expandVariable(env, this.importInfo);
-
-                Content info;
-                if (this.inputInfoSwitcher.equals("filePath")) {
-                    FilePath infoFile = getFile(workspace, resolved, listener);
-                    info = new com.xpandit.xray.model.FileStream(infoFile.getName(),
-                                                                 infoFile.read(),
-                                                                 targetEndpoint.getInfoFieldMediaType());
-                } else {
-                    info = new com.xpandit.xray.model.StringContent(resolved, targetEndpoint.getInfoFieldMediaType());
+                if (rateLimiter != null) {
+                    XrayRateLimiterRegistry.acquire(rateLimiter, listener);
+                }
+                listener.getLogger().println("Starting to import results from " + resultsFile.getName());
+                final long startNanos = System.nanoTime();
+                UploadResult result;
+                try {
+                    result = client.uploadResults(targetEndpoint, dataParams, plan.getQueryParams(sameTestExecutionKey));
+                } catch (XrayClientCoreGenericException | XrayJenkinsGenericException e) {
+                    recordUpload(plan, getUploadName(workspace, resultsFile), trackedStream == null ? -1L : trackedStream.getByteCount(), startNanos, -1L, 0);
+                    throw e;
                 }
+                final long responseNanos = System.nanoTime();
+                if (requestLatency != null) {
+                    requestLatency.accept(TimeUnit.NANOSECONDS.toMillis(responseNanos - startNanos));
+                }
+                recordUpload(plan, getUploadName(workspace, resultsFile),
+                             trackedStream == null ? -1L : trackedStream.getByteCount(), startNanos,
+                             trackedStream == null ? -1L : trackedStream.getResponseWaitMillis(responseNanos),
+                             result.getStatusCode());
 
-                dataParams.put(com.xpandit.xray.model.DataParameter.INFO, info);
-            }
+                listener.getLogger().println("Response: (" + result.getStatusCode() + ") " + result.getMessage());
 
-            if (StringUtils.isNotBlank(this.testImportInfo)) {
-                String resolvedTestImportInfo = expandVariable(env, this.testImportInfo);
-
-                Content testInfo;
-                if (this.inputTestInfoSwitcher.equals("filePath")) {
-                    FilePath testInfoFile = getFile(workspace, resolvedTestImportInfo, listener);
-                    testInfo = new com.xpandit.xray.model.FileStream(testInfoFile.getName(),
-                                                                     testInfoFile.read(),
-                                                                     targetEndpoint.getInfoFieldMediaType());
-                } else {
-                    testInfo = new com.xpandit.xray.model.StringContent(resolvedTestImportInfo,
-                                                                        targetEndpoint.getInfoFieldMediaType());
+                if (result.isOkStatusCode()) {
+                    listener.getLogger()
+                            .println("Successfully imported " + targetEndpoint.getName() + " results from " + resultsFile.getName());
                 }
 
-                dataParams.put(com.xpandit.xray.model.DataParameter.TEST_INFO, testInfo);
+                return result;
+            } finally {
+                // The streams are closed on every attempt, even a failed one, so the remote reads (and the agent
+                // threads writing to them) are not left open
+                closeContents(listener, dataParams);
             }
 
-            listener.getLogger().println("Starting to import results from " + resultsFile.getName());
-            UploadResult result = client.uploadResults(targetEndpoint, dataParams, queryParams);
-            
-            dataParams.values().stream()
-                      .map(Content::getContent)
-                      .filter(content -> content instanceof AutoCloseable)
-                      .map(AutoCloseable.class::cast)
-                      .forEach(content -> closeAutoCloseableInstances(listener, (AutoCloseable) content));
-            
-            listener.getLogger().println("Response: (" + result.getStatusCode() + ") " + result.getMessage());
-
-            if (result.isOkStatusCode()) {
-                listener.getLogger()
-                        .println("Successfully imported " + targetEndpoint.getName() + " results from " + resultsFile.getName());
-            }
-
-            return result;
-
         } catch (XrayClientCoreGenericException | XrayJenkinsGenericException e) {
             LOG.error(ERROR_LOG, e);
-            throw new AbortException(e.getMessage());
+            // The cause is kept, so the retry policy can tell the transient errors apart
+            throw (AbortException) new AbortException(e.getMessage()).initCause(e);
         } catch (IOException e) {
             LOG.error(ERROR_LOG, e);
             listener.error(e.getMessage());
@@ -833,6 +1968,157 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
         }
     }
 
+    private void closeContents(TaskListener listener, Map<com.xpandit.xray.model.DataParameter, Content> dataParams) {
+        dataParams.values().stream()
+                  .map(Content::getContent)
+                  .filter(content -> content instanceof AutoCloseable)
+                  .map(AutoCloseable.class::cast)
+                  .forEach(content -> closeAutoCloseableInstances(listener, content));
+    }
+
+    private static void recordUpload(UploadPlan plan, String uploadName, long bytes, long startNanos, long responseWaitMillis, int statusCode) {
+        if (plan.getTelemetry() != null) {
+            plan.getTelemetry().record(uploadName, bytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                                       responseWaitMillis, statusCode);
+        }
+    }
+
+    /**
+     * @return the path of the file relative to the workspace, or its full path if it is outside of the workspace (e.g.: a
+     * merged file), so the files with the same name in different folders are told apart in the retries and telemetry.
+     */
+    static String getUploadName(FilePath workspace, FilePath file) {
+        final String workspacePath = workspace.getRemote();
+        final String path = file.getRemote();
+        if (path.length() > workspacePath.length() + 1 && path.startsWith(workspacePath)) {
+            final char separator = path.charAt(workspacePath.length());
+            if (separator == '/' || separator == '\\') {
+                return path.substring(workspacePath.length() + 1);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Resolves everything needed to upload the results files that doesn't depend on the file, so it is done once per
+     * import instead of once per file.
+     */
+    private UploadPlan createUploadPlan(
+            FilePath workspace,
+            TaskListener listener,
+            EnvVars env,
+            InfoContentCache infoCache,
+            UploadTelemetry telemetry
+    ) throws IOException, InterruptedException {
+        final Endpoint targetEndpoint = lookupForEndpoint();
+        final Endpoint sameExecutionEndpoint = isMultipartEndpoint(targetEndpoint)
+                ? BuilderUtils.getGenericEndpointFromMultipartSuffix(targetEndpoint.getSuffix())
+                : targetEndpoint;
+
+        RemoteContent info = null;
+        if (StringUtils.isNotBlank(this.importInfo)) {
+            info = getRemoteContent(workspace, listener, expandVariable(env, this.importInfo), this.inputInfoSwitcher);
+        }
+
+        RemoteContent testInfo = null;
+        if (StringUtils.isNotBlank(this.testImportInfo)) {
+            testInfo = getRemoteContent(workspace, listener, expandVariable(env, this.testImportInfo), this.inputTestInfoSwitcher);
+        }
+
+        return new UploadPlan(targetEndpoint,
+                              sameExecutionEndpoint,
+                              prepareQueryParam(env),
+                              BuilderUtils.isEnvVariableUndefined(this.testExecKey) && "true".equals(importToSameExecution),
+                              StringUtils.isNotBlank(this.importFilePath),
+                              info,
+                              testInfo,
+                              infoCache,
+                              telemetry);
+    }
+
+    /**
+     * Adds the Test Execution info and Test info fields of the plan to the request.
+     */
+    private void addInfoContents(
+            FilePath workspace,
+            UploadPlan plan,
+            Endpoint targetEndpoint,
+            Map<com.xpandit.xray.model.DataParameter, Content> dataParams
+    ) throws IOException, InterruptedException {
+        if (plan.getInfo() != null) {
+            dataParams.put(com.xpandit.xray.model.DataParameter.INFO,
+                           toContent(workspace, plan, plan.getInfo(), targetEndpoint.getInfoFieldMediaType()));
+        }
+        if (plan.getTestInfo() != null) {
+            dataParams.put(com.xpandit.xray.model.DataParameter.TEST_INFO,
+                           toContent(workspace, plan, plan.getTestInfo(), targetEndpoint.getInfoFieldMediaType()));
+        }
+    }
+
+    private Content toContent(
+            FilePath workspace,
+            UploadPlan plan,
+            RemoteContent content,
+            ContentType contentType
+    ) throws IOException, InterruptedException {
+        if (content.getFilePath() != null) {
+            final FilePath file = new FilePath(workspace.getChannel(), content.getFilePath());
+            final InputStream inputStream = plan.getInfoCache() != null ? plan.getInfoCache().open(file) : file.read();
+            return new com.xpandit.xray.model.FileStream(file.getName(), inputStream, contentType);
+        }
+        return new com.xpandit.xray.model.StringContent(content.getText(), contentType);
+    }
+
+    /**
+     * Upload the results to the xray instance from the agent where the results file is stored.
+     * Only the info file paths (or contents) are sent to the agent, and only the upload result comes back.
+     */
+    private UploadResult tryUploadResultsFromAgent(
+            FilePath workspace,
+            TaskListener listener,
+            FilePath resultsFile,
+            UploadPlan plan,
+            @Nullable String sameTestExecutionKey,
+            @Nullable XrayRateLimiter rateLimiter,
+            RemoteClientSettings agentClientSettings,
+            @Nullable LongConsumer requestLatency
+    ) throws InterruptedException, IOException {
+        final Endpoint targetEndpoint = plan.getEndpoint(sameTestExecutionKey);
+
+        if (rateLimiter != null) {
+            XrayRateLimiterRegistry.acquire(rateLimiter, listener);
+        }
+        listener.getLogger().println("Starting to import results from " + resultsFile.getName() + " (from the agent)");
+        final long startNanos = System.nanoTime();
+        UploadResult result = resultsFile.act(new RemoteResultsUploadCallable(agentClientSettings, plan, sameTestExecutionKey));
+        if (requestLatency != null) {
+            requestLatency.accept(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+        // The agent only returns the result: the bytes sent are the size of the file, the response wait is unknown
+        recordUpload(plan, getUploadName(workspace, resultsFile), plan.isResultsFile() ? resultsFile.length() : -1L, startNanos, -1L, result.getStatusCode());
+
+        listener.getLogger().println("Response: (" + result.getStatusCode() + ") " + result.getMessage());
+
+        if (result.isOkStatusCode()) {
+            listener.getLogger()
+                    .println("Successfully imported " + targetEndpoint.getName() + " results from " + resultsFile.getName());
+        }
+
+        return result;
+    }
+
+    private RemoteContent getRemoteContent(
+            FilePath workspace,
+            TaskListener listener,
+            String resolved,
+            String switcher
+    ) throws IOException, InterruptedException {
+        if ("filePath".equals(switcher)) {
+            return RemoteContent.ofFile(getFile(workspace, resolved, listener).getRemote());
+        }
+        return RemoteContent.ofText(resolved);
+    }
+
     private void closeAutoCloseableInstances(TaskListener listener, AutoCloseable autoCloseable) {
         try {
             autoCloseable.close();
@@ -932,7 +2218,7 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
                     .filter(StringUtils::isNotBlank)
                     .orElse(null);
 
-            return new XrayImportBuilder(
+            final XrayImportBuilder builder = new XrayImportBuilder(
                     (String) formData.get(SERVER_INSTANCE),
                     formData.getString(FORMAT_SUFFIX),
                     fields.get(PROJECT_KEY),
@@ -949,6 +2235,26 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
                     fields.get(SAME_EXECUTION_CHECKBOX),
                     credentialId,
                     fields.get(IMPORT_IN_PARALLEL));
+            builder.setUploadConcurrency(getOptionalString(formData, UPLOAD_CONCURRENCY));
+            builder.setUploadFromAgent(getOptionalString(formData, UPLOAD_FROM_AGENT));
+            builder.setBatchTargetSize(getOptionalString(formData, BATCH_TARGET_SIZE));
+            builder.setSplitFileSize(getOptionalString(formData, SPLIT_FILE_SIZE));
+            builder.setSkipIdenticalUploads(getOptionalString(formData, SKIP_IDENTICAL_UPLOADS));
+            builder.setResumeImport(getOptionalString(formData, RESUME_IMPORT));
+            builder.setUploadInBackground(getOptionalString(formData, UPLOAD_IN_BACKGROUND));
+            builder.setSpoolFailedImports(getOptionalString(formData, SPOOL_FAILED_IMPORTS));
+            builder.setCreateTestExecutionFirst(getOptionalString(formData, CREATE_TEST_EXECUTION_FIRST));
+            builder.setValidateResultsFiles(getOptionalString(formData, VALIDATE_RESULTS_FILES));
+            builder.setExcludeInvalidFiles(getOptionalString(formData, EXCLUDE_INVALID_FILES));
+
+            return builder;
+        }
+
+        private String getOptionalString(JSONObject formData, String key) {
+            return Optional.ofNullable(formData.opt(key))
+                    .map(Object::toString)
+                    .filter(StringUtils::isNotBlank)
+                    .orElse(null);
         }
 
         private void validateFormData(JSONObject formData) throws Descriptor.FormException {
@@ -1020,6 +2326,18 @@ public class XrayImportBuilder extends Notifier implements SimpleBuildStep {
             return FormValidation.ok();
         }
 
+        public FormValidation doCheckUploadConcurrency(@org.kohsuke.stapler.QueryParameter String value) {
+            return FormUtils.checkOptionalPositiveInteger(value);
+        }
+
+        public FormValidation doCheckBatchTargetSize(@org.kohsuke.stapler.QueryParameter String value) {
+            return FormUtils.checkOptionalPositiveInteger(value);
+        }
+
+        public FormValidation doCheckSplitFileSize(@org.kohsuke.stapler.QueryParameter String value) {
+            return FormUtils.checkOptionalPositiveInteger(value);
+        }
+
         public long defaultBuildID() {
             return buildID;
         }
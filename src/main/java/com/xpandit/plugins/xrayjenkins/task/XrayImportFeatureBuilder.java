@@ -13,7 +13,19 @@ import com.xpandit.plugins.xrayjenkins.model.HostingType;
 import com.xpandit.plugins.xrayjenkins.model.ServerConfiguration;
 import com.xpandit.plugins.xrayjenkins.model.XrayInstance;
 import com.xpandit.plugins.xrayjenkins.services.enviromentvariables.XrayEnvironmentVariableSetter;
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureArchive;
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureFile;
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureManifest;
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureSharder;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiter;
+import com.xpandit.plugins.xrayjenkins.services.ratelimit.XrayRateLimiterRegistry;
+import com.xpandit.plugins.xrayjenkins.services.retry.RetryPolicy;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadExecutor;
 import com.xpandit.plugins.xrayjenkins.task.filefilters.OnlyFeatureFilesInPathFilter;
+import com.xpandit.plugins.xrayjenkins.task.remote.CompressedFileReader;
+import com.xpandit.plugins.xrayjenkins.task.remote.ContentHashCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.FeatureZipCallable;
+import com.xpandit.plugins.xrayjenkins.task.remote.FeatureZipStream;
 import com.xpandit.xray.exception.XrayClientCoreGenericException;
 import com.xpandit.xray.model.FileStream;
 import com.xpandit.xray.model.UploadResult;
@@ -40,6 +52,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import jenkins.tasks.SimpleBuildStep;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.entity.ContentType;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -47,13 +60,19 @@ import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 import static com.xpandit.plugins.xrayjenkins.Utils.ConfigurationUtils.getConfigurationOrFirstAvailable;
 import static com.xpandit.plugins.xrayjenkins.Utils.CredentialUtil.getUserScopedCredentialsListBoxModel;
@@ -64,7 +83,7 @@ import static com.xpandit.plugins.xrayjenkins.Utils.CredentialUtil.getUserScoped
 public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep {
 
     private static final String TMP_ZIP_FILENAME = "xray_cucumber_features.zip";
-    public static final long ZIP_WAIT_TIME_MILLISECONDS = 10_000L;
+    private static final String SHARD_ZIP_FILENAME_PREFIX = "xray_cucumber_features_";
 
     private String serverInstance;
     private String folderPath;
@@ -73,6 +92,9 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
     private String testInfo;
     private String preconditions;
     private String credentialId;
+    private String streamZip;
+    private String incrementalImport;
+    private String featureShards;//Number of zips the feature files are split into, empty to import a single zip
 
     @DataBoundConstructor
     public XrayImportFeatureBuilder(
@@ -142,6 +164,54 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
         this.credentialId = credentialId;
     }
 
+    public String getStreamZip() {
+        return this.streamZip;
+    }
+
+    @DataBoundSetter
+    public void setStreamZip(String streamZip) {
+        this.streamZip = streamZip;
+    }
+
+    /**
+     * @return true if the zip is created while it is uploaded, instead of being written to the workspace first.
+     */
+    public boolean isStreamZip() {
+        return "true".equals(this.streamZip);
+    }
+
+    public String getIncrementalImport() {
+        return this.incrementalImport;
+    }
+
+    @DataBoundSetter
+    public void setIncrementalImport(String incrementalImport) {
+        this.incrementalImport = incrementalImport;
+    }
+
+    /**
+     * @return true if only the feature files added or changed since the last successful import are imported.
+     */
+    public boolean isIncrementalImport() {
+        return "true".equals(this.incrementalImport);
+    }
+
+    public String getFeatureShards() {
+        return this.featureShards;
+    }
+
+    @DataBoundSetter
+    public void setFeatureShards(String featureShards) {
+        this.featureShards = featureShards;
+    }
+
+    /**
+     * @return the maximum number of zips the feature files are split into, imported in parallel.
+     */
+    public int getFeatureShardCount() {
+        return Math.max(1, NumberUtils.toInt(StringUtils.trim(this.featureShards), 1));
+    }
+
     public String getProjectKey() {
         return this.projectKey;
     }
@@ -219,16 +289,20 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
             throw new XrayJenkinsGenericException("Hosting type not recognized.");
         }
 
-        final UploadResult uploadResult = processImport(run, workspace, client, listener, xrayInstance);
+        final List<UploadResult> uploadResults = processImport(run, workspace, client, listener, xrayInstance);
+        for (UploadResult uploadResult : uploadResults) {
+            listener.getLogger().println("Response: (" + uploadResult.getStatusCode() + ") " + uploadResult.getMessage());
 
-        listener.getLogger().println("Response: (" + uploadResult.getStatusCode() + ") " + uploadResult.getMessage());
-
-        if (uploadResult.isOkStatusCode()) {
-            listener.getLogger().println("Successfully imported Feature files");
+            if (uploadResult.isOkStatusCode()) {
+                listener.getLogger().println("Successfully imported Feature files");
+            }
         }
     }
 
-    private UploadResult processImport(
+    /**
+     * @return the upload result of each zip, or an empty list if there was nothing to import
+     */
+    private List<UploadResult> processImport(
             final Run<?, ?> run,
             final FilePath workspace,
             final XrayTestImporter client,
@@ -237,12 +311,11 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
     ) throws IOException, InterruptedException {
 
         try {
-            final Set<String> validFilePaths = FileUtils.getFeatureFileNamesFromWorkspace(workspace,
-                                                                                          this.folderPath,
-                                                                                          listener);
-            final FilePath zipFile = createZipFile(workspace);
-            FileStream testInfoFile = null;
-            FileStream preconditionsFile = null;
+            // The folders are walked once, in the node where they are stored
+            final List<FeatureFile> featureFiles = FileUtils.findFeatureFiles(workspace, this.folderPath, listener);
+            final Set<String> validFilePaths = FileUtils.getFeatureFileNames(featureFiles);
+            FilePath testInfoFile = null;
+            FilePath preconditionsFile = null;
 
             Path path = Paths.get(this.folderPath);
             FilePath base = getBaseFilePath(workspace, path);
@@ -251,53 +324,92 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
             listener.getLogger()
                     .println("Creating zip to import feature files. This may take a while if you have a big number of files.");
 
+            final List<DirScanner> scanners = new ArrayList<>();
+            Map<String, String> manifest = null;
             if (path.isAbsolute() && Files.isRegularFile(path)) {
-                base.zip(zipFile.write(), new OnlyFeatureFilesInPathFilter(validFilePaths, lastModified));
+                if (isIncrementalImport()) {
+                    listener.getLogger().println("The incremental import does not apply to a single feature file, it is always imported");
+                }
+                scanners.add(new DirScanner.Filter(new OnlyFeatureFilesInPathFilter(validFilePaths, lastModified)));
             } else {
-                final String acceptedGlobs = FileUtils.getFeatureFilesFromWorkspace(workspace, this.folderPath, listener)
+                List<FeatureFile> filesToImport = featureFiles
                         .stream()
-                        .filter(featureFile -> FileUtils.isApplicableAsModifiedFile(featureFile, this.lastModified))
-                        .map(FilePath::getRemote)
-                        .map(p -> p.replace(base.getRemote(), ""))
-                        .map(p -> StringUtils.removeStart(p, File.separator))
-                        .collect(Collectors.joining(","));
-
-                base.zip(zipFile.write(), new DirScanner.Glob(acceptedGlobs, "", false));
+                        .filter(featureFile -> FileUtils.isApplicableAsModifiedFile(featureFile.getLastModified(), this.lastModified))
+                        .collect(Collectors.toList());
+                if (isIncrementalImport()) {
+                    manifest = new HashMap<>();
+                    filesToImport = getChangedFeatureFiles(run, workspace, base, listener, instance, featureFiles, filesToImport, manifest);
+                    if (filesToImport.isEmpty()) {
+                        listener.getLogger().println("No feature file was added or changed since the last import");
+                        XrayEnvironmentVariableSetter.success().setAction(run, listener);
+                        return Collections.emptyList();
+                    }
+                }
+
+                final List<List<FeatureFile>> shards = FeatureSharder.shard(filesToImport, getFeatureShardCount());
+                if (shards.isEmpty()) {
+                    // Nothing to split, the (empty) zip is imported as usual
+                    shards.add(filesToImport);
+                }
+                for (List<FeatureFile> shard : shards) {
+                    final String acceptedGlobs = shard
+                            .stream()
+                            .map(featureFile -> getRelativePath(base, featureFile.getPath()))
+                            .collect(Collectors.joining(","));
+
+                    scanners.add(new DirScanner.Glob(acceptedGlobs, "", false));
+                }
             }
 
             if (StringUtils.isNotBlank(this.testInfo)) {
 
                 listener.getLogger().println("Getting Test Info file...");
 
-                FilePath filePath = getFile(workspace, this.testInfo, listener);
-                testInfoFile = new FileStream(filePath.getName(),
-                                              filePath.read(),
-                                              ContentType.APPLICATION_JSON);
+                testInfoFile = getFile(workspace, this.testInfo, listener);
             }
 
             if (StringUtils.isNotBlank(this.preconditions)) {
 
                 listener.getLogger().println("Getting preconditions file...");
 
-                FilePath filePath = getFile(workspace, this.preconditions, listener);
-                preconditionsFile = new FileStream(filePath.getName(),
-                                                   filePath.read(),
-                                                   ContentType.APPLICATION_JSON);
+                preconditionsFile = getFile(workspace, this.preconditions, listener);
+            }
+
+            final XrayRateLimiter rateLimiter = XrayRateLimiterRegistry.get(instance);
+            final XrayRateLimiter.Metrics rateLimiterStart = rateLimiter.getMetrics();
+            // The zips of the import share the retry budget
+            final RetryPolicy retryPolicy = RetryPolicy.create();
+            final FilePath finalTestInfoFile = testInfoFile;
+            final FilePath finalPreconditionsFile = preconditionsFile;
+            final List<FilePath> zipFiles = new ArrayList<>(scanners.size());
+            final List<RetryPolicy.Call<UploadResult>> uploads = new ArrayList<>(scanners.size());
+            for (int i = 0; i < scanners.size(); i++) {
+                final String zipName = scanners.size() > 1 ? SHARD_ZIP_FILENAME_PREFIX + (i + 1) + ".zip" : TMP_ZIP_FILENAME;
+                final RetryPolicy.Call<InputStream> zipContent = prepareZip(workspace, base, scanners.get(i), zipName, instance, listener, zipFiles);
+                // Each zip is sent with the Test Info and preconditions files, so all the features get the same fields
+                uploads.add(() -> uploadZipFile(client, listener, zipName, zipContent, finalTestInfoFile, finalPreconditionsFile, rateLimiter, retryPolicy));
             }
 
-            UploadResult uploadResult = uploadZipFile(client, listener, zipFile, testInfoFile, preconditionsFile);
+            final List<UploadResult> uploadResults = uploadZipFiles(run, listener, instance, uploads);
+            XrayRateLimiterRegistry.logMetrics(rateLimiter, rateLimiterStart, listener);
 
             final HostingType hostingType = instance.getHosting() == null ? HostingType.SERVER : instance.getHosting();
             XrayEnvironmentVariableSetter
-                    .parseCucumberFeatureImportResponse(Collections.singleton(uploadResult),
+                    .parseCucumberFeatureImportResponse(uploadResults,
                                                         hostingType,
                                                         listener.getLogger())
                     .setAction(run, listener);
 
-            // Deletes the Zip File
-            deleteFile(zipFile, listener);
+            if (manifest != null && uploadResults.stream().allMatch(UploadResult::isOkStatusCode)) {
+                FeatureManifest.record(run.getParent(), instance.getConfigID(), this.projectKey, getManifestFolder(workspace, base), manifest);
+            }
 
-            return uploadResult;
+            // Deletes the Zip Files
+            for (FilePath zipFile : zipFiles) {
+                deleteFile(zipFile, listener);
+            }
+
+            return uploadResults;
         } catch (XrayClientCoreGenericException | IOException e) {
             addFailedOpEnvironmentVariables(run, listener);
             listener.error(e.getMessage());
@@ -305,6 +417,68 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
         }
     }
 
+    /**
+     * Hashes the feature files in the node where they are stored, and keeps only the ones added or changed since the
+     * last successful import.
+     *
+     * @param featureFiles  all the feature files
+     * @param filesToImport the feature files that can be imported
+     * @param manifest      receives the content hashes to record once the changed files are imported
+     * @return the feature files added or changed
+     */
+    private List<FeatureFile> getChangedFeatureFiles(
+            Run<?, ?> run,
+            FilePath workspace,
+            FilePath base,
+            TaskListener listener,
+            XrayInstance instance,
+            List<FeatureFile> featureFiles,
+            List<FeatureFile> filesToImport,
+            Map<String, String> manifest
+    ) throws IOException, InterruptedException {
+        final Map<String, String> previousHashes = FeatureManifest.load(run.getParent(), instance.getConfigID(), this.projectKey,
+                                                                        getManifestFolder(workspace, base));
+        final List<String> paths = filesToImport.stream().map(FeatureFile::getPath).collect(Collectors.toList());
+        final Map<String, String> hashesByPath = base.act(new ContentHashCallable(paths));
+
+        final List<FeatureFile> changedFiles = new ArrayList<>();
+        for (FeatureFile featureFile : filesToImport) {
+            if (!hashesByPath.get(featureFile.getPath()).equals(previousHashes.get(getRelativePath(base, featureFile.getPath())))) {
+                changedFiles.add(featureFile);
+            }
+        }
+
+        // The files that are not imported now (e.g.: filtered by the last modified time) keep their previous hash,
+        // and the deleted files are dropped
+        for (FeatureFile featureFile : featureFiles) {
+            final String relativePath = getRelativePath(base, featureFile.getPath());
+            final String hash = hashesByPath.getOrDefault(featureFile.getPath(), previousHashes.get(relativePath));
+            if (hash != null) {
+                manifest.put(relativePath, hash);
+            }
+        }
+
+        listener.getLogger().println(changedFiles.size() + " of " + featureFiles.size() + " feature files were added or changed since the last import");
+        return changedFiles;
+    }
+
+    /**
+     * @return the features folder relative to the workspace, or its full path if it is outside of the workspace, so
+     * the manifest doesn't depend on the workspace of the build (e.g.: another agent, or a concurrent build)
+     */
+    private static String getManifestFolder(FilePath workspace, FilePath base) {
+        final String workspacePath = workspace.getRemote();
+        final String basePath = base.getRemote();
+        if (basePath.equals(workspacePath)) {
+            return "";
+        }
+        return basePath.startsWith(workspacePath + File.separator) ? getRelativePath(workspace, basePath) : basePath;
+    }
+
+    private static String getRelativePath(FilePath base, String path) {
+        return StringUtils.removeStart(path.replace(base.getRemote(), ""), File.separator);
+    }
+
     private FilePath getBaseFilePath(FilePath workspace, Path path) {
         if (path.isAbsolute()) {
             return new FilePath(path.toFile());
@@ -347,30 +521,106 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
         }
     }
 
-    private UploadResult uploadZipFile(
-            XrayTestImporter client,
+    /**
+     * Prepares the zip of the feature files selected by the scanner.
+     *
+     * @param zipFiles receives the zip file, if it is written to the disk
+     * @return opens the zip content, on each upload attempt
+     */
+    private RetryPolicy.Call<InputStream> prepareZip(
+            FilePath workspace,
+            FilePath base,
+            DirScanner scanner,
+            String zipName,
+            XrayInstance instance,
             TaskListener listener,
-            FilePath zipFile,
-            FileStream testInfo,
-            FileStream preconditions
+            List<FilePath> zipFiles
     ) throws IOException, InterruptedException {
-        if (zipFile.isRemote()) {
-            listener.getLogger().println("Waiting 10 seconds to finish the zip before making the request");
-            Thread.sleep(ZIP_WAIT_TIME_MILLISECONDS);
+        if (isStreamZip()) {
+            // No file is written: the zip is created again on each attempt, while it is uploaded
+            return () -> FeatureZipStream.open(base, scanner, instance.isCompressTransfers(), listener);
         }
 
-        FileStream zipFileStream = new FileStream(
-                zipFile.getName(),
-                zipFile.read(),
-                ContentType.APPLICATION_JSON);
-        UploadResult uploadResult = client.importFeatures(this.projectKey, zipFileStream, testInfo, preconditions);
+        final FilePath zipFile = createZipFile(workspace, base, zipName);
+        zipFiles.add(zipFile);
+        // Returns only when the zip is closed, so it can be uploaded right away
+        final FeatureArchive archive = base.act(new FeatureZipCallable(zipFile.getRemote(), scanner));
+        listener.getLogger().println("Created " + zipFile.getName() + " (" + archive.getSize() + " bytes, SHA-256 " + archive.getChecksum() + ")");
+        return () -> instance.isCompressTransfers() ? CompressedFileReader.read(zipFile, listener) : zipFile.read();
+    }
+
+    /**
+     * Uploads the zips, in parallel if there are several of them.
+     *
+     * @return the upload result of each zip, in the same order
+     */
+    private List<UploadResult> uploadZipFiles(
+            Run<?, ?> run,
+            TaskListener listener,
+            XrayInstance instance,
+            List<RetryPolicy.Call<UploadResult>> uploads
+    ) throws IOException, InterruptedException {
+        if (uploads.size() == 1) {
+            return Collections.singletonList(uploads.get(0).call());
+        }
+
+        final int concurrency = Math.min(uploads.size(),
+                                         UploadExecutor.resolveConcurrency(null, instance.getMaxUploadConcurrency()));
+        try (UploadExecutor uploadExecutor = new UploadExecutor(run.getFullDisplayName(), concurrency)) {
+            listener.getLogger()
+                    .println("Importing " + uploads.size() + " zips in parallel (maximum parallel uploads: " + uploadExecutor.getConcurrency() + ")");
+
+            final List<Future<UploadResult>> futures = new ArrayList<>(uploads.size());
+            for (RetryPolicy.Call<UploadResult> upload : uploads) {
+                futures.add(uploadExecutor.submit(upload::call));
+            }
+            return uploadExecutor.awaitAll(futures);
+        }
+    }
+
+    private UploadResult uploadZipFile(
+            XrayTestImporter client,
+            TaskListener listener,
+            String zipName,
+            RetryPolicy.Call<InputStream> zipContentOpener,
+            @Nullable FilePath testInfoFile,
+            @Nullable FilePath preconditionsFile,
+            XrayRateLimiter rateLimiter,
+            RetryPolicy retryPolicy
+    ) throws IOException, InterruptedException {
+        // The files are read again on each attempt. The import may create Tests, so it is only retried if Xray did not
+        // process it.
+        final UploadResult uploadResult = retryPolicy.executeUpload(zipName, listener, false, () -> {
+            try (InputStream zipContent = zipContentOpener.call();
+                 InputStream testInfo = testInfoFile == null ? null : testInfoFile.read();
+                 InputStream preconditions = preconditionsFile == null ? null : preconditionsFile.read()) {
+                FileStream zipFileStream = new FileStream(
+                        zipName,
+                        zipContent,
+                        ContentType.APPLICATION_JSON);
+                XrayRateLimiterRegistry.acquire(rateLimiter, listener);
+                return client.importFeatures(this.projectKey,
+                                             zipFileStream,
+                                             toFileStream(testInfoFile, testInfo),
+                                             toFileStream(preconditionsFile, preconditions));
+            }
+        });
         listener.getLogger().println(uploadResult.getMessage());
 
         return uploadResult;
     }
 
-    private FilePath createZipFile(final FilePath workspace) {
-        return new FilePath(workspace, TMP_ZIP_FILENAME);
+    @Nullable
+    private FileStream toFileStream(@Nullable FilePath file, @Nullable InputStream content) {
+        return file == null ? null : new FileStream(file.getName(), content, ContentType.APPLICATION_JSON);
+    }
+
+    private FilePath createZipFile(final FilePath workspace, final FilePath base, final String zipName) throws IOException {
+        if (base.getChannel() == workspace.getChannel()) {
+            return new FilePath(workspace, zipName);
+        }
+        // An absolute path is read in the controller: the zip is created there, next to the feature files
+        return new FilePath(File.createTempFile(StringUtils.removeEnd(zipName, ".zip"), ".zip"));
     }
 
     private void addFailedOpEnvironmentVariables(Run<?, ?> run, TaskListener taskListener) {
@@ -451,6 +701,10 @@ public class XrayImportFeatureBuilder extends Builder implements SimpleBuildStep
             }
         }
 
+        public FormValidation doCheckFeatureShards(@QueryParameter String value) {
+            return FormUtils.checkOptionalPositiveInteger(value);
+        }
+
         public FormValidation doCheckCredentialId(@QueryParameter String value, @QueryParameter String serverInstance) {
             final XrayInstance xrayInstance = getConfigurationOrFirstAvailable(serverInstance);
             if (xrayInstance != null && StringUtils.isBlank(xrayInstance.getCredentialId()) && StringUtils.isBlank(value)) {
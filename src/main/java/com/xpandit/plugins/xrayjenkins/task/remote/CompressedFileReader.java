@@ -0,0 +1,148 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads a file stored in an agent, compressing its content with gzip while it is transferred to the controller.
+ * The content is compressed and decompressed while streaming, so it is never fully loaded into memory.
+ * The compression ratio is logged when the stream is closed. If the agent fails while compressing the file, reading
+ * the end of the stream fails too, instead of returning a truncated content.
+ */
+public class CompressedFileReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long REMOTE_FAILURE_TIMEOUT_SECONDS = 10L;
+
+    private CompressedFileReader() {}
+
+    /**
+     * Opens a compressed stream of the file content. If the file is local, or if the compressed stream cannot be
+     * opened (e.g.: the agent is not able to compress it), it falls back to the plain {@link FilePath#read()}.
+     *
+     * @param file     the file to read
+     * @param listener the listener used to log the compression ratio
+     * @return the (decompressed) file content
+     */
+    public static InputStream read(FilePath file, TaskListener listener) throws IOException, InterruptedException {
+        if (!file.isRemote()) {
+            return file.read();
+        }
+
+        final Pipe pipe = Pipe.createRemoteToLocal();
+        final Future<Void> future = file.actAsync(new GzipWriter(pipe));
+        try {
+            final CountingInputStream compressed = new CountingInputStream(pipe.getIn());
+            // The GZIP header is read here, so this fails right away if the agent couldn't start the compression.
+            final InputStream decompressed = new GZIPInputStream(compressed, BUFFER_SIZE);
+            final InputStream checked = new RemoteContentInputStream<>(decompressed, future, "compress " + file.getName());
+            return new RatioLoggingInputStream(checked, compressed, file.getName(), listener);
+        } catch (IOException e) {
+            listener.getLogger().println("Unable to compress " + file.getName() + ", transferring it uncompressed: "
+                                                 + getRemoteFailure(future, e));
+            return file.read();
+        }
+    }
+
+    /**
+     * @return the reason why the agent failed, or the local error if the agent didn't fail
+     */
+    private static String getRemoteFailure(Future<Void> future, IOException localError) throws InterruptedException {
+        try {
+            future.get(REMOTE_FAILURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return String.valueOf(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+        }
+        return localError.getMessage();
+    }
+
+    private static class GzipWriter extends MasterToSlaveFileCallable<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pipe pipe;
+
+        GzipWriter(Pipe pipe) {
+            this.pipe = pipe;
+        }
+
+        @Override
+        public Void invoke(File file, VirtualChannel channel) throws IOException {
+            // The pipe is closed even if the file cannot be read, so the controller never waits for it forever
+            try (OutputStream pipeOut = pipe.getOut();
+                 InputStream in = new FileInputStream(file);
+                 OutputStream out = new GZIPOutputStream(pipeOut, BUFFER_SIZE)) {
+                IOUtils.copy(in, out);
+            }
+            return null;
+        }
+    }
+
+    private static class RatioLoggingInputStream extends FilterInputStream {
+
+        private final CountingInputStream compressed;
+        private final String fileName;
+        private final TaskListener listener;
+        private long rawBytes;
+        private boolean closed;
+
+        RatioLoggingInputStream(InputStream decompressed, CountingInputStream compressed, String fileName, TaskListener listener) {
+            super(decompressed);
+            this.compressed = compressed;
+            this.fileName = fileName;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                rawBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (count > 0) {
+                rawBytes += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                final long compressedBytes = compressed.getByteCount();
+                listener.getLogger().println(String.format("Compressed transfer of %s: %d bytes sent as %d bytes (ratio %.1f)",
+                                                           fileName,
+                                                           rawBytes,
+                                                           compressedBytes,
+                                                           compressedBytes == 0 ? 0.0 : (double) rawBytes / compressedBytes));
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Computes the SHA-256 digest of several files in the JVM where they are stored (usually an agent), so only the
+ * digests are sent back to the controller.
+ */
+public class ContentHashCallable extends MasterToSlaveFileCallable<LinkedHashMap<String, String>> {
+
+    private static final long serialVersionUID = 1L;
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ArrayList<String> filePaths;
+
+    public ContentHashCallable(List<String> filePaths) {
+        this.filePaths = new ArrayList<>(filePaths);
+    }
+
+    /**
+     * @return the hex digest of each file, by file path
+     */
+    @Override
+    public LinkedHashMap<String, String> invoke(File baseDir, VirtualChannel channel) throws IOException {
+        final LinkedHashMap<String, String> hashes = new LinkedHashMap<>();
+        for (String filePath : filePaths) {
+            hashes.put(filePath, hash(new File(filePath)));
+        }
+        return hashes;
+    }
+
+    /**
+     * @param file the file
+     * @return the SHA-256 hex digest of the file content
+     * @throws IOException if the file cannot be read
+     */
+    public static String hash(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int count;
+            while ((count = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return Util.toHexString(digest.digest());
+    }
+}
@@ -0,0 +1,83 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureFile;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+/**
+ * Finds all the feature files of a folder (and its sub folders) in the JVM where they are stored (usually an agent),
+ * with a single tree walk, so discovering thousands of files takes a single remote call instead of several calls per
+ * folder.
+ * Returns null if the path is neither a folder nor a feature file.
+ */
+public class FeatureFilesCallable extends MasterToSlaveFileCallable<ArrayList<FeatureFile>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String extension;
+
+    /**
+     * @param extension the extension of the feature files (e.g.: ".feature")
+     */
+    public FeatureFilesCallable(String extension) {
+        this.extension = extension;
+    }
+
+    @Override
+    public ArrayList<FeatureFile> invoke(File file, VirtualChannel channel) throws IOException {
+        final ArrayList<FeatureFile> featureFiles = new ArrayList<>();
+        final Path path = file.toPath();
+
+        if (Files.isRegularFile(path)) {
+            if (!isFeatureFile(path)) {
+                return null;
+            }
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            featureFiles.add(toFeatureFile(path, attributes));
+            return featureFiles;
+        }
+        if (!Files.isDirectory(path)) {
+            return null;
+        }
+
+        // The links are followed, as FilePath#isDirectory and FilePath#list do
+        Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path visitedFile, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && isFeatureFile(visitedFile)) {
+                    featureFiles.add(toFeatureFile(visitedFile, attributes));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path visitedFile, IOException e) throws IOException {
+                if (e instanceof FileSystemLoopException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        return featureFiles;
+    }
+
+    private boolean isFeatureFile(Path path) {
+        return path.getFileName() != null && path.getFileName().toString().endsWith(extension);
+    }
+
+    private static FeatureFile toFeatureFile(Path path, BasicFileAttributes attributes) {
+        return new FeatureFile(path.toAbsolutePath().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+}
@@ -0,0 +1,76 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureArchive;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
+import hudson.util.io.Archiver;
+import hudson.util.io.ArchiverFactory;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Creates the zip file of the feature files in the JVM where they are stored (usually an agent), writing it directly to
+ * the disk of that node. The call only returns after the zip is closed, with its final size and checksum, so the
+ * upload can start as soon as it returns.
+ */
+public class FeatureZipCallable extends MasterToSlaveFileCallable<FeatureArchive> {
+
+    private static final long serialVersionUID = 1L;
+    private static final String ALGORITHM = "SHA-256";
+
+    private final String zipFilePath;
+    private final DirScanner scanner;
+
+    /**
+     * @param zipFilePath the path of the zip file to create, in the same node as the feature files
+     * @param scanner     selects the files of the base folder to add to the zip
+     */
+    public FeatureZipCallable(String zipFilePath, DirScanner scanner) {
+        this.zipFilePath = zipFilePath;
+        this.scanner = scanner;
+    }
+
+    @Override
+    public FeatureArchive invoke(File baseDir, VirtualChannel channel) throws IOException, InterruptedException {
+        final File zipFile = new File(zipFilePath);
+        return write(baseDir, scanner, Files.newOutputStream(zipFile.toPath()), zipFile.getAbsolutePath());
+    }
+
+    /**
+     * Writes the zip of the files of the base folder to the stream, and closes it.
+     *
+     * @param baseDir the base folder
+     * @param scanner selects the files of the base folder to add to the zip
+     * @param out     the stream where the zip is written
+     * @param path    the path of the zip file, or null if it is not stored
+     * @return the zip size and checksum
+     */
+    static FeatureArchive write(File baseDir, DirScanner scanner, OutputStream out, @Nullable String path) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            out.close();
+            throw new IOException(e);
+        }
+
+        final CountingOutputStream countingStream;
+        try (OutputStream digestStream = new DigestOutputStream(out, digest)) {
+            countingStream = new CountingOutputStream(digestStream);
+            try (Archiver archiver = ArchiverFactory.ZIP.create(countingStream)) {
+                scanner.scan(baseDir, archiver);
+            }
+        }
+        return new FeatureArchive(path, countingStream.getByteCount(), Util.toHexString(digest.digest()));
+    }
+}
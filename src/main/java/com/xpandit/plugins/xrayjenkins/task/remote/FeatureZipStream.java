@@ -0,0 +1,102 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureArchive;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.remoting.FastPipedInputStream;
+import hudson.remoting.FastPipedOutputStream;
+import hudson.remoting.Pipe;
+import hudson.remoting.VirtualChannel;
+import hudson.util.DirScanner;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Zips the feature files while they are read, in the node where they are stored, without writing the zip to the disk:
+ * the zip is streamed straight into the request body, with a single transfer from the agent to the controller.
+ * When the end of the zip is reached, the stream checks that it was created successfully before reporting the end, so a
+ * zip that failed part-way is a read error instead of a truncated zip sent to Xray, and logs its size and checksum.
+ */
+public class FeatureZipStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String DESCRIPTION = "create the feature files zip";
+
+    private FeatureZipStream() {}
+
+    /**
+     * @param base     the base folder of the feature files
+     * @param scanner  selects the files of the base folder to add to the zip
+     * @param compress true to compress the zip with gzip while it is transferred from the agent to the controller
+     * @param listener the listener used to log the zip size and checksum
+     * @return the zip content
+     */
+    public static InputStream open(FilePath base, DirScanner scanner, boolean compress, TaskListener listener)
+            throws IOException, InterruptedException {
+        if (!base.isRemote()) {
+            final FastPipedInputStream in = new FastPipedInputStream();
+            final OutputStream out = new FastPipedOutputStream(in);
+            final File baseDir = new File(base.getRemote());
+            final Future<FeatureArchive> future = Computer.threadPoolForRemoting.submit(() ->
+                    FeatureZipCallable.write(baseDir, scanner, out, null));
+            return new FeatureZipInputStream(in, future, listener);
+        }
+
+        final Pipe pipe = Pipe.createRemoteToLocal();
+        final Future<FeatureArchive> future = base.actAsync(new ZipWriter(pipe, scanner, compress));
+        try {
+            final InputStream in = compress ? new GZIPInputStream(pipe.getIn(), BUFFER_SIZE) : pipe.getIn();
+            return new FeatureZipInputStream(in, future, listener);
+        } catch (IOException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private static class ZipWriter extends MasterToSlaveFileCallable<FeatureArchive> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pipe pipe;
+        private final DirScanner scanner;
+        private final boolean compress;
+
+        ZipWriter(Pipe pipe, DirScanner scanner, boolean compress) {
+            this.pipe = pipe;
+            this.scanner = scanner;
+            this.compress = compress;
+        }
+
+        @Override
+        public FeatureArchive invoke(File baseDir, VirtualChannel channel) throws IOException {
+            // The pipe is closed even if the zip cannot be created, so the controller never waits for it forever
+            try (OutputStream pipeOut = pipe.getOut()) {
+                final OutputStream out = compress ? new GZIPOutputStream(pipeOut, BUFFER_SIZE) : pipeOut;
+                return FeatureZipCallable.write(baseDir, scanner, out, null);
+            }
+        }
+    }
+
+    private static class FeatureZipInputStream extends RemoteContentInputStream<FeatureArchive> {
+
+        private final TaskListener listener;
+
+        FeatureZipInputStream(InputStream in, Future<FeatureArchive> future, TaskListener listener) {
+            super(in, future, DESCRIPTION);
+            this.listener = listener;
+        }
+
+        @Override
+        protected void onCompleted(FeatureArchive archive) {
+            listener.getLogger().println("Streamed the feature files zip (" + archive.getSize() + " bytes, SHA-256 " + archive.getChecksum() + ")");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the content written by an asynchronous call (e.g.: a remote call writing to a pipe). When the end of the
+ * content is reached, the call result is checked before reporting it, so a call that failed part-way is reported as a
+ * read error instead of a truncated content. If the stream is closed before the end, the call is cancelled.
+ *
+ * @param <T> the result of the call
+ */
+class RemoteContentInputStream<T> extends FilterInputStream {
+
+    private final Future<T> future;
+    private final String description;
+    private boolean endReached;
+
+    /**
+     * @param in          the content written by the call
+     * @param future      the call
+     * @param description describes the content in the errors (e.g.: "compress file.xml")
+     */
+    RemoteContentInputStream(InputStream in, Future<T> future, String description) {
+        super(in);
+        this.future = future;
+        this.description = description;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b == -1) {
+            onEnd();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        final int count = super.read(b, off, len);
+        if (count == -1) {
+            onEnd();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!endReached) {
+                // The content was not fully read (e.g.: the request failed), there is no point in finishing the call
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Called once, when the end of the content is reached and the call succeeded.
+     *
+     * @param result the result of the call
+     */
+    protected void onCompleted(T result) {
+    }
+
+    private void onEnd() throws IOException {
+        if (endReached) {
+            return;
+        }
+        endReached = true;
+
+        final T result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to " + description, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to " + description);
+        }
+        onCompleted(result);
+    }
+}
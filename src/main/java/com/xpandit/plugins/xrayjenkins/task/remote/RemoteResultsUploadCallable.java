@@ -0,0 +1,96 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.factory.ClientFactory;
+import com.xpandit.plugins.xrayjenkins.model.RemoteClientSettings;
+import com.xpandit.plugins.xrayjenkins.services.upload.RemoteContent;
+import com.xpandit.plugins.xrayjenkins.services.upload.UploadPlan;
+import com.xpandit.xray.model.Content;
+import com.xpandit.xray.model.DataParameter;
+import com.xpandit.xray.model.Endpoint;
+import com.xpandit.xray.model.FileStream;
+import com.xpandit.xray.model.StringContent;
+import com.xpandit.xray.model.UploadResult;
+import com.xpandit.xray.service.XrayImporter;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.apache.http.entity.ContentType;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Uploads a results file to Xray from the JVM where the file is stored (usually an agent), so the file content doesn't
+ * go through the controller. Only the {@link UploadResult} is sent back.
+ */
+public class RemoteResultsUploadCallable extends MasterToSlaveFileCallable<UploadResult> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RemoteClientSettings clientSettings;
+    private final UploadPlan plan;
+    private final String sameExecutionKey;
+
+    /**
+     * @param clientSettings   the settings of the client used to upload the results
+     * @param plan             the upload plan of the import
+     * @param sameExecutionKey the key of the Test Execution where all the results are imported, or null
+     */
+    public RemoteResultsUploadCallable(RemoteClientSettings clientSettings,
+                                       UploadPlan plan,
+                                       @Nullable String sameExecutionKey) {
+        this.clientSettings = clientSettings;
+        this.plan = plan;
+        this.sameExecutionKey = sameExecutionKey;
+    }
+
+    @Override
+    public UploadResult invoke(File resultsFile, VirtualChannel channel) throws IOException {
+        final XrayImporter client = ClientFactory.getResultsImportClient(clientSettings);
+        final Endpoint endpoint = plan.getEndpoint(sameExecutionKey);
+        final RemoteContent info = plan.getInfo();
+        final RemoteContent testInfo = plan.getTestInfo();
+        final Map<DataParameter, Content> dataParams = new EnumMap<>(DataParameter.class);
+
+        try {
+            if (plan.isResultsFile()) {
+                dataParams.put(DataParameter.FILEPATH, new FileStream(resultsFile.getName(),
+                                                                      new FileInputStream(resultsFile),
+                                                                      endpoint.getResultsMediaType()));
+            }
+            if (info != null) {
+                dataParams.put(DataParameter.INFO, toContent(info, endpoint.getInfoFieldMediaType()));
+            }
+            if (testInfo != null) {
+                dataParams.put(DataParameter.TEST_INFO, toContent(testInfo, endpoint.getInfoFieldMediaType()));
+            }
+
+            return client.uploadResults(endpoint, dataParams, plan.getQueryParams(sameExecutionKey));
+        } finally {
+            for (Content content : dataParams.values()) {
+                if (content.getContent() instanceof AutoCloseable) {
+                    closeQuietly((AutoCloseable) content.getContent());
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Nothing to do, the upload is already finished
+        }
+    }
+
+    private static Content toContent(RemoteContent content, ContentType contentType) throws IOException {
+        if (content.getFilePath() != null) {
+            final File file = new File(content.getFilePath());
+            return new FileStream(file.getName(), new FileInputStream(file), contentType);
+        }
+        return new StringContent(content.getText(), contentType);
+    }
+}
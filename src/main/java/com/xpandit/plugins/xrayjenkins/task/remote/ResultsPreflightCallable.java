@@ -0,0 +1,38 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.services.upload.PreflightResult;
+import com.xpandit.plugins.xrayjenkins.services.upload.ResultsFilePreflight;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the results files in the JVM where they are stored (usually an agent), before uploading them.
+ *
+ * @see ResultsFilePreflight
+ */
+public class ResultsPreflightCallable extends MasterToSlaveFileCallable<List<PreflightResult>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ResultsFilePreflight preflight;
+    private final ArrayList<String> filePaths;
+
+    public ResultsPreflightCallable(ResultsFilePreflight preflight, List<String> filePaths) {
+        this.preflight = preflight;
+        this.filePaths = new ArrayList<>(filePaths);
+    }
+
+    @Override
+    public List<PreflightResult> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+        final List<File> files = new ArrayList<>(filePaths.size());
+        for (String filePath : filePaths) {
+            files.add(new File(filePath));
+        }
+        return preflight.check(files);
+    }
+}
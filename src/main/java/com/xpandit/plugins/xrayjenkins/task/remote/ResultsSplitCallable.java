@@ -0,0 +1,42 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import com.xpandit.plugins.xrayjenkins.services.upload.ResultsBatch;
+import com.xpandit.plugins.xrayjenkins.services.upload.ResultsFileSplitter;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits big results files into chunks in the JVM where the files are stored (usually an agent).
+ * Must be called on the directory where the chunks will be created.
+ *
+ * @see ResultsFileSplitter
+ */
+public class ResultsSplitCallable extends MasterToSlaveFileCallable<List<ResultsBatch>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ResultsFormat format;
+    private final long targetSizeBytes;
+    private final ArrayList<String> filePaths;
+
+    public ResultsSplitCallable(ResultsFormat format, long targetSizeBytes, List<String> filePaths) {
+        this.format = format;
+        this.targetSizeBytes = targetSizeBytes;
+        this.filePaths = new ArrayList<>(filePaths);
+    }
+
+    @Override
+    public List<ResultsBatch> invoke(File outputDir, VirtualChannel channel) throws IOException {
+        final List<File> files = new ArrayList<>(filePaths.size());
+        for (String filePath : filePaths) {
+            files.add(new File(filePath));
+        }
+        return new ResultsFileSplitter(format, targetSizeBytes, outputDir).split(files);
+    }
+}
@@ -1,5 +1,6 @@
 package com.xpandit.plugins.xrayjenkins.Utils;
 
+import com.xpandit.plugins.xrayjenkins.services.feature.FeatureFile;
 import hudson.FilePath;
 import hudson.model.TaskListener;
 import org.junit.Assert;
@@ -149,6 +150,24 @@ public class FileUtilsTest {
         }
     }
 
+    @Test
+    public void testFindFeatureFilesInSubFolders() throws IOException, InterruptedException {
+        try(PrintStream logger = new PrintStream(workspace.newFile(LOGGER_NAME))){
+            when(taskListener.getLogger()).thenReturn(logger);
+            File features = workspace.newFolder(XRAYJENKINS, WORK, WORKSPACEFOLDER, DUMMYPROJECT, "features", "a", "b");
+            File.createTempFile("login", ".feature", features).deleteOnExit();
+            File.createTempFile("logout", ".feature", features.getParentFile()).deleteOnExit();
+            File.createTempFile("notes", ".txt", features).deleteOnExit();
+
+            List<FeatureFile> featureFiles = FileUtils.findFeatureFiles(new FilePath(getWorkspaceFile()), "features", taskListener);
+            Assert.assertEquals(2, featureFiles.size());
+            for (FeatureFile featureFile : featureFiles) {
+                Assert.assertTrue(featureFile.getPath().endsWith(".feature"));
+                Assert.assertTrue(featureFile.getLastModified() > 0);
+            }
+        }
+    }
+
     private String getAbsoluteDirectoryPath() {
         return getWorkspacePath()
                 + File.separator
@@ -0,0 +1,41 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class BackgroundUploadActionTest {
+
+    @Test
+    public void testUnfinishedImportIsLostOnRestart() {
+        final BackgroundUploadAction action = new BackgroundUploadAction("xray-background-upload-123", false);
+        action.running();
+
+        action.onLoad(null);
+
+        Assert.assertEquals(BackgroundUploadAction.Status.FAILED, action.getStatus());
+        Assert.assertNotNull(action.getMessage());
+    }
+
+    @Test
+    public void testSpooledImportIsKeptOnRestart() {
+        final BackgroundUploadAction action = new BackgroundUploadAction("123", true);
+        action.queued("Xray is unavailable");
+
+        action.onLoad(null);
+
+        Assert.assertEquals(BackgroundUploadAction.Status.QUEUED, action.getStatus());
+    }
+
+    @Test
+    public void testFinishedImportIsKeptOnRestart() {
+        final BackgroundUploadAction action = new BackgroundUploadAction("xray-background-upload-123", false);
+        action.finished(true, null, Collections.singletonMap("XRAY_IS_REQUEST_SUCCESSFUL", "true"));
+
+        action.onLoad(null);
+
+        Assert.assertEquals(BackgroundUploadAction.Status.SUCCESSFUL, action.getStatus());
+        Assert.assertEquals("true", action.getVariables().get("XRAY_IS_REQUEST_SUCCESSFUL"));
+    }
+}
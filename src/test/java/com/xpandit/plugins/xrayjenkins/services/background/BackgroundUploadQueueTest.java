@@ -0,0 +1,28 @@
+package com.xpandit.plugins.xrayjenkins.services.background;
+
+import hudson.FilePath;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class BackgroundUploadQueueTest {
+
+    @Rule
+    public TemporaryFolder buildDir = new TemporaryFolder();
+
+    @Test
+    public void testSnapshotIsDeletedWithItsTemporaryDirectory() throws Exception {
+        final File snapshotDir = buildDir.newFolder("xray-background-upload-123");
+        final File tempDir = buildDir.newFolder("xray-background-upload-123@tmp");
+        Assert.assertTrue(new File(snapshotDir, "results.xml").createNewFile());
+        Assert.assertTrue(new File(tempDir, "results-chunk-1.xml").createNewFile());
+
+        BackgroundUploadQueue.deleteSnapshot(new FilePath(snapshotDir));
+
+        Assert.assertFalse(snapshotDir.exists());
+        Assert.assertFalse(tempDir.exists());
+    }
+}
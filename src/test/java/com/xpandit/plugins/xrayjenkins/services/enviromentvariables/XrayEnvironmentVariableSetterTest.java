@@ -0,0 +1,68 @@
+package com.xpandit.plugins.xrayjenkins.services.enviromentvariables;
+
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.xray.model.UploadResult;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class XrayEnvironmentVariableSetterTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testShortRawResponsesAreKeptInTheVariable() throws Exception {
+        final FreeStyleBuild build = jenkins.buildAndAssertSuccess(jenkins.createFreeStyleProject());
+        final XrayEnvironmentVariableSetter variableSetter = XrayEnvironmentVariableSetter.parseResultImportResponse(
+                Arrays.asList(result("XT-1", "url"), result("XT-2", "url")), HostingType.CLOUD, System.out);
+
+        variableSetter.setAction(build, TaskListener.NULL);
+
+        Assert.assertEquals(response("XT-1", "url") + ";" + response("XT-2", "url"),
+                            variableSetter.getVariables().get("XRAY_RAW_RESPONSE"));
+        Assert.assertNull(build.getAction(XrayRawResponsesAction.class));
+    }
+
+    @Test
+    public void testLongRawResponsesAreStoredInTheBuild() throws Exception {
+        final FreeStyleProject project = jenkins.createFreeStyleProject("long-responses");
+        final FreeStyleBuild build = jenkins.buildAndAssertSuccess(project);
+        final String longUrl = StringUtils.repeat('a', XrayEnvironmentVariableSetter.MAX_RAW_RESPONSE_LENGTH);
+        final XrayEnvironmentVariableSetter variableSetter = XrayEnvironmentVariableSetter.parseResultImportResponse(
+                Arrays.asList(result("XT-1", longUrl), result("XT-2", "url")), HostingType.CLOUD, System.out);
+
+        variableSetter.setAction(build, TaskListener.NULL);
+
+        final String rawResponse = variableSetter.getVariables().get("XRAY_RAW_RESPONSE");
+        Assert.assertTrue(rawResponse, rawResponse.startsWith("2 responses"));
+        Assert.assertTrue(rawResponse, rawResponse.contains(jenkins.getURL() + "job/long-responses/1/xray-responses/response?index=1"));
+        Assert.assertFalse(rawResponse, rawResponse.contains(build.getRootDir().getPath()));
+
+        final XrayRawResponsesAction action = build.getAction(XrayRawResponsesAction.class);
+        Assert.assertEquals(response("XT-1", longUrl), action.getResponse(0));
+        Assert.assertEquals(response("XT-2", "url"), action.getResponse(1));
+    }
+
+    private static UploadResult result(String key, String url) {
+        final UploadResult result = mock(UploadResult.class);
+        when(result.isOkStatusCode()).thenReturn(true);
+        when(result.getStatusCode()).thenReturn(200);
+        when(result.getMessage()).thenReturn(response(key, url));
+        return result;
+    }
+
+    private static String response(String key, String url) {
+        return "{\"id\":\"1\",\"key\":\"" + key + "\",\"self\":\"" + url + "\"}";
+    }
+}
@@ -0,0 +1,51 @@
+package com.xpandit.plugins.xrayjenkins.services.enviromentvariables.util;
+
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ImportResponseParserTest {
+
+    @Test
+    public void testServerResultsImport() {
+        final ImportResponse response = ImportResponseParser.parse(
+                "{\"testExecIssue\":{\"id\":\"1\",\"key\":\"XT-1\"},"
+                        + "\"testIssues\":{\"success\":[{\"key\":\"XT-2\"},{\"key\":\"XT-3\"}],\"error\":[{\"key\":\"XT-4\"}]},"
+                        + "\"infoMessages\":[]}",
+                HostingType.SERVER);
+
+        Assert.assertEquals("XT-1", response.getTestExecutionKey());
+        Assert.assertEquals(Arrays.asList("XT-2", "XT-3"), response.getTestKeys());
+    }
+
+    @Test
+    public void testCloudResultsImport() {
+        final ImportResponse response = ImportResponseParser.parse("{\"id\":\"1\",\"key\":\"XT-1\",\"self\":\"url\"}", HostingType.CLOUD);
+
+        Assert.assertEquals("XT-1", response.getTestExecutionKey());
+        Assert.assertTrue(response.getTestKeys().isEmpty());
+    }
+
+    @Test
+    public void testFeatureImports() {
+        final ImportResponse server = ImportResponseParser.parse("[{\"key\":\"XT-2\"},{\"key\":\"XT-3\"}]", HostingType.SERVER);
+        Assert.assertEquals(Arrays.asList("XT-2", "XT-3"), server.getTestKeys());
+
+        final ImportResponse cloud = ImportResponseParser.parse(
+                "{\"errors\":[],\"updatedOrCreatedTests\":[{\"key\":\"XT-2\"}],\"updatedOrCreatedPreconditions\":[{\"key\":\"XT-5\"}]}",
+                HostingType.CLOUD);
+        Assert.assertEquals(Collections.singletonList("XT-2"), cloud.getTestKeys());
+        Assert.assertEquals(Collections.singletonList("XT-5"), cloud.getPreconditionKeys());
+    }
+
+    @Test
+    public void testInvalidResponse() {
+        final ImportResponse response = ImportResponseParser.parse("Internal Server Error", HostingType.SERVER);
+
+        Assert.assertNull(response.getTestExecutionKey());
+        Assert.assertTrue(response.getTestKeys().isEmpty());
+    }
+}
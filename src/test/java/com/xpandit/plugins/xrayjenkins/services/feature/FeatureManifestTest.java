@@ -0,0 +1,52 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FeatureManifestTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testRecordedHashesAreLoadedForTheSameFolderOnly() throws Exception {
+        final FreeStyleProject project = jenkins.createFreeStyleProject();
+        final Map<String, String> hashesByPath = new HashMap<>();
+        hashesByPath.put("login.feature", "hash-1");
+        hashesByPath.put("checkout.feature", "hash-2");
+
+        FeatureManifest.record(project, "instance", "CALC", "features/web", hashesByPath);
+
+        Assert.assertEquals(hashesByPath, FeatureManifest.load(project, "instance", "CALC", "features/web"));
+        // The same relative paths in another folder, project or instance are other files
+        Assert.assertTrue(FeatureManifest.load(project, "instance", "CALC", "features/mobile").isEmpty());
+        Assert.assertTrue(FeatureManifest.load(project, "instance", "OTHER", "features/web").isEmpty());
+        Assert.assertTrue(FeatureManifest.load(project, "other", "CALC", "features/web").isEmpty());
+    }
+
+    @Test
+    public void testChangedAndDeletedFilesAreDetectedAgainstTheLastImport() throws Exception {
+        final FreeStyleProject project = jenkins.createFreeStyleProject();
+        final Map<String, String> firstImport = new HashMap<>();
+        firstImport.put("login.feature", "hash-1");
+        firstImport.put("checkout.feature", "hash-2");
+        FeatureManifest.record(project, "instance", "CALC", "", firstImport);
+
+        final Map<String, String> previous = FeatureManifest.load(project, "instance", "CALC", "");
+        Assert.assertEquals("hash-1", previous.get("login.feature"));
+        Assert.assertNotEquals("hash-3", previous.get("checkout.feature"));
+        Assert.assertNull(previous.get("search.feature"));
+
+        // The next import replaces the manifest, dropping the deleted files
+        final Map<String, String> secondImport = new HashMap<>();
+        secondImport.put("login.feature", "hash-1");
+        FeatureManifest.record(project, "instance", "CALC", "", secondImport);
+        Assert.assertEquals(secondImport, FeatureManifest.load(project, "instance", "CALC", ""));
+    }
+}
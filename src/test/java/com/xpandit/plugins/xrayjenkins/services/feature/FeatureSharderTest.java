@@ -0,0 +1,38 @@
+package com.xpandit.plugins.xrayjenkins.services.feature;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FeatureSharderTest {
+
+    @Test
+    public void testShardsAreBalancedBySize() {
+        final List<FeatureFile> featureFiles = Arrays.asList(new FeatureFile("a.feature", 70L, 0L),
+                                                             new FeatureFile("b.feature", 40L, 0L),
+                                                             new FeatureFile("c.feature", 30L, 0L),
+                                                             new FeatureFile("d.feature", 20L, 0L),
+                                                             new FeatureFile("e.feature", 10L, 0L));
+
+        final List<List<FeatureFile>> shards = FeatureSharder.shard(featureFiles, 2);
+
+        Assert.assertEquals(2, shards.size());
+        Assert.assertEquals(90L, getSize(shards.get(0)));
+        Assert.assertEquals(80L, getSize(shards.get(1)));
+    }
+
+    @Test
+    public void testThereAreNoEmptyShards() {
+        final List<List<FeatureFile>> shards = FeatureSharder.shard(Collections.singletonList(new FeatureFile("a.feature", 1L, 0L)), 4);
+
+        Assert.assertEquals(1, shards.size());
+        Assert.assertTrue(FeatureSharder.shard(Collections.emptyList(), 4).isEmpty());
+    }
+
+    private static long getSize(List<FeatureFile> shard) {
+        return shard.stream().mapToLong(FeatureFile::getSize).sum();
+    }
+}
@@ -0,0 +1,74 @@
+package com.xpandit.plugins.xrayjenkins.services.ratelimit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XrayRateLimiterTest {
+
+    @Test
+    public void testDisabledLimiterNeverWaits() throws InterruptedException {
+        XrayRateLimiter limiter = new XrayRateLimiter(0, 1);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(0L, limiter.acquire());
+        }
+        Assert.assertFalse(limiter.isEnabled());
+        Assert.assertEquals(10L, limiter.getRequests());
+        Assert.assertEquals(0L, limiter.getWaitingRequests());
+    }
+
+    @Test
+    public void testBurstIsAllowedWithoutWaiting() throws InterruptedException {
+        XrayRateLimiter limiter = new XrayRateLimiter(1, 3);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0L, limiter.acquire());
+        }
+        Assert.assertEquals(0L, limiter.getWaitingRequests());
+    }
+
+    @Test
+    public void testRequestsOverTheBurstWaitForTheNextToken() throws InterruptedException {
+        XrayRateLimiter limiter = new XrayRateLimiter(20, 1);
+
+        Assert.assertEquals(0L, limiter.acquire());
+        final long waitNanos = limiter.acquire();
+
+        // One token every 50 ms
+        Assert.assertTrue(waitNanos > 0);
+        Assert.assertTrue(waitNanos <= 50_000_000L);
+        Assert.assertEquals(1L, limiter.getWaitingRequests());
+        Assert.assertEquals(2L, limiter.getRequests());
+    }
+
+    @Test
+    public void testReservedRequestsAreQueuedWithoutWaiting() {
+        XrayRateLimiter limiter = new XrayRateLimiter(20, 1);
+
+        Assert.assertEquals(0L, limiter.reserveNext());
+        final long firstWaitNanos = limiter.reserveNext();
+        final long secondWaitNanos = limiter.reserveNext();
+
+        // The second waiting request is sent one token (50 ms) after the first one
+        Assert.assertTrue(firstWaitNanos > 0);
+        Assert.assertTrue(secondWaitNanos > firstWaitNanos);
+        Assert.assertTrue(secondWaitNanos <= 100_000_000L);
+        Assert.assertEquals(2L, limiter.getWaitingRequests());
+        Assert.assertEquals(3L, limiter.getRequests());
+    }
+
+    @Test
+    public void testMetricsSinceTheStartOfAnImport() throws InterruptedException {
+        XrayRateLimiter limiter = new XrayRateLimiter(0, 1);
+        limiter.acquire();
+        limiter.acquire();
+
+        final XrayRateLimiter.Metrics start = limiter.getMetrics();
+        limiter.acquire();
+
+        final XrayRateLimiter.Metrics metrics = limiter.getMetrics().since(start);
+        Assert.assertEquals(1L, metrics.getRequests());
+        Assert.assertEquals(0L, metrics.getWaitingRequests());
+        Assert.assertEquals(3L, limiter.getRequests());
+    }
+}
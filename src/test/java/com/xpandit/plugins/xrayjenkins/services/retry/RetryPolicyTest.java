@@ -0,0 +1,231 @@
+package com.xpandit.plugins.xrayjenkins.services.retry;
+
+import com.xpandit.xray.model.UploadResult;
+import hudson.AbortException;
+import hudson.model.TaskListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RetryPolicyTest {
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private RetryPolicy createPolicy(int budget) {
+        return createPolicy(budget, null);
+    }
+
+    private RetryPolicy createPolicy(int budget, ScheduledExecutorService scheduler) {
+        return new RetryPolicy(new AtomicInteger(budget), 100L, 1000L, RetryPolicy.getDefaultMaxRetries(), sleeps::add, scheduler);
+    }
+
+    @Test
+    public void testTransientErrorsAreRetried() throws IOException, InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final String result = createPolicy(10).execute("request", TaskListener.NULL, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ConnectException("Connection refused");
+            }
+            return "ok";
+        });
+
+        Assert.assertEquals("ok", result);
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(2, sleeps.size());
+    }
+
+    @Test
+    public void testOtherErrorsAreNotRetried() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            createPolicy(10).execute("request", TaskListener.NULL, () -> {
+                calls.incrementAndGet();
+                throw new FileNotFoundException("results.xml");
+            });
+            Assert.fail("The error should be thrown");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof FileNotFoundException);
+        }
+        Assert.assertEquals(1, calls.get());
+        Assert.assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void testErrorClassLimit() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+
+        try {
+            createPolicy(10).execute("request", TaskListener.NULL, () -> {
+                calls.incrementAndGet();
+                throw new SocketTimeoutException("Read timed out");
+            });
+            Assert.fail("The error should be thrown");
+        } catch (IOException e) {
+            Assert.assertTrue(e instanceof SocketTimeoutException);
+        }
+        Assert.assertEquals(RetryableError.READ_TIMEOUT.getDefaultMaxRetries() + 1, calls.get());
+    }
+
+    @Test
+    public void testBuildBudgetIsShared() throws InterruptedException {
+        final RetryPolicy policy = createPolicy(3);
+        final AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                policy.execute("request", TaskListener.NULL, () -> {
+                    calls.incrementAndGet();
+                    throw new ConnectException("Connection refused");
+                });
+                Assert.fail("The error should be thrown");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+
+        // 3 retries in the first request, none left for the second one
+        Assert.assertEquals(5, calls.get());
+        Assert.assertEquals(0, policy.getRemainingBudget());
+    }
+
+    @Test
+    public void testWrappedErrorsAreClassified() {
+        final AbortException wrapped = new AbortException("Unable to upload");
+        wrapped.initCause(new IOException(new SocketException("Connection reset")));
+
+        Assert.assertEquals(RetryableError.CONNECTION_RESET, RetryPolicy.classify(wrapped).orElse(null));
+        Assert.assertFalse(RetryPolicy.classify(new AbortException("File not found")).isPresent());
+    }
+
+    @Test
+    public void testBackoffHasFullJitterAndIsCapped() {
+        final RetryPolicy policy = createPolicy(10);
+
+        for (int retry = 0; retry < 10; retry++) {
+            final long backoff = policy.getBackoffMillis(retry);
+            Assert.assertTrue(backoff >= 0);
+            Assert.assertTrue(backoff <= Math.min(1000L, 100L << retry));
+        }
+    }
+
+    @Test
+    public void testAsyncRetriesDoNotSleep() throws InterruptedException, ExecutionException, TimeoutException {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RetryPolicy policy = createPolicy(10, scheduler);
+            final AtomicInteger calls = new AtomicInteger();
+
+            final String result = policy.<String>executeAsync("request", TaskListener.NULL, () -> {
+                if (calls.incrementAndGet() < 3) {
+                    throw new ConnectException("Connection refused");
+                }
+                return "ok";
+            }, executor).get(10, TimeUnit.SECONDS);
+
+            Assert.assertEquals("ok", result);
+            Assert.assertEquals(3, calls.get());
+            Assert.assertTrue(sleeps.isEmpty());
+            Assert.assertFalse(policy.getTimeline().isEmpty());
+        } finally {
+            scheduler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testImportCreatingATestExecutionIsOnlyRetriedIfNotProcessed() throws IOException, InterruptedException {
+        final RetryPolicy policy = createPolicy(10);
+        final AtomicInteger calls = new AtomicInteger();
+
+        // The connection failed: Xray did not receive the request
+        final UploadResult result = policy.executeUpload("results.xml", TaskListener.NULL, false, () -> {
+            if (calls.incrementAndGet() < 2) {
+                throw new ConnectException("Connection refused");
+            }
+            return result(200);
+        });
+        Assert.assertEquals(200, result.getStatusCode());
+        Assert.assertEquals(2, calls.get());
+
+        // Xray may have created the Test Execution before failing
+        calls.set(0);
+        final UploadResult serverError = policy.executeUpload("results.xml", TaskListener.NULL, false, () -> {
+            calls.incrementAndGet();
+            return result(500);
+        });
+        Assert.assertEquals(500, serverError.getStatusCode());
+        Assert.assertEquals(1, calls.get());
+
+        calls.set(0);
+        try {
+            policy.executeUpload("results.xml", TaskListener.NULL, false, () -> {
+                calls.incrementAndGet();
+                throw new SocketTimeoutException("Read timed out");
+            });
+            Assert.fail("The error should be thrown");
+        } catch (SocketTimeoutException e) {
+            Assert.assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void testTooManyRequestsWithoutRetryAfterIsRetriedWhenCreatingATestExecution() throws IOException, InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+
+        // A 429 response is never processed, even without a Retry-After time
+        final UploadResult result = createPolicy(10).executeUpload("results.xml", TaskListener.NULL, false, () ->
+                result(calls.incrementAndGet() < 3 ? 429 : 200));
+
+        Assert.assertEquals(200, result.getStatusCode());
+        Assert.assertEquals(3, calls.get());
+        Assert.assertEquals(2, sleeps.size());
+    }
+
+    @Test
+    public void testImportToAnExistingTestExecutionIsRetried() throws IOException, InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+
+        final UploadResult result = createPolicy(10).executeUpload("results.xml", TaskListener.NULL, true, () ->
+                result(calls.incrementAndGet() < 2 ? 502 : 200));
+
+        Assert.assertEquals(200, result.getStatusCode());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testOnlyResponsesAskingToWaitAreNotProcessed() {
+        Assert.assertTrue(RetryPolicy.isNotProcessed(result(503), true));
+        Assert.assertTrue(RetryPolicy.isNotProcessed(result(429), true));
+        Assert.assertTrue(RetryPolicy.isNotProcessed(result(429), false));
+        Assert.assertFalse(RetryPolicy.isNotProcessed(result(503), false));
+        Assert.assertFalse(RetryPolicy.isNotProcessed(result(500), true));
+    }
+
+    private static UploadResult result(int statusCode) {
+        final UploadResult result = mock(UploadResult.class);
+        when(result.getStatusCode()).thenReturn(statusCode);
+        when(result.isOkStatusCode()).thenReturn(statusCode < 300);
+        when(result.isTooManyRequests()).thenReturn(statusCode == 429);
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private static final long FAST_LATENCY = 100L;
+    private static final long SMALL_FILE = 1024L;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testLimitGrowsAdditivelyOnFastSuccesses() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, scheduler);
+        Assert.assertEquals(1, limiter.getLimit());
+
+        completeUploads(limiter, 1, FAST_LATENCY);
+        Assert.assertEquals(2, limiter.getLimit());
+
+        completeUploads(limiter, 3, FAST_LATENCY);
+        Assert.assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitNeverExceedsMaximum() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 3, scheduler);
+
+        completeUploads(limiter, 50, FAST_LATENCY);
+        Assert.assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitIsCutInHalfOnTooManyRequests() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 8, scheduler);
+
+        limiter.acquire().join();
+        limiter.onTooManyRequests(0);
+        Assert.assertEquals(4, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitIsCutOnLatencySpike() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 4, scheduler);
+        completeUploads(limiter, 5, FAST_LATENCY);
+        Assert.assertEquals(4, limiter.getLimit());
+
+        limiter.acquire().join();
+        limiter.onSuccess(FAST_LATENCY * 10, SMALL_FILE);
+        Assert.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testBigFileIsNotALatencySpike() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 4, scheduler);
+        completeUploads(limiter, 5, FAST_LATENCY);
+
+        // 10 times slower, but 20 times bigger than the reference size
+        limiter.acquire().join();
+        limiter.onSuccess(FAST_LATENCY * 10, AdaptiveConcurrencyLimiter.REFERENCE_BYTES * 20);
+        Assert.assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitNeverGoesBelowOne() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, scheduler);
+
+        limiter.acquire().join();
+        limiter.onTooManyRequests(0);
+        Assert.assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testDroppedUploadsDoNotChangeTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4, scheduler);
+
+        limiter.acquire().join();
+        limiter.onDropped();
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testPermitIsGrantedWhenAnUploadIsReleased() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, scheduler);
+
+        limiter.acquire().join();
+        final CompletableFuture<Void> permit = limiter.acquire();
+        Assert.assertFalse(permit.isDone());
+        Assert.assertEquals(1, limiter.getWaiting());
+
+        limiter.onDropped();
+        Assert.assertTrue(permit.isDone());
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    public void testPermitIsGrantedByTheSchedulerAfterTheRetryAfterPause() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4, scheduler);
+
+        limiter.acquire().join();
+        limiter.onTooManyRequests(1);
+        final long start = System.nanoTime();
+        final CompletableFuture<Void> permit = limiter.acquire();
+        Assert.assertFalse(permit.isDone());
+
+        permit.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCancelledPermitIsNotGranted() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, scheduler);
+
+        limiter.acquire().join();
+        limiter.acquire().cancel(false);
+        final CompletableFuture<Void> permit = limiter.acquire();
+
+        limiter.onDropped();
+        Assert.assertTrue(permit.isDone());
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testTasksAreOnlyDispatchedWithAPermit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 4, scheduler);
+        final int[] executed = {0};
+
+        limiter.executor(Runnable::run).execute(() -> executed[0]++);
+        limiter.executor(Runnable::run).execute(() -> executed[0]++);
+        Assert.assertEquals(1, executed[0]);
+
+        limiter.onSuccess(FAST_LATENCY, SMALL_FILE);
+        Assert.assertEquals(2, executed[0]);
+    }
+
+    private void completeUploads(AdaptiveConcurrencyLimiter limiter, int count, long latency) {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire().join();
+            limiter.onSuccess(latency, SMALL_FILE);
+        }
+    }
+}
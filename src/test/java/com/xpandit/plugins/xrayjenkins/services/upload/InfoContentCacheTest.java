@@ -0,0 +1,57 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.FilePath;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class InfoContentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testContentIsReadOnce() throws IOException, InterruptedException {
+        File info = createFile("info.json", "{\"fields\": {}}");
+
+        try (InfoContentCache cache = new InfoContentCache(1024L)) {
+            Assert.assertEquals("{\"fields\": {}}", read(cache, info));
+
+            // The cached content is served even if the file changes
+            Files.write(info.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals("{\"fields\": {}}", read(cache, info));
+        }
+    }
+
+    @Test
+    public void testBigContentIsSpilledToATemporaryFile() throws IOException, InterruptedException {
+        File small = createFile("small.json", "{}");
+        File big = createFile("big.json", "{\"summary\": \"a long summary\"}");
+
+        try (InfoContentCache cache = new InfoContentCache(10L)) {
+            Assert.assertEquals("{}", read(cache, small));
+            Assert.assertEquals("{\"summary\": \"a long summary\"}", read(cache, big));
+            Assert.assertEquals("{\"summary\": \"a long summary\"}", read(cache, big));
+        }
+    }
+
+    private static String read(InfoContentCache cache, File file) throws IOException, InterruptedException {
+        try (InputStream inputStream = cache.open(new FilePath(file))) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
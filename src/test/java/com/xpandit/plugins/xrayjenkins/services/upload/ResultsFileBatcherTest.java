@@ -0,0 +1,102 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResultsFileBatcherTest {
+
+    private static final long TARGET_SIZE = 1024L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSmallFilesAreMergedIntoOneFile() throws IOException {
+        File first = createFile("TEST-1.xml", "<testsuite name=\"first\"><testcase name=\"a\"/></testsuite>");
+        File second = createFile("TEST-2.xml", "<testsuites><testsuite name=\"second\"><testcase name=\"b\"/></testsuite></testsuites>");
+
+        List<ResultsBatch> batches = new ResultsFileBatcher(ResultsFormat.JUNIT, TARGET_SIZE, folder.getRoot())
+                .batch(Arrays.asList(first, second));
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertTrue(batches.get(0).isMerged());
+        Assert.assertEquals(2, batches.get(0).getSourcePaths().size());
+
+        String merged = new String(Files.readAllBytes(new File(batches.get(0).getPath()).toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(merged.contains("<testsuites>"));
+        Assert.assertTrue(merged.contains("<testsuite name=\"first\">"));
+        Assert.assertTrue(merged.contains("<testsuite name=\"second\">"));
+    }
+
+    @Test
+    public void testMergedRootHasNoTotalsAndKeepsTheOtherChildren() throws IOException {
+        File first = createFile("TestResult-1.xml", "<test-run total=\"1\" passed=\"1\"><environment os=\"linux\"/>"
+                + "<test-suite name=\"first\"><test-case name=\"a\"/></test-suite></test-run>");
+        File second = createFile("TestResult-2.xml", "<test-run total=\"2\" passed=\"2\"><environment os=\"linux\"/>"
+                + "<test-suite name=\"second\"><test-case name=\"b\"/><test-case name=\"c\"/></test-suite></test-run>");
+
+        List<ResultsBatch> batches = new ResultsFileBatcher(ResultsFormat.NUNIT, TARGET_SIZE, folder.getRoot())
+                .batch(Arrays.asList(first, second));
+
+        Assert.assertEquals(1, batches.size());
+        String merged = new String(Files.readAllBytes(new File(batches.get(0).getPath()).toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(merged.contains("<test-run>"));
+        Assert.assertFalse(merged.contains("total="));
+        Assert.assertEquals(1, merged.split("<environment").length - 1);
+        Assert.assertTrue(merged.contains("<test-suite name=\"first\">"));
+        Assert.assertTrue(merged.contains("<test-suite name=\"second\">"));
+    }
+
+    @Test
+    public void testBatchesDoNotExceedTheTargetSize() throws IOException {
+        String suite = "<testsuite name=\"suite\"><testcase name=\"" + repeat('a', 400) + "\"/></testsuite>";
+        File first = createFile("TEST-1.xml", suite);
+        File second = createFile("TEST-2.xml", suite);
+        File third = createFile("TEST-3.xml", suite);
+
+        List<ResultsBatch> batches = new ResultsFileBatcher(ResultsFormat.JUNIT, TARGET_SIZE, folder.getRoot())
+                .batch(Arrays.asList(first, second, third));
+
+        Assert.assertEquals(2, batches.size());
+        Assert.assertTrue(batches.get(0).isMerged());
+        Assert.assertFalse(batches.get(1).isMerged());
+        Assert.assertEquals(third.getAbsolutePath(), batches.get(1).getPath());
+    }
+
+    @Test
+    public void testUnknownFilesAreNotMerged() throws IOException {
+        File valid = createFile("TEST-1.xml", "<testsuite name=\"first\"/>");
+        File unknown = createFile("TEST-2.xml", "<report/>");
+        File invalid = createFile("TEST-3.xml", "not xml");
+
+        List<ResultsBatch> batches = new ResultsFileBatcher(ResultsFormat.JUNIT, TARGET_SIZE, folder.getRoot())
+                .batch(Arrays.asList(valid, unknown, invalid));
+
+        Assert.assertEquals(3, batches.size());
+        for (ResultsBatch batch : batches) {
+            Assert.assertFalse(batch.isMerged());
+        }
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
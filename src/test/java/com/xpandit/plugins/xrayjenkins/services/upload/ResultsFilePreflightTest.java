@@ -0,0 +1,57 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResultsFilePreflightTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ResultsFilePreflight preflight = new ResultsFilePreflight(ResultsFormat.JUNIT.getRootElements(),
+                                                                            ResultsFormat.JUNIT.getTestElement());
+
+    @Test
+    public void testTestsAreCounted() throws IOException, InterruptedException {
+        File first = createFile("TEST-1.xml", "<testsuite name=\"first\"><testcase name=\"a\"/><testcase name=\"b\"/></testsuite>");
+        File second = createFile("TEST-2.xml", "<testsuites><testsuite name=\"second\"><testcase name=\"c\"/></testsuite></testsuites>");
+
+        List<PreflightResult> results = preflight.check(Arrays.asList(first, second));
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertTrue(results.get(0).isValid());
+        Assert.assertEquals(2, results.get(0).getTestCount());
+        Assert.assertTrue(results.get(1).isValid());
+        Assert.assertEquals(1, results.get(1).getTestCount());
+    }
+
+    @Test
+    public void testInvalidFilesAreReported() throws IOException, InterruptedException {
+        File truncated = createFile("TEST-1.xml", "<testsuite name=\"first\"><testcase name=\"a\"/><testca");
+        File otherFormat = createFile("TEST-2.xml", "<testng-results><suite name=\"suite\"/></testng-results>");
+        File empty = createFile("TEST-3.xml", "");
+
+        List<PreflightResult> results = preflight.check(Arrays.asList(truncated, otherFormat, empty));
+
+        for (PreflightResult result : results) {
+            Assert.assertFalse(result.isValid());
+            Assert.assertNotNull(result.getError());
+        }
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
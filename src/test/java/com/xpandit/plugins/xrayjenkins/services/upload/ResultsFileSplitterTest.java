@@ -0,0 +1,98 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.ResultsFormat;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ResultsFileSplitterTest {
+
+    private static final long TARGET_SIZE = 1024L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBigFilesAreSplitBetweenSuites() throws IOException {
+        StringBuilder content = new StringBuilder("<testsuites name=\"all\" tests=\"5\" failures=\"1\">");
+        for (int i = 0; i < 5; i++) {
+            content.append("<testsuite name=\"suite").append(i).append("\"><testcase name=\"").append(repeat('a', 400)).append("\"/></testsuite>");
+        }
+        content.append("</testsuites>");
+        File file = createFile("TEST-big.xml", content.toString());
+
+        List<ResultsBatch> chunks = new ResultsFileSplitter(ResultsFormat.JUNIT, TARGET_SIZE, folder.getRoot())
+                .split(Collections.singletonList(file));
+
+        Assert.assertEquals(2, chunks.size());
+        int suites = 0;
+        for (ResultsBatch chunk : chunks) {
+            Assert.assertTrue(chunk.isMerged());
+            Assert.assertEquals(Collections.singletonList(file.getAbsolutePath()), chunk.getSourcePaths());
+
+            String chunkContent = new String(Files.readAllBytes(new File(chunk.getPath()).toPath()), StandardCharsets.UTF_8);
+            // The totals of the original root would be wrong for the chunk
+            Assert.assertTrue(chunkContent.contains("<testsuites>"));
+            Assert.assertTrue(chunkContent.contains("</testsuites>"));
+            suites += chunkContent.split("<testsuite ").length - 1;
+        }
+        Assert.assertEquals(5, suites);
+    }
+
+    @Test
+    public void testOtherRootChildrenAreCopiedToEveryChunk() throws IOException {
+        StringBuilder content = new StringBuilder("<test-results total=\"4\"><environment os-version=\"10\"/>");
+        for (int i = 0; i < 4; i++) {
+            content.append("<test-suite name=\"suite").append(i).append("\"><test-case name=\"").append(repeat('a', 600)).append("\"/></test-suite>");
+        }
+        content.append("<culture-info current-culture=\"en-US\"/></test-results>");
+        File file = createFile("TestResult.xml", content.toString());
+
+        List<ResultsBatch> chunks = new ResultsFileSplitter(ResultsFormat.NUNIT, TARGET_SIZE, folder.getRoot())
+                .split(Collections.singletonList(file));
+
+        Assert.assertEquals(2, chunks.size());
+        for (ResultsBatch chunk : chunks) {
+            String chunkContent = new String(Files.readAllBytes(new File(chunk.getPath()).toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(chunkContent.contains("<test-results><environment os-version=\"10\""));
+            Assert.assertTrue(chunkContent.contains("<culture-info current-culture=\"en-US\""));
+            Assert.assertEquals(2, chunkContent.split("<test-suite ").length - 1);
+        }
+    }
+
+    @Test
+    public void testSmallAndSingleSuiteFilesAreNotSplit() throws IOException {
+        File small = createFile("TEST-small.xml", "<testsuites><testsuite name=\"first\"/><testsuite name=\"second\"/></testsuites>");
+        File singleSuite = createFile("TEST-single.xml", "<testsuite name=\"suite\"><testcase name=\"" + repeat('a', 2000) + "\"/></testsuite>");
+
+        List<ResultsBatch> batches = new ResultsFileSplitter(ResultsFormat.JUNIT, TARGET_SIZE, folder.getRoot())
+                .split(Arrays.asList(small, singleSuite));
+
+        Assert.assertEquals(2, batches.size());
+        Assert.assertFalse(batches.get(0).isMerged());
+        Assert.assertEquals(small.getAbsolutePath(), batches.get(0).getPath());
+        Assert.assertFalse(batches.get(1).isMerged());
+        Assert.assertEquals(singleSuite.getAbsolutePath(), batches.get(1).getPath());
+    }
+
+    private File createFile(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
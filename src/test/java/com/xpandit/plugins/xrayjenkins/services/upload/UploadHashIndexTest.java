@@ -0,0 +1,43 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import hudson.model.FreeStyleProject;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class UploadHashIndexTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testImportedFilesAreFoundWithTheSameSettingsOnly() throws Exception {
+        final FreeStyleProject project = jenkins.createFreeStyleProject();
+        UploadHashIndex.record(project, "instance", "/junit", "plan-A", Collections.singletonMap("hash-1", "XT-1"));
+
+        final Map<String, UploadHashIndex.Entry> found = UploadHashIndex.find(project, "instance", "/junit", "plan-A",
+                                                                              Arrays.asList("hash-1", "hash-2"));
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("XT-1", found.get("hash-1").getTestExecutionKey());
+
+        // The same file imported to another Test Plan, endpoint or instance is a new import
+        Assert.assertTrue(UploadHashIndex.find(project, "instance", "/junit", "plan-B", Collections.singletonList("hash-1")).isEmpty());
+        Assert.assertTrue(UploadHashIndex.find(project, "instance", "/testng", "plan-A", Collections.singletonList("hash-1")).isEmpty());
+        Assert.assertTrue(UploadHashIndex.find(project, "other", "/junit", "plan-A", Collections.singletonList("hash-1")).isEmpty());
+    }
+
+    @Test
+    public void testLatestImportOfAFileIsKept() throws Exception {
+        final FreeStyleProject project = jenkins.createFreeStyleProject();
+        UploadHashIndex.record(project, "instance", "/junit", "settings", Collections.singletonMap("hash-1", "XT-1"));
+        UploadHashIndex.record(project, "instance", "/junit", "settings", Collections.singletonMap("hash-1", "XT-2"));
+
+        Assert.assertEquals("XT-2", UploadHashIndex.find(project, "instance", "/junit", "settings",
+                                                         Collections.singletonList("hash-1")).get("hash-1").getTestExecutionKey());
+    }
+}
@@ -0,0 +1,55 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class UploadJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResumedSplitImportSkipsTheChunksAlreadyImported() throws IOException {
+        final File file = new File(folder.getRoot(), "journal.log");
+
+        // First attempt: the split chunks are written to temporary files and only the first one is imported
+        final Map<String, String> firstAttempt = new HashMap<>();
+        firstAttempt.put("/tmp/results-chunk-123.xml", "hash-1");
+        firstAttempt.put("/tmp/results-chunk-456.xml", "hash-2");
+        final UploadJournal journal = UploadJournal.open(file, firstAttempt);
+        journal.append("/tmp/results-chunk-123.xml", 200, "XT-1");
+        journal.append("/tmp/results-chunk-456.xml", 503, null);
+
+        // Second attempt: the same chunks, with other temporary names
+        final Map<String, String> secondAttempt = new HashMap<>();
+        secondAttempt.put("/tmp/results-chunk-789.xml", "hash-1");
+        secondAttempt.put("/tmp/results-chunk-012.xml", "hash-2");
+        final UploadJournal resumed = UploadJournal.open(file, secondAttempt);
+
+        final UploadJournal.Entry imported = resumed.findImported("/tmp/results-chunk-789.xml");
+        Assert.assertNotNull(imported);
+        Assert.assertEquals("XT-1", imported.getTestExecutionKey());
+        Assert.assertNull(resumed.findImported("/tmp/results-chunk-012.xml"));
+    }
+
+    @Test
+    public void testFailedRetryDoesNotHideASuccessfulUpload() throws IOException {
+        final File file = new File(folder.getRoot(), "journal.log");
+        final Map<String, String> hashesByPath = new HashMap<>();
+        hashesByPath.put("/ws/a.xml", "hash-a");
+        hashesByPath.put("/ws/b.xml", "hash-a");
+
+        final UploadJournal journal = UploadJournal.open(file, hashesByPath);
+        journal.append("/ws/a.xml", 200, "XT-1");
+        journal.append("/ws/b.xml", 500, null);
+
+        Assert.assertNotNull(UploadJournal.open(file, hashesByPath).findImported("/ws/b.xml"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.services.retry.WaitTimeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class UploadTelemetryTest {
+
+    @Test
+    public void testPercentile() {
+        Assert.assertEquals(-1L, UploadTelemetry.percentile(Collections.emptyList(), 50));
+        Assert.assertEquals(3L, UploadTelemetry.percentile(Arrays.asList(1L, 2L, 3L, 4L, 5L), 50));
+        Assert.assertEquals(5L, UploadTelemetry.percentile(Arrays.asList(1L, 2L, 3L, 4L, 5L), 95));
+        Assert.assertEquals(7L, UploadTelemetry.percentile(Collections.singletonList(7L), 95));
+    }
+
+    @Test
+    public void testAttemptsOfTheSameFileAreMerged() {
+        final UploadTelemetry telemetry = new UploadTelemetry();
+        telemetry.record("a.xml", 100L, 50L, -1L, 429);
+        telemetry.record("a.xml", 100L, 70L, 20L, 200);
+        telemetry.record("b.xml", 10L, 30L, 5L, 200);
+
+        final UploadTelemetryAction action = telemetry.toAction(new WaitTimeline());
+
+        Assert.assertEquals(2, action.getFileCount());
+        Assert.assertEquals(210L, action.getTotalBytes());
+        Assert.assertEquals(1, action.getTotalRetries());
+        Assert.assertEquals(30L, action.getP50LatencyMillis());
+        Assert.assertEquals(120L, action.getP95LatencyMillis());
+
+        final UploadTelemetryAction.FileTelemetry slowest = action.getSlowestFiles().get(0);
+        Assert.assertEquals("a.xml", slowest.getFileName());
+        Assert.assertEquals(20L, slowest.getResponseWaitMillis());
+        Assert.assertEquals(200, slowest.getStatusCode());
+    }
+}
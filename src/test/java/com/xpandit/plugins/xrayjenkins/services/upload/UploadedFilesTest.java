@@ -0,0 +1,80 @@
+package com.xpandit.plugins.xrayjenkins.services.upload;
+
+import com.xpandit.plugins.xrayjenkins.model.HostingType;
+import com.xpandit.xray.model.UploadResult;
+import hudson.FilePath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UploadedFilesTest {
+
+    @Test
+    public void testKeysArePairedWithTheirFilesWhateverTheCompletionOrder() {
+        final Map<String, String> hashesByPath = new HashMap<>();
+        hashesByPath.put("/ws/a.xml", "hash-a");
+        hashesByPath.put("/ws/b.xml", "hash-b");
+        hashesByPath.put("/ws/c.xml", "hash-c");
+
+        final UploadedFiles uploadedFiles = new UploadedFiles();
+        uploadedFiles.add("/ws/c.xml", result(true, "{\"id\":\"3\",\"key\":\"XT-3\",\"self\":\"url\"}"));
+        uploadedFiles.add("/ws/a.xml", result(true, "{\"id\":\"1\",\"key\":\"XT-1\",\"self\":\"url\"}"));
+        uploadedFiles.add("/ws/b.xml", result(false, "{\"error\":\"Unauthorized\"}"));
+
+        final Map<String, String> keysByHash = uploadedFiles.getTestExecutionKeysByHash(hashesByPath, HostingType.CLOUD);
+
+        Assert.assertEquals(2, keysByHash.size());
+        Assert.assertEquals("XT-1", keysByHash.get("hash-a"));
+        Assert.assertEquals("XT-3", keysByHash.get("hash-c"));
+    }
+
+    @Test
+    public void testOnlyTheFilesNotImportedAreSpooledWhenXrayIsUnavailable() {
+        final FilePath imported = new FilePath(new File("/ws/a.xml"));
+        final FilePath refused = new FilePath(new File("/ws/b.xml"));
+        final FilePath notUploaded = new FilePath(new File("/ws/c.xml"));
+
+        final UploadedFiles uploadedFiles = new UploadedFiles();
+        uploadedFiles.add(imported.getRemote(), result(200, "{\"id\":\"1\",\"key\":\"XT-1\",\"self\":\"url\"}"));
+        uploadedFiles.add(refused.getRemote(), result(503, "Service Unavailable"));
+
+        Assert.assertEquals("(503) Service Unavailable", uploadedFiles.getUnavailableError());
+        Assert.assertEquals("XT-1", uploadedFiles.getTestExecutionKey(HostingType.CLOUD));
+        final List<FilePath> notImported = uploadedFiles.getNotImported(Arrays.asList(imported, refused, notUploaded));
+        Assert.assertEquals(Arrays.asList(refused, notUploaded), notImported);
+    }
+
+    @Test
+    public void testInvalidFileIsNotSpooled() {
+        final UploadedFiles uploadedFiles = new UploadedFiles();
+        uploadedFiles.add("/ws/a.xml", result(503, "Service Unavailable"));
+        uploadedFiles.add("/ws/b.xml", result(400, "Invalid results file"));
+
+        Assert.assertNull(uploadedFiles.getUnavailableError());
+        Assert.assertNull(new UploadedFiles().getUnavailableError());
+        Assert.assertEquals(Collections.emptyList(), new UploadedFiles().getNotImported(Collections.emptyList()));
+    }
+
+    private static UploadResult result(boolean ok, String message) {
+        final UploadResult result = mock(UploadResult.class);
+        when(result.isOkStatusCode()).thenReturn(ok);
+        when(result.getMessage()).thenReturn(message);
+        return result;
+    }
+
+    private static UploadResult result(int statusCode, String message) {
+        final UploadResult result = result(statusCode < 300, message);
+        when(result.getStatusCode()).thenReturn(statusCode);
+        when(result.isTooManyRequests()).thenReturn(statusCode == 429);
+        return result;
+    }
+}
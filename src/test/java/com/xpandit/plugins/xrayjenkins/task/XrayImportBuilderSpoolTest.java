@@ -0,0 +1,70 @@
+package com.xpandit.plugins.xrayjenkins.task;
+
+import com.xpandit.plugins.xrayjenkins.services.background.SpooledUpload;
+import com.xpandit.plugins.xrayjenkins.services.background.UploadSpool;
+import com.xpandit.xray.model.QueryParameter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class XrayImportBuilderSpoolTest {
+
+    private static final String ID = "0123abcd";
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testSpooledImportIsDrainedWithTheExpandedSettings() throws IOException {
+        final File filesDir = UploadSpool.getFilesDir(ID);
+        FileUtils.write(new File(filesDir, "0-results-chunk-2.xml"), "<testsuites/>", StandardCharsets.UTF_8);
+
+        final Map<String, String> queryParams = new HashMap<>();
+        queryParams.put(QueryParameter.PROJECT_KEY.name(), "CALC");
+        queryParams.put(QueryParameter.TEST_EXEC_KEY.name(), "CALC-10");
+        queryParams.put(QueryParameter.REVISION.name(), "1.0.42");
+        UploadSpool.add(new SpooledUpload(ID, "folder/job", 42, "instance", "credential", "/junit",
+                                          "target/surefire-reports/*.xml", queryParams, true,
+                                          "info.json", "filePath", null, null,
+                                          Collections.singletonList("0-results-chunk-2.xml"), "Xray is unavailable"));
+
+        final SpooledUpload spooled = UploadSpool.find(ID);
+        Assert.assertNotNull(spooled);
+        Assert.assertEquals(1, spooled.getFiles().size());
+        Assert.assertEquals(new File(filesDir, "0-results-chunk-2.xml").getAbsolutePath(), spooled.getFiles().get(0).getRemote());
+
+        final XrayImportBuilder step = XrayImportBuilder.forSpooledUpload(spooled);
+        Assert.assertEquals("CALC", step.getProjectKey());
+        Assert.assertEquals("CALC-10", step.getTestExecKey());
+        Assert.assertEquals("1.0.42", step.getRevision());
+        Assert.assertEquals("target/surefire-reports/*.xml", step.getImportFilePath());
+        Assert.assertEquals("info.json", step.getImportInfo());
+        Assert.assertEquals("true", step.getImportToSameExecution());
+        // A failed attempt of the drain must not import again the files it already imported
+        Assert.assertTrue(step.isResumeImport());
+        Assert.assertTrue(step.isSpoolFailedImports());
+    }
+
+    @Test
+    public void testSpoolDoesNotStoreTheBuildEnvironment() throws IOException {
+        FileUtils.write(new File(UploadSpool.getFilesDir(ID), "results.xml"), "<testsuites/>", StandardCharsets.UTF_8);
+
+        UploadSpool.add(new SpooledUpload(ID, "job", 1, "instance", null, "/junit", "results.xml",
+                                          Collections.singletonMap(QueryParameter.PROJECT_KEY.name(), "CALC"), false,
+                                          null, null, null, null, Collections.singletonList("results.xml"), "error"));
+
+        final String xml = FileUtils.readFileToString(new File(UploadSpool.getFilesDir(ID).getParentFile(), "upload.xml"),
+                                                      StandardCharsets.UTF_8);
+        Assert.assertFalse(xml.contains("EnvVars"));
+        Assert.assertFalse(xml.contains("XrayImportBuilder"));
+    }
+}
@@ -0,0 +1,23 @@
+package com.xpandit.plugins.xrayjenkins.task;
+
+import hudson.FilePath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class XrayImportBuilderTest {
+
+    @Test
+    public void testUploadNameIsRelativeToTheWorkspace() {
+        final FilePath workspace = new FilePath(new File("/ws/job"));
+
+        Assert.assertEquals("module-a/target/TEST-results.xml".replace('/', File.separatorChar),
+                            XrayImportBuilder.getUploadName(workspace, workspace.child("module-a/target/TEST-results.xml")));
+        Assert.assertNotEquals(XrayImportBuilder.getUploadName(workspace, workspace.child("module-a/TEST-results.xml")),
+                               XrayImportBuilder.getUploadName(workspace, workspace.child("module-b/TEST-results.xml")));
+
+        final FilePath mergedFile = new FilePath(new File("/ws/job@tmp/xray-batch-1.xml"));
+        Assert.assertEquals(mergedFile.getRemote(), XrayImportBuilder.getUploadName(workspace, mergedFile));
+    }
+}
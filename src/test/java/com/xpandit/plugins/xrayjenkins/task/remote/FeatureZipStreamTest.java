@@ -0,0 +1,87 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import hudson.FilePath;
+import hudson.model.TaskListener;
+import hudson.slaves.DumbSlave;
+import hudson.util.DirScanner;
+import hudson.util.FileVisitor;
+import hudson.util.StreamTaskListener;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class FeatureZipStreamTest {
+
+    @Rule
+    public JenkinsRule jenkins = new JenkinsRule();
+
+    @Test
+    public void testZipIsStreamedFromTheAgent() throws Exception {
+        final FilePath base = createFeatures();
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final TaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+
+        final byte[] zip;
+        try (InputStream in = FeatureZipStream.open(base, new DirScanner.Glob("**/*.feature", null), true, listener)) {
+            zip = IOUtils.toByteArray(in);
+        }
+
+        final Set<String> entries = new TreeSet<>();
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zipIn.getNextEntry(); entry != null; entry = zipIn.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("a.feature", "sub/b.feature")), entries);
+        Assert.assertTrue(log.toString(StandardCharsets.UTF_8.name()).contains("Streamed the feature files zip (" + zip.length + " bytes"));
+    }
+
+    @Test
+    public void testFailureIsReportedBeforeTheEndOfTheZip() throws Exception {
+        final FilePath base = createFeatures();
+
+        try (InputStream in = FeatureZipStream.open(base, new FailingScanner(), false, TaskListener.NULL)) {
+            IOUtils.toByteArray(in);
+            Assert.fail("A partial zip must not be read as a complete one");
+        } catch (IOException e) {
+            Assert.assertEquals("Unable to create the feature files zip", e.getMessage());
+        }
+    }
+
+    private FilePath createFeatures() throws Exception {
+        final DumbSlave agent = jenkins.createOnlineSlave();
+        final FilePath base = agent.getRootPath().child("features");
+        base.child("a.feature").write("Feature: A", StandardCharsets.UTF_8.name());
+        base.child("sub/b.feature").write("Feature: B", StandardCharsets.UTF_8.name());
+        Assert.assertTrue(base.isRemote());
+        return base;
+    }
+
+    /**
+     * Adds the first feature file to the zip, then fails like an unreadable file would.
+     */
+    private static class FailingScanner extends DirScanner {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void scan(File dir, FileVisitor visitor) throws IOException {
+            visitor.visit(new File(dir, "a.feature"), "a.feature");
+            throw new IOException("Unable to read sub/b.feature");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.xpandit.plugins.xrayjenkins.task.remote;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+public class RemoteContentInputStreamTest {
+
+    @Test
+    public void testContentIsReadWhenTheCallSucceeds() throws IOException {
+        final CompletableFuture<String> future = CompletableFuture.completedFuture("done");
+
+        try (InputStream in = new RemoteContentInputStream<>(content("results"), future, "compress results.xml")) {
+            Assert.assertEquals("results", IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testEndOfTheContentFailsWhenTheCallFailed() throws IOException {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        future.completeExceptionally(new IOException("disk error"));
+
+        try (InputStream in = new RemoteContentInputStream<>(content("truncated"), future, "compress results.xml")) {
+            IOUtils.toString(in, StandardCharsets.UTF_8);
+            Assert.fail("The failure of the call must be reported before the end of the content");
+        } catch (IOException e) {
+            Assert.assertEquals("disk error", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testCallIsCancelledWhenClosedBeforeTheEnd() throws IOException {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        final InputStream in = new RemoteContentInputStream<>(content("results"), future, "compress results.xml");
+        Assert.assertEquals('r', in.read());
+        in.close();
+
+        Assert.assertTrue(future.isCancelled());
+    }
+
+    private static InputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}